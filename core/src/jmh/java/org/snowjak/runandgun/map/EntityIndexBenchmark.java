@@ -0,0 +1,137 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.map;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.badlogic.ashley.core.Entity;
+
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.GreasedRegion;
+
+/**
+ * Compares the {@link EntityIndex} against the {@code HashMap}-based index
+ * {@link GlobalMap} used before it, as the number of {@link Entity Entities}
+ * grows toward 100,000: both for range-queries (as by
+ * {@link GlobalMap#getEntitiesNear(Coord, int)}) and for moving an Entity.
+ * <p>
+ * The "legacy" benchmarks reproduce the old implementation: a range-query
+ * built a map-sized {@link GreasedRegion}, expanded it to the query-area, and
+ * looked up every cell in parallel.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntityIndexBenchmark {
+	
+	private static final int SIZE = 256, POINTS = 256;
+	
+	@Param({ "1000", "10000", "100000" })
+	public int entityCount;
+	
+	@Param({ "8", "32" })
+	public int radius;
+	
+	private EntityIndex index;
+	private java.util.Map<Entity, Coord> legacyEntityToCoord;
+	private java.util.Map<Coord, Collection<Entity>> legacyCoordToEntities;
+	
+	private Entity[] entities;
+	private Coord[] points;
+	private int next = 0;
+	
+	@Setup
+	public void setUp() {
+		
+		final Random rnd = new Random(entityCount);
+		
+		index = new EntityIndex(SIZE, SIZE);
+		legacyEntityToCoord = new HashMap<>();
+		legacyCoordToEntities = new HashMap<>();
+		
+		entities = new Entity[entityCount];
+		for (int i = 0; i < entityCount; i++) {
+			entities[i] = new Entity();
+			final Coord c = Coord.get(rnd.nextInt(SIZE), rnd.nextInt(SIZE));
+			index.put(entities[i], c);
+			legacyPut(entities[i], c);
+		}
+		
+		points = new Coord[POINTS];
+		for (int i = 0; i < POINTS; i++)
+			points[i] = Coord.get(rnd.nextInt(SIZE), rnd.nextInt(SIZE));
+	}
+	
+	private int nextPoint() {
+		
+		final int i = next;
+		next = (next + 1) % POINTS;
+		return i;
+	}
+	
+	@Benchmark
+	public void rangeQuery(Blackhole blackhole) {
+		
+		final Coord c = points[nextPoint()];
+		index.forEachInRange(c.x - radius, c.y - radius, c.x + radius, c.y + radius, blackhole::consume);
+	}
+	
+	@Benchmark
+	public Set<Entity> legacyRangeQuery() {
+		
+		final Coord c = points[nextPoint()];
+		return new GreasedRegion(SIZE, SIZE).insert(c).expand8way(radius).parallelStream()
+				.flatMap(p -> legacyCoordToEntities.getOrDefault(p, new ArrayList<>()).stream())
+				.collect(Collectors.toCollection(HashSet::new));
+	}
+	
+	@Benchmark
+	public void move() {
+		
+		final int i = nextPoint();
+		index.put(entities[i % entityCount], points[i]);
+	}
+	
+	@Benchmark
+	public void legacyMove() {
+		
+		final int i = nextPoint();
+		legacyPut(entities[i % entityCount], points[i]);
+	}
+	
+	private void legacyPut(Entity entity, Coord coord) {
+		
+		final Coord previous = legacyEntityToCoord.put(entity, coord);
+		if (previous != null)
+			legacyCoordToEntities.get(previous).remove(entity);
+		legacyCoordToEntities.computeIfAbsent(coord, c -> new ArrayList<>()).add(entity);
+	}
+}
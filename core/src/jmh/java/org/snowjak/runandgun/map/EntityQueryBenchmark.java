@@ -0,0 +1,134 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.map;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.ashley.core.Entity;
+
+import squidpony.squidgrid.Radius;
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.GreasedRegion;
+
+/**
+ * Compares the {@link Map} entity-queries -- {@link Map#isEntityNear(Entity,
+ * int, int, int)} and a reused {@link EntityQuery} -- against the
+ * region-building implementations they replaced, on a {@link GlobalMap}.
+ * <p>
+ * Run with {@code -prof gc} to compare allocation per query, as well as time.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntityQueryBenchmark {
+	
+	private static final int SIZE = 128, POINTS = 256;
+	
+	@Param({ "1000", "10000" })
+	public int entityCount;
+	
+	@Param({ "8", "32" })
+	public int radius;
+	
+	private GlobalMap map;
+	private final EntityQuery query = new EntityQuery();
+	
+	private Entity[] entities;
+	private Coord[] points;
+	private int next = 0;
+	
+	@Setup
+	public void setUp() {
+		
+		final Random rnd = new Random(entityCount);
+		
+		map = new GlobalMap(SIZE, SIZE);
+		
+		entities = new Entity[entityCount];
+		for (int i = 0; i < entityCount; i++) {
+			entities[i] = new Entity();
+			map.setEntity(entities[i], Coord.get(rnd.nextInt(SIZE), rnd.nextInt(SIZE)));
+		}
+		
+		points = new Coord[POINTS];
+		for (int i = 0; i < POINTS; i++)
+			points[i] = Coord.get(rnd.nextInt(SIZE), rnd.nextInt(SIZE));
+	}
+	
+	private int nextPoint() {
+		
+		final int i = next;
+		next = (next + 1) % POINTS;
+		return i;
+	}
+	
+	@Benchmark
+	public boolean isEntityNear() {
+		
+		final int i = nextPoint();
+		final Coord c = points[i];
+		return map.isEntityNear(entities[i % entityCount], c.x, c.y, radius);
+	}
+	
+	@Benchmark
+	public boolean legacyIsEntityNear() {
+		
+		final int i = nextPoint();
+		final Entity entity = entities[i % entityCount];
+		return new GreasedRegion(SIZE, SIZE).insertCircle(points[i], radius).parallelStream()
+				.anyMatch(c -> map.isEntityAt(entity, c));
+	}
+	
+	@Benchmark
+	public List<Entity> queryNear() {
+		
+		final Coord c = points[nextPoint()];
+		return query.near(map, c.x, c.y, radius, Radius.SQUARE);
+	}
+	
+	@Benchmark
+	public Entity queryNearest() {
+		
+		final Coord c = points[nextPoint()];
+		return query.nearest(map, c.x, c.y, radius, Radius.CIRCLE, null);
+	}
+	
+	@Benchmark
+	public Collection<Entity> getEntitiesNear() {
+		
+		return map.getEntitiesNear(points[nextPoint()], radius);
+	}
+	
+	@Benchmark
+	public Collection<Entity> legacyGetEntitiesNear() {
+		
+		final Coord c = points[nextPoint()];
+		return new GreasedRegion(SIZE, SIZE).insert(c).expand8way(radius).parallelStream()
+				.flatMap(p -> map.getEntitiesAt(p).stream()).collect(Collectors.toCollection(HashSet::new));
+	}
+}
@@ -0,0 +1,155 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.map;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.graphics.Color;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * Measures how long it takes to read one screenful of a {@link KnownMap} -- as
+ * {@code MyScreen.putMap()} does, each frame -- both alone and while another
+ * thread continually updates that KnownMap (as a team's map is updated by the
+ * world thread). Frame-times are sampled, so that their percentiles expose any
+ * spikes caused by the updates.
+ * 
+ * @author snowjak88
+ *
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class KnownMapContentionBenchmark {
+	
+	private static final int COLUMNS = 80, ROWS = 40;
+	private static final int VIEW = 21, WINDOWS = 64, ENTITIES = 1000;
+	
+	@Param({ "128", "256" })
+	public int size;
+	
+	private GlobalMap globalMap;
+	private KnownMap knownMap;
+	private int screenX, screenY;
+	
+	private CellRegion[] windows;
+	private Entity[] entities;
+	private Random rnd;
+	private int next = 0;
+	
+	@Setup
+	public void setUp() {
+		
+		rnd = new Random(size);
+		
+		final char[][] map = new char[size][size];
+		for (int x = 0; x < size; x++)
+			for (int y = 0; y < size; y++)
+				map[x][y] = (rnd.nextDouble() < 0.25) ? GlobalMap.FILL : '.';
+		globalMap = new GlobalMap(map, map);
+		
+		entities = new Entity[ENTITIES];
+		for (int i = 0; i < ENTITIES; i++) {
+			entities[i] = new Entity();
+			globalMap.setEntity(entities[i], Coord.get(rnd.nextInt(size), rnd.nextInt(size)));
+		}
+		
+		knownMap = new KnownMap(size, size);
+		knownMap.insertMap(globalMap, (CellRegion) null, (CellRegion) null);
+		knownMap.updateEntities(globalMap, null, false);
+		
+		screenX = Math.max(0, (size - COLUMNS) / 2);
+		screenY = Math.max(0, (size - ROWS) / 2);
+		
+		//
+		// The updating viewer wanders diagonally across the screen.
+		//
+		windows = new CellRegion[WINDOWS];
+		for (int i = 0; i < WINDOWS; i++) {
+			final int x = Math.min(size - VIEW, screenX + i), y = Math.min(size - VIEW, screenY + i / 2);
+			windows[i] = new CellRegion();
+			for (int dx = 0; dx < VIEW; dx++)
+				for (int dy = 0; dy < VIEW; dy++)
+					windows[i].add(x + dx, y + dy);
+		}
+	}
+	
+	@Benchmark
+	@Group("uncontended")
+	public long renderAlone() {
+		
+		return render();
+	}
+	
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(1)
+	public long renderWhileUpdating() {
+		
+		return render();
+	}
+	
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(1)
+	public void update() {
+		
+		final CellRegion window = windows[next];
+		next = (next + 1) % WINDOWS;
+		
+		globalMap.setEntity(entities[rnd.nextInt(ENTITIES)], Coord.get(rnd.nextInt(size), rnd.nextInt(size)));
+		
+		knownMap.resetVisibleRegion();
+		knownMap.insertMap(globalMap, window, window);
+		knownMap.updateEntities(globalMap, window, false);
+	}
+	
+	/**
+	 * Read every cell on one screen.
+	 * 
+	 * @return a value derived from every cell read, so that no read is
+	 *         eliminated
+	 */
+	private long render() {
+		
+		long result = 0;
+		
+		final int endX = Math.min(size, screenX + COLUMNS), endY = Math.min(size, screenY + ROWS);
+		for (int x = screenX; x < endX; x++)
+			for (int y = screenY; y < endY; y++) {
+				result += knownMap.getMapAt(x, y);
+				
+				final Color color = knownMap.getColorAt(x, y), bgColor = knownMap.getBGColorAt(x, y);
+				if (color != null)
+					result += Float.floatToRawIntBits(color.toFloatBits());
+				if (bgColor != null)
+					result += Float.floatToRawIntBits(bgColor.toFloatBits());
+				
+				if (knownMap.isVisible(x, y))
+					result++;
+			}
+		
+		return result;
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.map;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long it takes to merge a fixed-size region of a
+ * {@link GlobalMap} into a {@link KnownMap} -- as a viewer's FOV is merged into
+ * its map, each update -- as the size of the map grows. The score should stay
+ * flat across map-sizes: the merge ought to cost time proportional to the
+ * region, not to the map.
+ * 
+ * @author snowjak88
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KnownMapInsertBenchmark {
+	
+	private static final int REGION = 21, REGIONS = 64;
+	
+	@Param({ "64", "128", "256", "512", "1024" })
+	public int size;
+	
+	private GlobalMap globalMap;
+	private KnownMap knownMap;
+	
+	private CellRegion[] regions;
+	private int next = 0;
+	
+	@Setup
+	public void setUp() {
+		
+		final Random rnd = new Random(size);
+		
+		final char[][] map = new char[size][size];
+		for (int x = 0; x < size; x++)
+			for (int y = 0; y < size; y++)
+				map[x][y] = (rnd.nextDouble() < 0.25) ? GlobalMap.FILL : '.';
+		globalMap = new GlobalMap(map, map);
+		
+		knownMap = new KnownMap(size, size);
+		knownMap.insertMap(globalMap, (CellRegion) null, (CellRegion) null);
+		
+		//
+		// Each update-region is a viewer's window, at some random spot on the map.
+		//
+		regions = new CellRegion[REGIONS];
+		for (int i = 0; i < REGIONS; i++) {
+			final int x = rnd.nextInt(size - REGION + 1), y = rnd.nextInt(size - REGION + 1);
+			regions[i] = new CellRegion();
+			for (int dx = 0; dx < REGION; dx++)
+				for (int dy = 0; dy < REGION; dy++)
+					regions[i].add(x + dx, y + dy);
+		}
+	}
+	
+	@Benchmark
+	public void insert() {
+		
+		final CellRegion region = regions[next];
+		next = (next + 1) % REGIONS;
+		
+		knownMap.resetVisibleRegion();
+		knownMap.insertMap(globalMap, region, region);
+	}
+}
@@ -0,0 +1,211 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.pathfinding;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snowjak.runandgun.map.GlobalMap;
+
+import squidpony.squidai.DijkstraMap;
+import squidpony.squidgrid.Direction;
+import squidpony.squidmath.Coord;
+
+/**
+ * Compares the {@link PathfinderType point-to-point pathfinders} on randomly
+ * generated maps of several sizes, by the time taken per search and by the
+ * number of search-nodes expanded.
+ * <p>
+ * Nodes expanded are reported as the auxiliary counters {@code expanded} and
+ * {@code searches}; divide the one by the other for nodes per search. A
+ * {@link PathfinderType#DIJKSTRA} search expands every cell reachable from its
+ * goal, as it must scan them all before its {@link GoalMap} can be walked.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PathfinderBenchmark {
+	
+	/**
+	 * The number of start/goal pairs searched in rotation.
+	 */
+	private static final int ROUTES = 64;
+	
+	@Param({ "64", "128", "256" })
+	public int size;
+	
+	@Param({ "DIJKSTRA", "A_STAR", "JUMP_POINT" })
+	public PathfinderType type;
+	
+	@Param({ "0.25" })
+	public double wallDensity;
+	
+	private BlockedCells blocked;
+	private Coord[] starts, goals;
+	private long[] scanned;
+	private int next = 0;
+	
+	private Pathfinder pathfinder;
+	private DijkstraMap dijkstra;
+	
+	@Setup
+	public void setUp() {
+		
+		final Random rnd = new Random(size);
+		
+		final char[][] bareMap = new char[size][size];
+		blocked = new BlockedCells(size, size, false);
+		for (int x = 0; x < size; x++)
+			for (int y = 0; y < size; y++) {
+				final boolean wall = rnd.nextDouble() < wallDensity;
+				bareMap[x][y] = wall ? GlobalMap.FILL : '.';
+				blocked.set(x, y, wall);
+			}
+		
+		//
+		// Pick every route within a single connected region, so that no search
+		// fails outright. Routes span at least half the map.
+		//
+		final List<Coord> region = getLargestRegion();
+		starts = new Coord[ROUTES];
+		goals = new Coord[ROUTES];
+		for (int i = 0; i < ROUTES; i++) {
+			Coord start, goal;
+			do {
+				start = region.get(rnd.nextInt(region.size()));
+				goal = region.get(rnd.nextInt(region.size()));
+			} while (Math.max(Math.abs(start.x - goal.x), Math.abs(start.y - goal.y)) < size / 2);
+			starts[i] = start;
+			goals[i] = goal;
+		}
+		
+		pathfinder = type.create();
+		if (pathfinder != null)
+			return;
+		
+		dijkstra = new DijkstraMap();
+		dijkstra.measurement = squidpony.squidgrid.Measurement.EUCLIDEAN;
+		dijkstra.initialize(bareMap);
+		
+		//
+		// Counting a scan's cells would add to its measured time, so count them
+		// up-front.
+		//
+		scanned = new long[ROUTES];
+		for (int i = 0; i < ROUTES; i++) {
+			scan(goals[i]);
+			for (int x = 0; x < size; x++)
+				for (int y = 0; y < size; y++)
+					if (dijkstra.gradientMap[x][y] < DijkstraMap.FLOOR)
+						scanned[i]++;
+		}
+	}
+	
+	@Benchmark
+	public List<Coord> search(Counters counters) {
+		
+		final int i = next;
+		next = (next + 1) % ROUTES;
+		
+		counters.searches++;
+		
+		if (pathfinder != null) {
+			final long before = pathfinder.getExpandedNodes();
+			final List<Coord> path = pathfinder.findPath(blocked, starts[i], goals[i], Integer.MAX_VALUE);
+			counters.expanded += pathfinder.getExpandedNodes() - before;
+			return path;
+		}
+		
+		scan(goals[i]);
+		counters.expanded += scanned[i];
+		return new GoalMap(dijkstra).walk(starts[i], Integer.MAX_VALUE);
+	}
+	
+	private void scan(Coord goal) {
+		
+		dijkstra.clearGoals();
+		dijkstra.resetMap();
+		dijkstra.setGoal(goal);
+		dijkstra.scan(null);
+	}
+	
+	/**
+	 * @return every cell in the largest 8-connected region of unblocked cells
+	 */
+	private List<Coord> getLargestRegion() {
+		
+		final boolean[][] visited = new boolean[size][size];
+		List<Coord> largest = new ArrayList<>();
+		
+		for (int x = 0; x < size; x++)
+			for (int y = 0; y < size; y++) {
+				if (visited[x][y] || blocked.isBlocked(x, y))
+					continue;
+				
+				final List<Coord> region = new ArrayList<>();
+				final ArrayDeque<Coord> frontier = new ArrayDeque<>();
+				visited[x][y] = true;
+				frontier.add(Coord.get(x, y));
+				while (!frontier.isEmpty()) {
+					final Coord c = frontier.poll();
+					region.add(c);
+					for (Direction d : Direction.OUTWARDS) {
+						final int nx = c.x + d.deltaX, ny = c.y + d.deltaY;
+						if (blocked.isBlocked(nx, ny) || visited[nx][ny])
+							continue;
+						visited[nx][ny] = true;
+						frontier.add(Coord.get(nx, ny));
+					}
+				}
+				
+				if (region.size() > largest.size())
+					largest = region;
+			}
+		
+		return largest;
+	}
+	
+	/**
+	 * Counts search-nodes expanded, per measurement-iteration.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Counters {
+		
+		public long expanded, searches;
+		
+		@Setup(Level.Iteration)
+		public void reset() {
+			
+			expanded = 0;
+			searches = 0;
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.systems;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snowjak.runandgun.components.CanSee;
+import org.snowjak.runandgun.components.HasLocation;
+import org.snowjak.runandgun.config.RulesConfiguration.EntitySystemRulesConfiguration;
+import org.snowjak.runandgun.context.Context;
+import org.snowjak.runandgun.map.FOVCache;
+import org.snowjak.runandgun.map.GlobalMap;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessFiles;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * Measures one {@link FOVUpdatingSystem} update in which every one of 1,000
+ * viewers -- each at its own location -- must have its FOV recomputed, for
+ * several {@link EntitySystemRulesConfiguration#getFovThreads() FOV-thread}
+ * counts. Divide the single-threaded score by each other score for the
+ * speedup.
+ * <p>
+ * Before each update, the system is told that the current map has been
+ * replaced, so that neither its skipping of unchanged viewers nor its
+ * {@link FOVCache} spares it any work.
+ * </p>
+ * <p>
+ * This must be run with the {@code assets} folder as its working-directory, as
+ * the {@code jmh} task does, so that the configuration-files can be loaded.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FOVUpdatingBenchmark {
+	
+	private static final int SIZE = 256;
+	
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+	
+	@Param({ "1000" })
+	public int viewers;
+	
+	@Param({ "8", "16" })
+	public int distance;
+	
+	private Engine engine;
+	private FOVUpdatingSystem system;
+	
+	@Setup
+	public void setUp() {
+		
+		if (Gdx.files == null)
+			Gdx.files = new HeadlessFiles();
+		
+		Context.get().config().rules().entities().setFovThreads(threads);
+		
+		final Random rnd = new Random(SIZE);
+		final char[][] map = new char[SIZE][SIZE];
+		for (int x = 0; x < SIZE; x++)
+			for (int y = 0; y < SIZE; y++)
+				map[x][y] = (rnd.nextDouble() < 0.1) ? GlobalMap.FILL : '.';
+		Context.get().setGlobalMap(new GlobalMap(map, map));
+		
+		engine = new Engine();
+		system = new FOVUpdatingSystem();
+		engine.addSystem(system);
+		
+		final Set<Coord> occupied = new HashSet<>();
+		while (occupied.size() < viewers) {
+			final Coord c = Coord.get(rnd.nextInt(SIZE), rnd.nextInt(SIZE));
+			if (map[c.x][c.y] == GlobalMap.FILL || !occupied.add(c))
+				continue;
+			
+			final Entity entity = new Entity();
+			
+			final HasLocation location = new HasLocation();
+			location.setX(c.x);
+			location.setY(c.y);
+			entity.add(location);
+			
+			final CanSee canSee = new CanSee();
+			canSee.setDistance(distance);
+			entity.add(canSee);
+			
+			engine.addEntity(entity);
+		}
+	}
+	
+	@Setup(Level.Invocation)
+	public void invalidate() {
+		
+		system.receiveNewMapEvent(null);
+	}
+	
+	@Benchmark
+	public void update() {
+		
+		system.update(0f);
+	}
+	
+	@TearDown
+	public void tearDown() {
+		
+		engine.removeAllEntities();
+		engine.removeSystem(system);
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.systems;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.snowjak.runandgun.map.CellRegion;
+import org.snowjak.runandgun.map.GlobalMap;
+import org.snowjak.runandgun.map.KnownMap;
+import org.snowjak.runandgun.team.Team;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessFiles;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * Measures how long it takes to merge the seen-regions of one {@link Team}'s
+ * viewers into that Team's {@link KnownMap}, for several numbers of viewers:
+ * both as {@link TeamMapUpdatingSystem} does it (unioning every region and
+ * merging once) and as it was done before (merging once per viewer).
+ * <p>
+ * This must be run with the {@code assets} folder as its working-directory, as
+ * the {@code jmh} task does, so that the configuration-files can be loaded.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TeamMapMergeBenchmark {
+	
+	private static final int SIZE = 256, DISTANCE = 8, ENTITIES = 1000;
+	
+	@Param({ "10", "100", "1000" })
+	public int viewers;
+	
+	private GlobalMap globalMap;
+	private Team team;
+	private List<CellRegion> seen;
+	
+	@Setup
+	public void setUp() {
+		
+		if (Gdx.files == null)
+			Gdx.files = new HeadlessFiles();
+		
+		final Random rnd = new Random(viewers);
+		
+		final char[][] map = new char[SIZE][SIZE];
+		for (int x = 0; x < SIZE; x++)
+			for (int y = 0; y < SIZE; y++)
+				map[x][y] = (rnd.nextDouble() < 0.1) ? GlobalMap.FILL : '.';
+		globalMap = new GlobalMap(map, map);
+		
+		for (int i = 0; i < ENTITIES; i++)
+			globalMap.setEntity(new Entity(), Coord.get(rnd.nextInt(SIZE), rnd.nextInt(SIZE)));
+		
+		team = new Team(new KnownMap(SIZE, SIZE));
+		
+		//
+		// Each viewer sees a square window about itself, clipped to the map.
+		//
+		seen = new ArrayList<>(viewers);
+		for (int i = 0; i < viewers; i++) {
+			final int vx = rnd.nextInt(SIZE), vy = rnd.nextInt(SIZE);
+			final CellRegion region = new CellRegion();
+			for (int x = Math.max(0, vx - DISTANCE); x <= Math.min(SIZE - 1, vx + DISTANCE); x++)
+				for (int y = Math.max(0, vy - DISTANCE); y <= Math.min(SIZE - 1, vy + DISTANCE); y++)
+					region.add(x, y);
+			seen.add(region);
+		}
+	}
+	
+	@Benchmark
+	public void mergeOnce() {
+		
+		team.getMap().resetVisibleRegion();
+		team.update(globalMap, TeamMapUpdatingSystem.union(seen));
+	}
+	
+	@Benchmark
+	public void mergePerViewer() {
+		
+		team.getMap().resetVisibleRegion();
+		for (CellRegion region : seen)
+			team.update(globalMap, region);
+	}
+	
+	@TearDown
+	public void tearDown() {
+		
+		team.dispose();
+	}
+}
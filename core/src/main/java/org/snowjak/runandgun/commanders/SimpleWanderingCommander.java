@@ -6,6 +6,7 @@ package org.snowjak.runandgun.commanders;
 import org.snowjak.runandgun.commands.Command;
 import org.snowjak.runandgun.commands.MoveToCommand;
 import org.snowjak.runandgun.components.CanMove;
+import org.snowjak.runandgun.components.HasFlowField;
 import org.snowjak.runandgun.components.HasLocation;
 import org.snowjak.runandgun.components.HasMap;
 import org.snowjak.runandgun.components.HasMovementList;
@@ -39,7 +40,8 @@ public class SimpleWanderingCommander extends Commander {
 	public SimpleWanderingCommander() {
 		
 		super((int) serialVersionUID,
-				Family.all(CanMove.class, HasLocation.class).exclude(HasMovementList.class, IsMoving.class).get());
+				Family.all(CanMove.class, HasLocation.class)
+						.exclude(HasMovementList.class, HasFlowField.class, IsMoving.class).get());
 	}
 	
 	@Override
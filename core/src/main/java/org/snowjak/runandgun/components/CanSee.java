@@ -5,16 +5,22 @@ package org.snowjak.runandgun.components;
 
 import org.snowjak.runandgun.config.RulesConfiguration.LightingRulesConfiguration;
 import org.snowjak.runandgun.context.Context;
+import org.snowjak.runandgun.map.CellRegion;
+import org.snowjak.runandgun.map.FOVResult;
 import org.snowjak.runandgun.map.GlobalMap;
 
 import com.badlogic.ashley.core.Component;
 import com.badlogic.gdx.utils.Pool.Poolable;
 
-import squidpony.squidmath.CoordPacker;
-
 /**
  * Indicates that an entity can see. It has a defined FOV, and knowledge about
  * the map.
+ * <p>
+ * Light-levels are held as an {@link FOVResult}, covering only the window of
+ * the map which this entity's FOV was computed over, so their size depends on
+ * this entity's {@link #getDistance() sight-distance} rather than on the size
+ * of the map.
+ * </p>
  * 
  * @author snowjak88
  *
@@ -23,23 +29,54 @@ public class CanSee implements Component, Poolable {
 	
 	private int distance;
 	
-	private transient short[][] packedLightLevels;
-	private transient short[] seen = CoordPacker.ALL_WALL;
+	private transient volatile FOVResult fov = FOVResult.NONE;
+	private transient int fovX, fovY, fovDistance = -1;
 	
 	/**
-	 * Update the held FOV "light-levels". This need not strictly equate to "light",
-	 * but more generally to "visibility".
+	 * @return the currently-held {@link FOVResult}
+	 */
+	public FOVResult getFOV() {
+		
+		return fov;
+	}
+	
+	/**
+	 * Update the held FOV. As FOVResults are immutable, the same result may be
+	 * shared among any number of CanSees.
 	 * 
-	 * @param lightLevels
+	 * @param fov
+	 */
+	public void setFOV(FOVResult fov) {
+		
+		setFOV(fov, 0, 0, -1);
+	}
+	
+	/**
+	 * Update the held FOV, recording the viewpoint it was computed from.
+	 * 
+	 * @param fov
+	 * @param x
+	 * @param y
+	 * @param distance
+	 * @see #isFOVFrom(int, int, int)
 	 */
-	public void setLightLevels(double[][] lightLevels) {
+	public void setFOV(FOVResult fov, int x, int y, int distance) {
 		
-		synchronized (this) {
-			packedLightLevels = CoordPacker.packMulti(lightLevels,
-					Context.get().config().rules().lighting().getLightingLevelsForPacking());
-			
-			seen = CoordPacker.pack(lightLevels);
-		}
+		this.fovX = x;
+		this.fovY = y;
+		this.fovDistance = distance;
+		this.fov = (fov == null) ? FOVResult.NONE : fov;
+	}
+	
+	/**
+	 * @param x
+	 * @param y
+	 * @param distance
+	 * @return {@code true} if the held FOV was computed from the given viewpoint
+	 */
+	public boolean isFOVFrom(int x, int y, int distance) {
+		
+		return fovDistance >= 0 && fovX == x && fovY == y && fovDistance == distance;
 	}
 	
 	/**
@@ -54,14 +91,22 @@ public class CanSee implements Component, Poolable {
 	 */
 	public double[][] getLightLevels() {
 		
-		synchronized (this) {
-			final GlobalMap m = Context.get().globalMap();
-			if (m == null)
-				return null;
-			
-			return CoordPacker.unpackMultiDouble(packedLightLevels, m.getWidth(), m.getHeight(),
-					Context.get().config().rules().lighting().getLightingLevelsForUnpacking());
-		}
+		final GlobalMap m = Context.get().globalMap();
+		if (m == null)
+			return null;
+		
+		return fov.getLightLevels(m.getWidth(), m.getHeight());
+	}
+	
+	/**
+	 * Unpack the light-levels held in this FOV into the given (map-sized) array,
+	 * without allocating.
+	 * 
+	 * @param lightLevels
+	 */
+	public void getLightLevels(double[][] lightLevels) {
+		
+		fov.copyLightLevels(lightLevels);
 	}
 	
 	/**
@@ -78,24 +123,16 @@ public class CanSee implements Component, Poolable {
 	 */
 	public double getLightLevel(int mapX, int mapY) {
 		
-		synchronized (this) {
-			final double[] lightLevels = Context.get().config().rules().lighting().getLightingLevelsForUnpacking();
-			for (int i = 0; i < lightLevels.length; i++) {
-				if (CoordPacker.queryPacked(packedLightLevels[i], mapX, mapY))
-					return lightLevels[i];
-			}
-			return 0.0;
-		}
+		return fov.getLightLevel(mapX, mapY);
 	}
 	
 	/**
-	 * @return the region for which {@link #getLightLevels()} is greater than 0
+	 * @return the region for which {@link #getLightLevels()} is greater than 0,
+	 *         which must not be modified
 	 */
-	public short[] getSeen() {
+	public CellRegion getSeen() {
 		
-		synchronized (this) {
-			return seen;
-		}
+		return fov.getSeen();
 	}
 	
 	/**
@@ -108,9 +145,7 @@ public class CanSee implements Component, Poolable {
 	 */
 	public boolean isSeen(int mapX, int mapY) {
 		
-		synchronized (this) {
-			return CoordPacker.queryPacked(seen, mapX, mapY);
-		}
+		return fov.isSeen(mapX, mapY);
 	}
 	
 	/**
@@ -135,7 +170,9 @@ public class CanSee implements Component, Poolable {
 	public void reset() {
 		
 		this.distance = 32767;
-		this.seen = CoordPacker.ALL_WALL;
-		this.packedLightLevels = null;
+		this.fov = FOVResult.NONE;
+		this.fovX = 0;
+		this.fovY = 0;
+		this.fovDistance = -1;
 	}
 }
@@ -0,0 +1,60 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.components;
+
+import org.snowjak.runandgun.pathfinding.GoalMap;
+import org.snowjak.runandgun.systems.MovementListExecutingSystem;
+import org.snowjak.runandgun.util.loaders.IgnoreSerialization;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.gdx.utils.Pool.Poolable;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * Indicates that an entity is following a flow-field -- a {@link GoalMap}
+ * shared by every entity headed for the same goal -- rather than a
+ * {@link HasMovementList movement-list} of its own. The
+ * {@link MovementListExecutingSystem} reads the entity's next step directly
+ * from the flow-field.
+ * 
+ * @author snowjak88
+ *
+ */
+@IgnoreSerialization
+public class HasFlowField implements Component, Poolable {
+	
+	private GoalMap field = null;
+	private Coord goal = null;
+	
+	public GoalMap getField() {
+		
+		return field;
+	}
+	
+	public void setField(GoalMap field) {
+		
+		this.field = field;
+	}
+	
+	/**
+	 * @return the goal toward which this flow-field leads
+	 */
+	public Coord getGoal() {
+		
+		return goal;
+	}
+	
+	public void setGoal(Coord goal) {
+		
+		this.goal = goal;
+	}
+	
+	@Override
+	public void reset() {
+		
+		this.field = null;
+		this.goal = null;
+	}
+}
@@ -3,9 +3,12 @@
  */
 package org.snowjak.runandgun.components;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Queue;
+
+import org.snowjak.runandgun.map.GlobalMap;
+import org.snowjak.runandgun.map.KnownMap;
+import org.snowjak.runandgun.pathfinding.PathBuffer;
 
 import com.badlogic.ashley.core.Component;
 import com.badlogic.gdx.utils.Pool.Poolable;
@@ -16,10 +19,16 @@ import squidpony.squidmath.Coord;
  * Indicates that an entity has a "movement-list" -- a list of locations to move
  * into, generated by a pathfinding algorithm.
  * <p>
- * Internally, this list is defined by a {@link Queue} of {@link Coord}s, giving
- * a LIFO collection of points into which this entity should move. The
- * currently-executing movmement is always given by the head of the queue
- * ({@link #getCurrent()}).
+ * Internally, this list is held in a pooled {@link PathBuffer}, giving a FIFO
+ * sequence of points into which this entity should move. The
+ * currently-executing movement is always given by the buffer's cursor
+ * ({@link #getCurrent()}). The buffer is returned to its pool when this
+ * component is {@link #reset() reset}.
+ * </p>
+ * <p>
+ * A movement-list remembers the {@link GlobalMap#getRevision() map-revision}
+ * and {@link KnownMap#getKnownRevision() known-revision} it was last checked
+ * against, so that it need only be re-checked when one of those changes.
  * </p>
  * 
  * @author snowjak88
@@ -27,7 +36,10 @@ import squidpony.squidmath.Coord;
  */
 public class HasMovementList implements Component, Poolable {
 	
-	private Queue<Coord> list = new LinkedList<>();
+	private PathBuffer list = null;
+	private Coord goal = null;
+	
+	private transient long mapRevision = -1, knownRevision = -1;
 	
 	/**
 	 * Add the given {@link Coord movement-points} to this movement-list.
@@ -36,7 +48,7 @@ public class HasMovementList implements Component, Poolable {
 	 */
 	public void addMovement(List<Coord> movement) {
 		
-		movement.forEach(this::addMovement);
+		list().addAll(movement);
 	}
 	
 	/**
@@ -46,7 +58,71 @@ public class HasMovementList implements Component, Poolable {
 	 */
 	public void addMovement(Coord movement) {
 		
-		list.add(movement);
+		list().add(movement);
+	}
+	
+	/**
+	 * Replace this movement-list's remaining {@link Coord movement-points}.
+	 * 
+	 * @param movement
+	 */
+	public void setMovement(List<Coord> movement) {
+		
+		list().clear();
+		addMovement(movement);
+	}
+	
+	/**
+	 * @return a copy of this movement-list's remaining {@link Coord
+	 *         movement-points}
+	 */
+	public List<Coord> getRemaining() {
+		
+		return (list == null) ? new ArrayList<>() : list.getRemaining();
+	}
+	
+	/**
+	 * @return the destination this movement-list was built to reach, or
+	 *         {@code null} if unknown
+	 */
+	public Coord getGoal() {
+		
+		return goal;
+	}
+	
+	public void setGoal(Coord goal) {
+		
+		this.goal = goal;
+	}
+	
+	/**
+	 * @return the {@link GlobalMap#getRevision() map-revision} this movement-list
+	 *         was last checked against, or {@code -1} if never
+	 */
+	public long getMapRevision() {
+		
+		return mapRevision;
+	}
+	
+	/**
+	 * @return the {@link KnownMap#getKnownRevision() known-revision} this
+	 *         movement-list was last checked against, or {@code -1} if never
+	 */
+	public long getKnownRevision() {
+		
+		return knownRevision;
+	}
+	
+	/**
+	 * Record the revisions against which this movement-list has been checked.
+	 * 
+	 * @param mapRevision
+	 * @param knownRevision
+	 */
+	public void setRevisions(long mapRevision, long knownRevision) {
+		
+		this.mapRevision = mapRevision;
+		this.knownRevision = knownRevision;
 	}
 	
 	/**
@@ -56,7 +132,7 @@ public class HasMovementList implements Component, Poolable {
 	 */
 	public boolean hasMovement() {
 		
-		return !list.isEmpty();
+		return list != null && list.hasRemaining();
 	}
 	
 	/**
@@ -65,7 +141,7 @@ public class HasMovementList implements Component, Poolable {
 	 */
 	public Coord getCurrent() {
 		
-		return list.peek();
+		return (list == null) ? null : list.getCurrent();
 	}
 	
 	/**
@@ -77,14 +153,27 @@ public class HasMovementList implements Component, Poolable {
 	 */
 	public boolean advanceList() {
 		
-		list.poll();
+		if (list != null)
+			list.advance();
 		
 		return hasMovement();
 	}
 	
+	private PathBuffer list() {
+		
+		if (list == null)
+			list = PathBuffer.obtain();
+		return list;
+	}
+	
 	@Override
 	public void reset() {
 		
-		this.list.clear();
+		if (this.list != null)
+			this.list.free();
+		this.list = null;
+		this.goal = null;
+		this.mapRevision = -1;
+		this.knownRevision = -1;
 	}
 }
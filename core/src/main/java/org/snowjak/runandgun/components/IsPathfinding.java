@@ -0,0 +1,111 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.components;
+
+import java.util.List;
+
+import org.snowjak.runandgun.pathfinding.GoalMap;
+import org.snowjak.runandgun.systems.PathfindingSystem;
+import org.snowjak.runandgun.util.loaders.IgnoreSerialization;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.gdx.utils.Pool.Poolable;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * Indicates that the {@link PathfindingSystem} is searching, in the background,
+ * for a path to satisfy this entity's {@link NeedsMovementList}.
+ * <p>
+ * The search will produce either a {@link #getPath() path} or a
+ * {@link #getFlowField() flow-field}. A flow-field search may be shared by many
+ * entities, and so is never cancelled on any one entity's behalf.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+@IgnoreSerialization
+public class IsPathfinding implements Component, Poolable {
+	
+	private Coord mapPoint = null;
+	private transient ListenableFuture<List<Coord>> path = null;
+	private transient ListenableFuture<GoalMap> flowField = null;
+	private transient long mapRevision = -1, knownRevision = -1;
+	
+	/**
+	 * @return the map-point being searched for
+	 */
+	public Coord getMapPoint() {
+		
+		return mapPoint;
+	}
+	
+	public void setMapPoint(Coord mapPoint) {
+		
+		this.mapPoint = mapPoint;
+	}
+	
+	/**
+	 * @return the path being searched for, once complete
+	 */
+	public ListenableFuture<List<Coord>> getPath() {
+		
+		return path;
+	}
+	
+	public void setPath(ListenableFuture<List<Coord>> path) {
+		
+		this.path = path;
+	}
+	
+	/**
+	 * @return the flow-field being searched for, once complete
+	 */
+	public ListenableFuture<GoalMap> getFlowField() {
+		
+		return flowField;
+	}
+	
+	public void setFlowField(ListenableFuture<GoalMap> flowField) {
+		
+		this.flowField = flowField;
+	}
+	
+	/**
+	 * @return the map-revision current when this search began
+	 */
+	public long getMapRevision() {
+		
+		return mapRevision;
+	}
+	
+	/**
+	 * @return the known-revision current when this search began
+	 */
+	public long getKnownRevision() {
+		
+		return knownRevision;
+	}
+	
+	public void setRevisions(long mapRevision, long knownRevision) {
+		
+		this.mapRevision = mapRevision;
+		this.knownRevision = knownRevision;
+	}
+	
+	@Override
+	public void reset() {
+		
+		if (path != null)
+			path.cancel(false);
+		
+		this.mapPoint = null;
+		this.path = null;
+		this.flowField = null;
+		this.mapRevision = -1;
+		this.knownRevision = -1;
+	}
+}
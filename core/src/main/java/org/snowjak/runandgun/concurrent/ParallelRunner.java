@@ -11,6 +11,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Logger;
 
+import org.snowjak.runandgun.concurrent.TaskScheduler.Lane;
 import org.snowjak.runandgun.context.Context;
 
 import com.google.common.util.concurrent.Futures;
@@ -19,7 +20,8 @@ import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Provides the ability to submit a number of {@link Runnable}s to the
- * {@link Context#executor() common Executor} and wait for them to finish.
+ * {@link Lane#PARALLEL parallel lane} of the
+ * {@link Context#scheduler() shared TaskScheduler} and wait for them to finish.
  * 
  * @author snowjak88
  *
@@ -30,8 +32,8 @@ public class ParallelRunner {
 	private final BlockingQueue<ListenableFuture<?>> futures = new LinkedBlockingQueue<>();
 	
 	/**
-	 * Submit the given {@link Runnable} to the {@link Context#executor() shared
-	 * Executor} and add its associated {@link Future} to the internal list of
+	 * Submit the given {@link Runnable} to the {@link Lane#PARALLEL
+	 * parallel lane} and add its associated {@link Future} to the internal list of
 	 * Futures.
 	 * 
 	 * @param runnable
@@ -39,13 +41,13 @@ public class ParallelRunner {
 	public void add(Runnable runnable) {
 		
 		synchronized (futures) {
-			futures.add(Context.get().executor().submit(runnable));
+			futures.add(Context.get().executor(Lane.PARALLEL).submit(runnable));
 		}
 	}
 	
 	/**
-	 * Submit the given {@link Runnable}s to the {@link Context#executor() shared
-	 * Executor} and add their associated {@link Future}s to the internal list of
+	 * Submit the given {@link Runnable}s to the {@link Lane#PARALLEL
+	 * parallel lane} and add their associated {@link Future}s to the internal list of
 	 * Futures.
 	 * 
 	 * @param runnables
@@ -57,8 +59,8 @@ public class ParallelRunner {
 	}
 	
 	/**
-	 * Submit the given {@link Runnable}s to the {@link Context#executor() shared
-	 * Executor} and add their associated {@link Future}s to the internal list of
+	 * Submit the given {@link Runnable}s to the {@link Lane#PARALLEL
+	 * parallel lane} and add their associated {@link Future}s to the internal list of
 	 * Futures.
 	 * 
 	 * @param runnables
@@ -8,10 +8,15 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import org.snowjak.runandgun.concurrent.TaskScheduler.Lane;
 import org.snowjak.runandgun.context.Context;
 
 /**
  * Represents a process that should update once per frame.
+ * <p>
+ * A PerFrameProcess occupies one thread of the {@link Lane#WORLD world lane}
+ * for as long as it runs.
+ * </p>
  * 
  * @author snowjak88
  *
@@ -24,7 +29,7 @@ public abstract class PerFrameProcess {
 	
 	public Future<?> start() {
 		
-		final Future<?> f = Context.get().executor().submit(() -> {
+		final Future<?> f = Context.get().executor(Lane.WORLD).submit(() -> {
 			
 			starting();
 			
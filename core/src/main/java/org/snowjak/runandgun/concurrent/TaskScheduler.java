@@ -0,0 +1,307 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.concurrent;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.snowjak.runandgun.config.ConcurrencyConfiguration;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs the application's background tasks on a fixed set of threads, divided
+ * into {@link Lane lanes} so that one kind of work cannot starve another.
+ * <p>
+ * Every lane is bounded, both in threads and in
+ * {@link ConcurrencyConfiguration#getQueueCapacity() waiting tasks}. Once a
+ * {@link Lane#PARALLEL} or {@link Lane#BACKGROUND} lane's queue is full, further
+ * tasks are run on the submitting thread instead -- slowing the submitter down
+ * to match the lane's throughput. A full {@link Lane#WORLD} lane rejects
+ * further tasks outright.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class TaskScheduler {
+	
+	private static final Logger LOG = Logger.getLogger(TaskScheduler.class.getName());
+	
+	/**
+	 * The kinds of work a {@link TaskScheduler} keeps apart.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public enum Lane {
+		/**
+		 * Long-lived loops, each occupying one thread for as long as it runs (e.g.,
+		 * a {@link PerFrameProcess}).
+		 */
+		WORLD,
+		/**
+		 * Short tasks which are awaited within the same frame (e.g., those of a
+		 * {@link ParallelRunner}). Served by a work-stealing pool.
+		 */
+		PARALLEL,
+		/**
+		 * Tasks whose results are not awaited within the same frame (e.g.,
+		 * path-searches, or I/O).
+		 */
+		BACKGROUND
+	}
+	
+	private final Map<Lane, LaneExecutor> lanes = new EnumMap<>(Lane.class);
+	
+	/**
+	 * @param config
+	 *            the {@link ConcurrencyConfiguration} sizing each lane
+	 */
+	public TaskScheduler(ConcurrencyConfiguration config) {
+		
+		final int processors = Runtime.getRuntime().availableProcessors();
+		final int capacity = Math.max(1, config.getQueueCapacity());
+		
+		final int worldThreads = Math.max(1, config.getWorldThreads());
+		final int parallelThreads = (config.getParallelThreads() > 0) ? config.getParallelThreads() : processors;
+		final int backgroundThreads = (config.getBackgroundThreads() > 0) ? config.getBackgroundThreads()
+				: Math.max(1, processors / 2);
+		
+		lanes.put(Lane.WORLD, new PooledLane(Lane.WORLD, worldThreads, capacity, false));
+		lanes.put(Lane.PARALLEL, new WorkStealingLane(parallelThreads, capacity));
+		lanes.put(Lane.BACKGROUND, new PooledLane(Lane.BACKGROUND, backgroundThreads, capacity, true));
+		
+		LOG.info("Started task-scheduler: " + worldThreads + " world, " + parallelThreads + " parallel, "
+				+ backgroundThreads + " background thread(s).");
+	}
+	
+	/**
+	 * @param lane
+	 * @return a {@link ListeningExecutorService} submitting to the given lane
+	 */
+	public ListeningExecutorService lane(Lane lane) {
+		
+		return lanes.get(lane).listening;
+	}
+	
+	/**
+	 * @param lane
+	 * @return the number of threads serving the given lane
+	 */
+	public int getThreadCount(Lane lane) {
+		
+		return lanes.get(lane).getThreadCount();
+	}
+	
+	/**
+	 * @param lane
+	 * @return the number of threads currently running tasks in the given lane
+	 */
+	public int getActiveThreads(Lane lane) {
+		
+		return lanes.get(lane).getActiveThreads();
+	}
+	
+	/**
+	 * @param lane
+	 * @return the number of tasks currently waiting in the given lane
+	 */
+	public int getQueueDepth(Lane lane) {
+		
+		return lanes.get(lane).getQueueDepth();
+	}
+	
+	/**
+	 * @param lane
+	 * @return the number of tasks which, submitted to the given lane while its
+	 *         queue was full, were run on (or rejected back to) their submitter
+	 */
+	public long getPushedBack(Lane lane) {
+		
+		return lanes.get(lane).pushedBack.get();
+	}
+	
+	/**
+	 * Stop every lane, interrupting all running tasks and discarding all waiting
+	 * tasks.
+	 */
+	public void shutdownNow() {
+		
+		for (LaneExecutor lane : lanes.values())
+			lane.listening.shutdownNow();
+	}
+	
+	private static abstract class LaneExecutor extends AbstractExecutorService {
+		
+		private final ListeningExecutorService listening = MoreExecutors.listeningDecorator(this);
+		protected final AtomicLong pushedBack = new AtomicLong();
+		
+		protected abstract ExecutorService delegate();
+		
+		public abstract int getThreadCount();
+		
+		public abstract int getActiveThreads();
+		
+		public abstract int getQueueDepth();
+		
+		@Override
+		public void shutdown() {
+			
+			delegate().shutdown();
+		}
+		
+		@Override
+		public List<Runnable> shutdownNow() {
+			
+			return delegate().shutdownNow();
+		}
+		
+		@Override
+		public boolean isShutdown() {
+			
+			return delegate().isShutdown();
+		}
+		
+		@Override
+		public boolean isTerminated() {
+			
+			return delegate().isTerminated();
+		}
+		
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			
+			return delegate().awaitTermination(timeout, unit);
+		}
+	}
+	
+	/**
+	 * A lane served by a fixed number of threads taking from one bounded queue.
+	 */
+	private static class PooledLane extends LaneExecutor {
+		
+		private final ThreadPoolExecutor pool;
+		
+		public PooledLane(Lane lane, int threads, int capacity, boolean callerRuns) {
+			
+			this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(capacity), new ThreadFactoryBuilder().setDaemon(true)
+							.setNameFormat(lane.name().toLowerCase() + "-%d").build(),
+					(r, executor) -> {
+						pushedBack.incrementAndGet();
+						if (!callerRuns)
+							throw new RejectedExecutionException(
+									"Cannot submit task -- " + lane + " lane is full (" + capacity + " waiting).");
+						if (!executor.isShutdown())
+							r.run();
+					});
+		}
+		
+		@Override
+		protected ExecutorService delegate() {
+			
+			return pool;
+		}
+		
+		@Override
+		public void execute(Runnable command) {
+			
+			pool.execute(command);
+		}
+		
+		@Override
+		public int getThreadCount() {
+			
+			return pool.getMaximumPoolSize();
+		}
+		
+		@Override
+		public int getActiveThreads() {
+			
+			return pool.getActiveCount();
+		}
+		
+		@Override
+		public int getQueueDepth() {
+			
+			return pool.getQueue().size();
+		}
+	}
+	
+	/**
+	 * A lane served by a work-stealing {@link ForkJoinPool}. As a ForkJoinPool's
+	 * queues are unbounded, its capacity is enforced here, on submission.
+	 */
+	private static class WorkStealingLane extends LaneExecutor {
+		
+		private final ForkJoinPool pool;
+		private final int capacity;
+		
+		public WorkStealingLane(int threads, int capacity) {
+			
+			final AtomicInteger count = new AtomicInteger();
+			this.pool = new ForkJoinPool(threads, p -> {
+				final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+				thread.setName("parallel-" + count.getAndIncrement());
+				return thread;
+			}, (thread, t) -> LOG.log(Level.SEVERE, "Uncaught exception in " + thread.getName(), t), true);
+			this.capacity = capacity;
+		}
+		
+		@Override
+		protected ExecutorService delegate() {
+			
+			return pool;
+		}
+		
+		@Override
+		public void execute(Runnable command) {
+			
+			if (!pool.isShutdown() && getQueueDepth() >= capacity) {
+				pushedBack.incrementAndGet();
+				command.run();
+				return;
+			}
+			
+			pool.execute(command);
+		}
+		
+		@Override
+		public int getThreadCount() {
+			
+			return pool.getParallelism();
+		}
+		
+		@Override
+		public int getActiveThreads() {
+			
+			return pool.getActiveThreadCount();
+		}
+		
+		@Override
+		public int getQueueDepth() {
+			
+			return (int) Math.min(Integer.MAX_VALUE, pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount());
+		}
+	}
+}
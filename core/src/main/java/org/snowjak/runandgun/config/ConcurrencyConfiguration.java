@@ -0,0 +1,83 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.config;
+
+import org.snowjak.runandgun.concurrent.TaskScheduler;
+
+/**
+ * Holds configuration items relating to the {@link TaskScheduler}.
+ * 
+ * @author snowjak88
+ *
+ */
+public class ConcurrencyConfiguration {
+	
+	/**
+	 * This config's JSON-file will have this name.
+	 */
+	public static final String CONFIG_FILENAME = "concurrency.json";
+	
+	private int worldThreads = 1;
+	private int parallelThreads = 0;
+	private int backgroundThreads = 0;
+	private int queueCapacity = 1024;
+	
+	/**
+	 * @return the number of threads in the {@link TaskScheduler.Lane#WORLD world}
+	 *         lane -- i.e., the number of per-frame processes which may run at once
+	 */
+	public int getWorldThreads() {
+		
+		return worldThreads;
+	}
+	
+	public void setWorldThreads(int worldThreads) {
+		
+		this.worldThreads = worldThreads;
+	}
+	
+	/**
+	 * @return the number of threads in the {@link TaskScheduler.Lane#PARALLEL
+	 *         parallel} lane, or {@code 0} to use one per available processor
+	 */
+	public int getParallelThreads() {
+		
+		return parallelThreads;
+	}
+	
+	public void setParallelThreads(int parallelThreads) {
+		
+		this.parallelThreads = parallelThreads;
+	}
+	
+	/**
+	 * @return the number of threads in the {@link TaskScheduler.Lane#BACKGROUND
+	 *         background} lane, or {@code 0} to use one per two available
+	 *         processors
+	 */
+	public int getBackgroundThreads() {
+		
+		return backgroundThreads;
+	}
+	
+	public void setBackgroundThreads(int backgroundThreads) {
+		
+		this.backgroundThreads = backgroundThreads;
+	}
+	
+	/**
+	 * @return the number of tasks which may wait in each lane of the
+	 *         {@link TaskScheduler} before further submissions are pushed back on
+	 *         their submitters
+	 */
+	public int getQueueCapacity() {
+		
+		return queueCapacity;
+	}
+	
+	public void setQueueCapacity(int queueCapacity) {
+		
+		this.queueCapacity = queueCapacity;
+	}
+}
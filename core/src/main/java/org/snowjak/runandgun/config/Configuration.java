@@ -32,12 +32,26 @@ public class Configuration implements Disposable {
 	 */
 	public static final String CONFIG_FOLDER = "config";
 	
+	private ConcurrencyConfiguration concurrency = null;
 	private DisplayConfiguration display = null;
 	private InputConfiguration input = null;
 	private RulesConfiguration rules = null;
 	
 	private final ReentrantLock lock = new ReentrantLock();
 	
+	public ConcurrencyConfiguration concurrency() {
+		
+		if (concurrency == null) {
+			lock.lock();
+			if (concurrency == null)
+				concurrency = loadExternalConfiguration(ConcurrencyConfiguration.class,
+						ConcurrencyConfiguration.CONFIG_FILENAME);
+			lock.unlock();
+		}
+		
+		return concurrency;
+	}
+	
 	public DisplayConfiguration display() {
 		
 		if (display == null) {
@@ -66,9 +80,16 @@ public class Configuration implements Disposable {
 		
 		if (rules == null) {
 			lock.lock();
-			if (rules == null)
-				rules = loadExternalConfiguration(RulesConfiguration.class, RulesConfiguration.CONFIG_FILENAME);
-			lock.unlock();
+			try {
+				if (rules == null) {
+					final RulesConfiguration loaded = loadExternalConfiguration(RulesConfiguration.class,
+							RulesConfiguration.CONFIG_FILENAME);
+					loaded.validate();
+					rules = loaded;
+				}
+			} finally {
+				lock.unlock();
+			}
 		}
 		
 		return rules;
@@ -5,6 +5,8 @@ package org.snowjak.runandgun.config;
 
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.snowjak.runandgun.pathfinding.PathfinderType;
+import org.snowjak.runandgun.systems.FOVUpdatingSystem;
 import org.snowjak.runandgun.systems.PathfindingSystem;
 
 import squidpony.squidmath.CoordPacker;
@@ -23,6 +25,7 @@ public class RulesConfiguration {
 	public static final String CONFIG_FILENAME = "rules.json";
 	
 	private String seed = "abracadabra";
+	private WorldRulesConfiguration world = new WorldRulesConfiguration();
 	private LightingRulesConfiguration lighting = new LightingRulesConfiguration();
 	private EntitySystemRulesConfiguration entitySystem = new EntitySystemRulesConfiguration();
 	
@@ -36,6 +39,11 @@ public class RulesConfiguration {
 		this.seed = seed;
 	}
 	
+	public WorldRulesConfiguration world() {
+		
+		return world;
+	}
+	
 	public LightingRulesConfiguration lighting() {
 		
 		return lighting;
@@ -46,6 +54,75 @@ public class RulesConfiguration {
 		return entitySystem;
 	}
 	
+	/**
+	 * Check every value in this configuration. Gson populates fields directly,
+	 * bypassing any checks in their setters, so this must be called once this
+	 * configuration has been deserialized.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if any value is invalid
+	 */
+	public void validate() {
+		
+		world.validate();
+	}
+	
+	/**
+	 * Configuration relating to the world-map.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public static class WorldRulesConfiguration {
+		
+		private int width = 64, height = 64;
+		
+		/**
+		 * @return the width (in cells) of newly-generated world-maps
+		 */
+		public int getWidth() {
+			
+			return width;
+		}
+		
+		public void setWidth(int width) {
+			
+			checkSize(width);
+			this.width = width;
+		}
+		
+		/**
+		 * @return the height (in cells) of newly-generated world-maps
+		 */
+		public int getHeight() {
+			
+			return height;
+		}
+		
+		public void setHeight(int height) {
+			
+			checkSize(height);
+			this.height = height;
+		}
+		
+		/**
+		 * @throws IllegalArgumentException
+		 *             if either dimension is invalid
+		 */
+		public void validate() {
+			
+			checkSize(width);
+			checkSize(height);
+		}
+		
+		private static void checkSize(int size) {
+			
+			if (size < 1)
+				throw new IllegalArgumentException(
+						"World-maps must be at least 1 cell on a side (given " + size + ").");
+		}
+	}
+	
 	public static class LightingRulesConfiguration {
 		
 		private int levels = 6;
@@ -191,6 +268,14 @@ public class RulesConfiguration {
 	public static class EntitySystemRulesConfiguration {
 		
 		private float pathfindingInterval = 0.5f;
+		private int fovThreads = 0;
+		private int fovCacheSize = 1024;
+		private int pathfindingCacheSize = 64;
+		private int pathfindingRequestsPerInterval = 16;
+		private float pathfindingMillisPerInterval = 4f;
+		private int pathfindingClusterSize = 16;
+		private int flowFieldThreshold = 4;
+		private PathfinderType pathfinder = PathfinderType.DIJKSTRA;
 		
 		/**
 		 * @return the interval (in seconds) regulating the rate at which
@@ -211,5 +296,186 @@ public class RulesConfiguration {
 			
 			this.pathfindingInterval = pathfindingInterval;
 		}
+		
+		/**
+		 * @return the maximum number of {@link PathfindingSystem path-searches}
+		 *         which may be begun during each pathfinding-interval
+		 */
+		public int getPathfindingRequestsPerInterval() {
+			
+			return pathfindingRequestsPerInterval;
+		}
+		
+		/**
+		 * Set the maximum number of {@link PathfindingSystem path-searches} which may
+		 * be begun during each pathfinding-interval. Any further requests wait for a
+		 * later interval.
+		 * <p>
+		 * This is a budget on the <em>count</em> of searches, regardless of how long
+		 * each takes. To bound the time spent, see
+		 * {@link #setPathfindingMillisPerInterval(float)}.
+		 * </p>
+		 * 
+		 * @param pathfindingRequestsPerInterval
+		 */
+		public void setPathfindingRequestsPerInterval(int pathfindingRequestsPerInterval) {
+			
+			this.pathfindingRequestsPerInterval = pathfindingRequestsPerInterval;
+		}
+		
+		/**
+		 * @return the wall-clock time (in milliseconds) which the
+		 *         {@link PathfindingSystem} may spend beginning and applying
+		 *         searches during each pathfinding-interval, or {@code 0} for no
+		 *         limit
+		 */
+		public float getPathfindingMillisPerInterval() {
+			
+			return pathfindingMillisPerInterval;
+		}
+		
+		/**
+		 * Set the wall-clock time (in milliseconds) which the
+		 * {@link PathfindingSystem} may spend beginning and applying searches during
+		 * each pathfinding-interval. Once it is spent, any remaining entities wait
+		 * for a later interval.
+		 * 
+		 * @param pathfindingMillisPerInterval
+		 *            {@code 0} for no limit
+		 */
+		public void setPathfindingMillisPerInterval(float pathfindingMillisPerInterval) {
+			
+			this.pathfindingMillisPerInterval = pathfindingMillisPerInterval;
+		}
+		
+		/**
+		 * @return the number of {@link PathfindingSystem goal-maps} which are cached
+		 *         for re-use, or {@code 0} to disable caching
+		 */
+		public int getPathfindingCacheSize() {
+			
+			return pathfindingCacheSize;
+		}
+		
+		/**
+		 * Set the number of {@link PathfindingSystem goal-maps} which are cached for
+		 * re-use. {@code 0} disables caching.
+		 * 
+		 * @param pathfindingCacheSize
+		 */
+		public void setPathfindingCacheSize(int pathfindingCacheSize) {
+			
+			this.pathfindingCacheSize = pathfindingCacheSize;
+		}
+		
+		/**
+		 * @return the width (and height) of the clusters into which
+		 *         {@link PathfindingSystem hierarchical pathfinding} divides the
+		 *         map, or {@code 0} to disable hierarchical pathfinding
+		 */
+		public int getPathfindingClusterSize() {
+			
+			return pathfindingClusterSize;
+		}
+		
+		/**
+		 * Set the width (and height) of the clusters into which
+		 * {@link PathfindingSystem hierarchical pathfinding} divides the map.
+		 * {@code 0} disables hierarchical pathfinding.
+		 * 
+		 * @param pathfindingClusterSize
+		 */
+		public void setPathfindingClusterSize(int pathfindingClusterSize) {
+			
+			this.pathfindingClusterSize = pathfindingClusterSize;
+		}
+		
+		/**
+		 * @return the type of pathfinder {@link PathfindingSystem pathfinding}
+		 *         uses for point-to-point searches
+		 */
+		public PathfinderType getPathfinder() {
+			
+			return pathfinder;
+		}
+		
+		/**
+		 * Set the type of pathfinder {@link PathfindingSystem pathfinding} uses for
+		 * point-to-point searches.
+		 * 
+		 * @param pathfinder
+		 */
+		public void setPathfinder(PathfinderType pathfinder) {
+			
+			this.pathfinder = pathfinder;
+		}
+		
+		/**
+		 * @return the number of entities which must be headed for the same goal
+		 *         (during the same pathfinding-interval) before
+		 *         {@link PathfindingSystem pathfinding} steers them all by a shared
+		 *         flow-field, or {@code 0} to disable flow-fields
+		 */
+		public int getFlowFieldThreshold() {
+			
+			return flowFieldThreshold;
+		}
+		
+		/**
+		 * Set the number of entities which must be headed for the same goal (during
+		 * the same pathfinding-interval) before {@link PathfindingSystem
+		 * pathfinding} steers them all by a shared flow-field. {@code 0} disables
+		 * flow-fields.
+		 * 
+		 * @param flowFieldThreshold
+		 */
+		public void setFlowFieldThreshold(int flowFieldThreshold) {
+			
+			this.flowFieldThreshold = flowFieldThreshold;
+		}
+		
+		/**
+		 * @return the number of threads across which {@link FOVUpdatingSystem FOV}
+		 *         computation is spread, or {@code 0} to use one per
+		 *         {@link ConcurrencyConfiguration#getParallelThreads() parallel
+		 *         thread}
+		 */
+		public int getFovThreads() {
+			
+			return fovThreads;
+		}
+		
+		/**
+		 * Set the number of threads across which {@link FOVUpdatingSystem FOV}
+		 * computation is spread. {@code 1} computes every FOV on the engine's own
+		 * thread; {@code 0} uses one shard per
+		 * {@link ConcurrencyConfiguration#getParallelThreads() parallel thread}.
+		 * 
+		 * @param fovThreads
+		 */
+		public void setFovThreads(int fovThreads) {
+			
+			this.fovThreads = fovThreads;
+		}
+		
+		/**
+		 * @return the number of {@link FOVUpdatingSystem FOV} results which are
+		 *         cached for re-use, or {@code 0} to disable caching
+		 */
+		public int getFovCacheSize() {
+			
+			return fovCacheSize;
+		}
+		
+		/**
+		 * Set the number of {@link FOVUpdatingSystem FOV} results which are cached
+		 * for re-use. {@code 0} disables caching.
+		 * 
+		 * @param fovCacheSize
+		 */
+		public void setFovCacheSize(int fovCacheSize) {
+			
+			this.fovCacheSize = fovCacheSize;
+		}
 	}
 }
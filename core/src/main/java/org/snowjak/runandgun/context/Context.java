@@ -6,12 +6,13 @@ package org.snowjak.runandgun.context;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Executors;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.snowjak.runandgun.clock.ClockControl;
 import org.snowjak.runandgun.commanders.Commander;
 import org.snowjak.runandgun.commanders.UserCommander;
+import org.snowjak.runandgun.concurrent.TaskScheduler;
+import org.snowjak.runandgun.concurrent.TaskScheduler.Lane;
 import org.snowjak.runandgun.config.Configuration;
 import org.snowjak.runandgun.events.CurrentMapChangedEvent;
 import org.snowjak.runandgun.events.CurrentTeamChangedEvent;
@@ -32,7 +33,6 @@ import com.badlogic.ashley.core.PooledEngine;
 import com.badlogic.gdx.utils.Disposable;
 import com.google.common.eventbus.EventBus;
 import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.Gson;
 
 import squidpony.squidgrid.gui.gdx.TextCellFactory.Glyph;
@@ -56,15 +56,15 @@ public class Context implements Disposable {
 	private POV pov = null;
 	private PooledEngine engine = null;
 	private IRNG rng = null;
+	private TaskScheduler scheduler = null;
 	
 	private AbstractScreen currentScreen = null;
 	private GlyphControl glyphMovement = null;
 	private DecorationProvider decorationProvider = null;
 	private GlobalMap map = null;
 	private Team team = null;
-	private KnownMap currentMap = null;
+	private volatile KnownMap currentMap = null;
 	
-	private final ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
 	private final EventBus eventBus = new EventBus();
 	private final ClockControl clockControl = new ClockControl();
 	
@@ -98,11 +98,29 @@ public class Context implements Disposable {
 	}
 	
 	/**
-	 * @return the shared {@link ListeningExecutorService} instance
+	 * @return the shared {@link TaskScheduler} instance
 	 */
-	public ListeningExecutorService executor() {
+	public TaskScheduler scheduler() {
 		
-		return executor;
+		if (scheduler == null) {
+			initLock.lock();
+			if (scheduler == null)
+				scheduler = new TaskScheduler(config().concurrency());
+			initLock.unlock();
+		}
+		
+		return scheduler;
+	}
+	
+	/**
+	 * @param lane
+	 * @return a {@link ListeningExecutorService} submitting to the given
+	 *         {@link TaskScheduler#lane(Lane) lane} of the shared
+	 *         {@link #scheduler() TaskScheduler}
+	 */
+	public ListeningExecutorService executor(Lane lane) {
+		
+		return scheduler().lane(lane);
 	}
 	
 	/**
@@ -303,7 +321,7 @@ public class Context implements Disposable {
 				
 				final Team playerTeam = engine.getSystem(TeamManager.class).getTeam("player");
 				setTeam(playerTeam);
-				setDisplayMap(playerTeam.getMap().copy());
+				setDisplayMap(playerTeam.getMap().snapshot());
 			}
 			initLock.unlock();
 		}
@@ -386,7 +404,8 @@ public class Context implements Disposable {
 		EngineBuilder.persist();
 		
 		config().dispose();
-		executor().shutdownNow();
+		if (scheduler != null)
+			scheduler.shutdownNow();
 		
 		if (currentScreen != null)
 			currentScreen.dispose();
@@ -0,0 +1,76 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.events;
+
+import org.snowjak.runandgun.map.GlobalMap;
+
+/**
+ * Indicates that some cells of a {@link GlobalMap} have been modified. The
+ * modified cells all lie within the (inclusive) rectangle given by this event.
+ * 
+ * @author snowjak88
+ *
+ */
+public class MapRegionChangedEvent implements Event {
+	
+	private final GlobalMap map;
+	private final int minX, minY, maxX, maxY;
+	private final long revision;
+	
+	public MapRegionChangedEvent(GlobalMap map, int minX, int minY, int maxX, int maxY, long revision) {
+		
+		this.map = map;
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.revision = revision;
+	}
+	
+	/**
+	 * @return the {@link GlobalMap} that was modified
+	 */
+	public GlobalMap getMap() {
+		
+		return map;
+	}
+	
+	public int getMinX() {
+		
+		return minX;
+	}
+	
+	public int getMinY() {
+		
+		return minY;
+	}
+	
+	public int getMaxX() {
+		
+		return maxX;
+	}
+	
+	public int getMaxY() {
+		
+		return maxY;
+	}
+	
+	/**
+	 * @param x
+	 * @param y
+	 * @return {@code true} if the given cell lies within the changed region
+	 */
+	public boolean contains(int x, int y) {
+		
+		return x >= minX && x <= maxX && y >= minY && y <= maxY;
+	}
+	
+	/**
+	 * @return the map's {@link GlobalMap#getRevision() revision} as of this change
+	 */
+	public long getRevision() {
+		
+		return revision;
+	}
+}
@@ -0,0 +1,229 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.map;
+
+import java.util.HashMap;
+
+import squidpony.squidmath.Coord;
+import squidpony.squidmath.GreasedRegion;
+
+/**
+ * A set of map-cells, held as a sparse bitset.
+ * <p>
+ * Cells are grouped into square blocks, held at one bit per cell, which are
+ * only allocated once a cell within them is added. A region therefore takes
+ * memory (and time to visit) proportional to the area it spans, not to the size
+ * of the map it lies in -- and, unlike a {@link squidpony.squidmath.CoordPacker
+ * packed} region, it places no limit on the size of that map.
+ * </p>
+ * <p>
+ * A CellRegion is not thread-safe while being modified. Regions shared between
+ * threads (e.g., those held by an {@link FOVResult}) must not be modified.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class CellRegion {
+	
+	private static final int SHIFT = 6, SIZE = 1 << SHIFT, MASK = SIZE - 1;
+	
+	/**
+	 * Each block is held as {@link #SIZE} words, one per column; bit {@code y} of
+	 * word {@code x} holds cell ({@code x}, {@code y}) within the block.
+	 */
+	private final java.util.Map<Long, long[]> blocks = new HashMap<>();
+	
+	public CellRegion() {
+	
+	}
+	
+	/**
+	 * Construct a copy of the given region.
+	 * 
+	 * @param toCopy
+	 */
+	public CellRegion(CellRegion toCopy) {
+		
+		for (java.util.Map.Entry<Long, long[]> e : toCopy.blocks.entrySet())
+			blocks.put(e.getKey(), e.getValue().clone());
+	}
+	
+	/**
+	 * @param region
+	 * @return a new CellRegion holding every cell in the given
+	 *         {@link GreasedRegion}
+	 */
+	public static CellRegion of(GreasedRegion region) {
+		
+		final CellRegion result = new CellRegion();
+		for (Coord c : region)
+			result.add(c.x, c.y);
+		return result;
+	}
+	
+	/**
+	 * @param x
+	 * @param y
+	 * @return {@code true} if the given cell is in this region
+	 */
+	public boolean contains(int x, int y) {
+		
+		final long[] block = blocks.get(key(x >> SHIFT, y >> SHIFT));
+		return block != null && (block[x & MASK] & (1L << (y & MASK))) != 0;
+	}
+	
+	/**
+	 * @param coord
+	 * @return {@code true} if the given cell is in this region
+	 */
+	public boolean contains(Coord coord) {
+		
+		return contains(coord.x, coord.y);
+	}
+	
+	/**
+	 * Add the given cell to this region.
+	 * 
+	 * @param x
+	 * @param y
+	 */
+	public void add(int x, int y) {
+		
+		blocks.computeIfAbsent(key(x >> SHIFT, y >> SHIFT), k -> new long[SIZE])[x & MASK] |= (1L << (y & MASK));
+	}
+	
+	/**
+	 * Add every cell in the other region to this region. This takes time
+	 * proportional to the number of blocks in the other region.
+	 * 
+	 * @param other
+	 * @return this region
+	 */
+	public CellRegion or(CellRegion other) {
+		
+		for (java.util.Map.Entry<Long, long[]> e : other.blocks.entrySet()) {
+			final long[] block = blocks.get(e.getKey());
+			if (block == null) {
+				blocks.put(e.getKey(), e.getValue().clone());
+				continue;
+			}
+			
+			final long[] from = e.getValue();
+			for (int i = 0; i < SIZE; i++)
+				block[i] |= from[i];
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * @return {@code true} if this region holds no cells
+	 */
+	public boolean isEmpty() {
+		
+		for (long[] block : blocks.values())
+			for (long word : block)
+				if (word != 0)
+					return false;
+		
+		return true;
+	}
+	
+	/**
+	 * @return the number of cells in this region
+	 */
+	public int size() {
+		
+		int size = 0;
+		for (long[] block : blocks.values())
+			for (long word : block)
+				size += Long.bitCount(word);
+		
+		return size;
+	}
+	
+	/**
+	 * @return the number of blocks allocated by this region
+	 */
+	public int getBlockCount() {
+		
+		return blocks.size();
+	}
+	
+	/**
+	 * Visit every cell in this region, in no particular order. This takes time
+	 * proportional to the number of blocks plus the number of cells.
+	 * 
+	 * @param visitor
+	 */
+	public void forEach(CellVisitor visitor) {
+		
+		for (java.util.Map.Entry<Long, long[]> e : blocks.entrySet()) {
+			final long key = e.getKey();
+			final int blockX = (int) (key >> 32) << SHIFT, blockY = (int) key << SHIFT;
+			final long[] block = e.getValue();
+			
+			for (int i = 0; i < SIZE; i++) {
+				long remaining = block[i];
+				while (remaining != 0) {
+					visitor.visit(blockX | i, blockY | Long.numberOfTrailingZeros(remaining));
+					remaining &= remaining - 1;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Encode this region as a flat array -- e.g., for persistence. Each non-empty
+	 * block is written as its block-coordinates, followed by its words.
+	 * 
+	 * @return
+	 * @see #decode(long[])
+	 */
+	public long[] encode() {
+		
+		final long[] result = new long[blocks.size() * (SIZE + 1)];
+		int i = 0;
+		for (java.util.Map.Entry<Long, long[]> e : blocks.entrySet()) {
+			result[i++] = e.getKey();
+			System.arraycopy(e.getValue(), 0, result, i, SIZE);
+			i += SIZE;
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @param encoded
+	 * @return the region {@link #encode() encoded} by the given array
+	 * @throws IllegalArgumentException
+	 *             if the given array is not a valid encoding
+	 */
+	public static CellRegion decode(long[] encoded) {
+		
+		if (encoded.length % (SIZE + 1) != 0)
+			throw new IllegalArgumentException("Cannot decode region -- encoding has an incomplete block.");
+		
+		final CellRegion result = new CellRegion();
+		for (int i = 0; i < encoded.length; i += SIZE + 1) {
+			final long[] block = new long[SIZE];
+			System.arraycopy(encoded, i + 1, block, 0, SIZE);
+			result.blocks.put(encoded[i], block);
+		}
+		
+		return result;
+	}
+	
+	private static long key(int blockX, int blockY) {
+		
+		return ((long) blockX << 32) | (blockY & 0xFFFFFFFFL);
+	}
+	
+	@FunctionalInterface
+	public interface CellVisitor {
+		
+		public void visit(int x, int y);
+	}
+}
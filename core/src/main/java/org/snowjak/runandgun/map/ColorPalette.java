@@ -0,0 +1,101 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.map;
+
+import java.util.HashMap;
+
+import com.badlogic.gdx.graphics.Color;
+
+/**
+ * An append-only table of {@link Color}s, allowing a map to store a compact
+ * {@code short} index per cell instead of a Color reference.
+ * <p>
+ * Index {@code 0} is reserved to mean "no color". Because entries are never
+ * removed or re-ordered, an index, once handed out, always resolves to the same
+ * Color.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+class ColorPalette {
+	
+	private final java.util.Map<Color, Short> colorToIndex = new HashMap<>();
+	private volatile Color[] indexToColor = new Color[] { null };
+	
+	/**
+	 * Get the index associated with the given {@link Color}, adding it to this
+	 * palette if necessary.
+	 * 
+	 * @param color
+	 * @return {@code 0} if {@code color} is {@code null}
+	 * @throws IllegalStateException
+	 *             if this palette has no room for another Color
+	 */
+	public short indexOf(Color color) {
+		
+		if (color == null)
+			return 0;
+		
+		synchronized (this) {
+			final Short existing = colorToIndex.get(color);
+			if (existing != null)
+				return existing;
+			
+			final Color[] current = indexToColor;
+			if (current.length > Short.MAX_VALUE)
+				throw new IllegalStateException("Cannot add color to palette -- palette is full!");
+			
+			final Color[] updated = new Color[current.length + 1];
+			System.arraycopy(current, 0, updated, 0, current.length);
+			updated[current.length] = color;
+			
+			final short index = (short) current.length;
+			colorToIndex.put(color, index);
+			indexToColor = updated;
+			
+			return index;
+		}
+	}
+	
+	/**
+	 * Get the index associated with the given {@link Color}, without adding it to
+	 * this palette.
+	 * 
+	 * @param color
+	 * @return {@code 0} if {@code color} is {@code null} or not in this palette
+	 */
+	public short find(Color color) {
+		
+		if (color == null)
+			return 0;
+		
+		synchronized (this) {
+			return colorToIndex.getOrDefault(color, (short) 0);
+		}
+	}
+	
+	/**
+	 * @param index
+	 * @return the {@link Color} associated with the given index, or {@code null}
+	 *         if no such Color exists
+	 */
+	public Color get(short index) {
+		
+		final Color[] current = indexToColor;
+		if (index <= 0 || index >= current.length)
+			return null;
+		
+		return current[index];
+	}
+	
+	/**
+	 * @return the number of indices handed out by this palette, including the
+	 *         reserved "no color" index
+	 */
+	public int size() {
+		
+		return indexToColor.length;
+	}
+}
@@ -0,0 +1,240 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.map;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+import com.badlogic.ashley.core.Entity;
+
+import squidpony.squidgrid.Radius;
+import squidpony.squidmath.Coord;
+
+/**
+ * A spatial index of {@link Entity Entities}, bucketed by cell.
+ * <p>
+ * Cells are grouped into square chunks, which are only allocated once an Entity
+ * is placed within them. Range- and radius-queries visit only those chunks
+ * overlapping the query-area, skipping empty chunks outright, and so cost time
+ * proportional to the area searched plus the number of Entities found --
+ * independent of the map's overall size or population.
+ * </p>
+ * <p>
+ * This class is not thread-safe; its owner is expected to synchronize access.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class EntityIndex {
+	
+	private static final int SHIFT = 4, SIZE = 1 << SHIFT, MASK = SIZE - 1;
+	
+	private final int width, height, chunksHigh;
+	private final Chunk[] chunks;
+	
+	private final java.util.Map<Entity, Coord> entityToCoord = new HashMap<>();
+	
+	public EntityIndex(int width, int height) {
+		
+		this.width = width;
+		this.height = height;
+		
+		final int chunksWide = (width + MASK) >> SHIFT;
+		this.chunksHigh = (height + MASK) >> SHIFT;
+		this.chunks = new Chunk[chunksWide * chunksHigh];
+	}
+	
+	/**
+	 * @return the number of {@link Entity Entities} in this index
+	 */
+	public int size() {
+		
+		return entityToCoord.size();
+	}
+	
+	/**
+	 * @param entity
+	 * @return the given {@link Entity}'s location, or {@code null} if it is not in
+	 *         this index
+	 */
+	public Coord get(Entity entity) {
+		
+		return entityToCoord.get(entity);
+	}
+	
+	/**
+	 * Place the given {@link Entity} at the given location, moving it if it is
+	 * already in this index.
+	 * 
+	 * @param entity
+	 * @param coord
+	 * @throws IllegalArgumentException
+	 *             if {@code coord} lies outside this index's bounds
+	 */
+	public void put(Entity entity, Coord coord) {
+		
+		if (!isInBounds(coord.x, coord.y))
+			throw new IllegalArgumentException("Cannot index entity at " + coord + " -- outside of map-bounds!");
+		
+		final Coord previous = entityToCoord.put(entity, coord);
+		if (previous != null) {
+			if (previous.x == coord.x && previous.y == coord.y)
+				return;
+			removeFromCell(entity, previous.x, previous.y);
+		}
+		
+		final int c = chunkIndex(coord.x, coord.y);
+		if (chunks[c] == null)
+			chunks[c] = new Chunk();
+		
+		chunks[c].add(entity, cellIndex(coord.x, coord.y));
+	}
+	
+	/**
+	 * Remove the given {@link Entity} from this index.
+	 * 
+	 * @param entity
+	 * @return {@code true} if the Entity was in this index
+	 */
+	public boolean remove(Entity entity) {
+		
+		final Coord previous = entityToCoord.remove(entity);
+		if (previous == null)
+			return false;
+		
+		removeFromCell(entity, previous.x, previous.y);
+		return true;
+	}
+	
+	/**
+	 * @param x
+	 * @param y
+	 * @return the {@link Entity Entities} at the given cell (never {@code null})
+	 */
+	public Collection<Entity> getAt(int x, int y) {
+		
+		if (!isInBounds(x, y))
+			return Collections.emptyList();
+		
+		final Chunk chunk = chunks[chunkIndex(x, y)];
+		if (chunk == null)
+			return Collections.emptyList();
+		
+		final ArrayList<Entity> cell = chunk.cells[cellIndex(x, y)];
+		return (cell == null) ? Collections.emptyList() : Collections.unmodifiableList(cell);
+	}
+	
+	/**
+	 * Visit every {@link Entity} within the given rectangle (inclusive, and
+	 * clipped to this index's bounds).
+	 * 
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 * @param consumer
+	 */
+	public void forEachInRange(int minX, int minY, int maxX, int maxY, Consumer<Entity> consumer) {
+		
+		forEachWithin(minX, minY, maxX, maxY, 0, 0, -1, null, consumer);
+	}
+	
+	/**
+	 * Visit every {@link Entity} within {@code radius} of the given point, with
+	 * distance measured according to the given {@link Radius}.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param radius
+	 * @param shape
+	 * @param consumer
+	 */
+	public void forEachInRadius(int x, int y, int radius, Radius shape, Consumer<Entity> consumer) {
+		
+		if (radius < 0)
+			return;
+		
+		forEachWithin(x - radius, y - radius, x + radius, y + radius, x, y, radius, shape, consumer);
+	}
+	
+	private void forEachWithin(int minX, int minY, int maxX, int maxY, int centerX, int centerY, int radius,
+			Radius shape, Consumer<Entity> consumer) {
+		
+		minX = Math.max(minX, 0);
+		minY = Math.max(minY, 0);
+		maxX = Math.min(maxX, width - 1);
+		maxY = Math.min(maxY, height - 1);
+		
+		for (int cx = minX >> SHIFT; cx <= maxX >> SHIFT; cx++)
+			for (int cy = minY >> SHIFT; cy <= maxY >> SHIFT; cy++) {
+				final Chunk chunk = chunks[cx * chunksHigh + cy];
+				if (chunk == null || chunk.count == 0)
+					continue;
+				
+				final int startX = Math.max(minX, cx << SHIFT), endX = Math.min(maxX, (cx << SHIFT) | MASK);
+				final int startY = Math.max(minY, cy << SHIFT), endY = Math.min(maxY, (cy << SHIFT) | MASK);
+				
+				for (int x = startX; x <= endX; x++)
+					for (int y = startY; y <= endY; y++) {
+						final ArrayList<Entity> cell = chunk.cells[cellIndex(x, y)];
+						if (cell == null || cell.isEmpty())
+							continue;
+						
+						if (shape != null && shape.radius(centerX, centerY, x, y) > radius)
+							continue;
+						
+						for (int i = 0; i < cell.size(); i++)
+							consumer.accept(cell.get(i));
+					}
+			}
+	}
+	
+	private void removeFromCell(Entity entity, int x, int y) {
+		
+		final Chunk chunk = chunks[chunkIndex(x, y)];
+		if (chunk != null)
+			chunk.remove(entity, cellIndex(x, y));
+	}
+	
+	private boolean isInBounds(int x, int y) {
+		
+		return !(x < 0 || y < 0 || x >= width || y >= height);
+	}
+	
+	private int chunkIndex(int x, int y) {
+		
+		return (x >> SHIFT) * chunksHigh + (y >> SHIFT);
+	}
+	
+	private static int cellIndex(int x, int y) {
+		
+		return ((x & MASK) << SHIFT) | (y & MASK);
+	}
+	
+	private static class Chunk {
+		
+		@SuppressWarnings("unchecked")
+		final ArrayList<Entity>[] cells = new ArrayList[SIZE * SIZE];
+		int count = 0;
+		
+		void add(Entity entity, int cell) {
+			
+			if (cells[cell] == null)
+				cells[cell] = new ArrayList<>(2);
+			
+			cells[cell].add(entity);
+			count++;
+		}
+		
+		void remove(Entity entity, int cell) {
+			
+			if (cells[cell] != null && cells[cell].remove(entity))
+				count--;
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.map;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.badlogic.ashley.core.Entity;
+
+import squidpony.squidgrid.Radius;
+import squidpony.squidmath.Coord;
+
+/**
+ * A reusable query for {@link Entity Entities} near a point on a {@link Map}.
+ * <p>
+ * An EntityQuery holds on to its result-buffer between queries, so a caller
+ * that keeps its EntityQuery around (e.g., one per system or per thread) can
+ * run radius- and nearest-Entity searches without allocating. An EntityQuery
+ * is not thread-safe.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class EntityQuery implements Consumer<Entity> {
+	
+	private final ArrayList<Entity> results = new ArrayList<>();
+	private final List<Entity> resultsView = Collections.unmodifiableList(results);
+	
+	private Map map;
+	private Predicate<Entity> filter;
+	private int centerX, centerY;
+	private Radius shape;
+	
+	private Entity nearest;
+	private double nearestDistance;
+	private boolean findNearest;
+	
+	/**
+	 * Find all {@link Entity Entities} within {@code radius} of the given point.
+	 * 
+	 * @param map
+	 * @param x
+	 * @param y
+	 * @param radius
+	 * @param shape
+	 *            how distance should be measured
+	 * @return the Entities found, valid until this EntityQuery is next used
+	 */
+	public List<Entity> near(Map map, int x, int y, int radius, Radius shape) {
+		
+		return near(map, x, y, radius, shape, null);
+	}
+	
+	/**
+	 * Find all {@link Entity Entities} within {@code radius} of the given point
+	 * that satisfy the given filter.
+	 * 
+	 * @param map
+	 * @param x
+	 * @param y
+	 * @param radius
+	 * @param shape
+	 *            how distance should be measured
+	 * @param filter
+	 *            a filter to apply to found Entities, or {@code null} to accept
+	 *            all
+	 * @return the Entities found, valid until this EntityQuery is next used
+	 */
+	public List<Entity> near(Map map, int x, int y, int radius, Radius shape, Predicate<Entity> filter) {
+		
+		results.clear();
+		run(map, x, y, radius, shape, filter, false);
+		return resultsView;
+	}
+	
+	/**
+	 * Find the {@link Entity} nearest to the given point, if any lies within
+	 * {@code radius} and satisfies the given filter.
+	 * 
+	 * @param map
+	 * @param x
+	 * @param y
+	 * @param radius
+	 * @param shape
+	 *            how distance should be measured
+	 * @param filter
+	 *            a filter to apply to found Entities, or {@code null} to accept
+	 *            all
+	 * @return the nearest Entity, or {@code null} if none was found
+	 */
+	public Entity nearest(Map map, int x, int y, int radius, Radius shape, Predicate<Entity> filter) {
+		
+		nearest = null;
+		nearestDistance = Double.MAX_VALUE;
+		run(map, x, y, radius, shape, filter, true);
+		
+		final Entity result = nearest;
+		nearest = null;
+		return result;
+	}
+	
+	private void run(Map map, int x, int y, int radius, Radius shape, Predicate<Entity> filter,
+			boolean findNearest) {
+		
+		this.map = map;
+		this.filter = filter;
+		this.centerX = x;
+		this.centerY = y;
+		this.shape = shape;
+		this.findNearest = findNearest;
+		
+		try {
+			map.forEachEntityNear(x, y, radius, shape, this);
+		} finally {
+			this.map = null;
+			this.filter = null;
+			this.shape = null;
+		}
+	}
+	
+	/**
+	 * Called by {@link Map#forEachEntityNear(int, int, int, Radius, Consumer)} for
+	 * each {@link Entity} found. Not intended to be called directly.
+	 */
+	@Override
+	public void accept(Entity entity) {
+		
+		if (filter != null && !filter.test(entity))
+			return;
+		
+		if (!findNearest) {
+			results.add(entity);
+			return;
+		}
+		
+		final Coord location = map.getEntityLocation(entity);
+		if (location == null)
+			return;
+		
+		final double distance = shape.radius(centerX, centerY, location.x, location.y);
+		if (distance < nearestDistance) {
+			nearest = entity;
+			nearestDistance = distance;
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.map;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import squidpony.squidgrid.Radius;
+
+/**
+ * A least-recently-used cache of {@link FOVResult}s.
+ * <p>
+ * Results are keyed on everything a field-of-view computation depends upon:
+ * the viewer's location, its sight-distance and {@link Radius shape}, and the
+ * {@link GlobalMap#getRevision() revision} of the map it was computed on. Any
+ * change to the map therefore leaves older results unreachable, to be evicted
+ * in due course.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class FOVCache {
+	
+	private final int capacity;
+	private final LinkedHashMap<Key, FOVResult> results;
+	
+	private GlobalMap map = null;
+	
+	private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+	
+	/**
+	 * @param capacity
+	 *            the maximum number of results to retain
+	 */
+	public FOVCache(int capacity) {
+		
+		this.capacity = capacity;
+		this.results = new LinkedHashMap<Key, FOVResult>(16, 0.75f, true) {
+			
+			private static final long serialVersionUID = -2207446718466117407L;
+			
+			@Override
+			protected boolean removeEldestEntry(java.util.Map.Entry<Key, FOVResult> eldest) {
+				
+				return size() > FOVCache.this.capacity;
+			}
+		};
+	}
+	
+	/**
+	 * @param map
+	 * @param revision
+	 *            the map's {@link GlobalMap#getRevision() revision}
+	 * @param x
+	 * @param y
+	 * @param distance
+	 * @param shape
+	 * @return the cached result, or {@code null} if no such result is cached
+	 */
+	public FOVResult get(GlobalMap map, long revision, int x, int y, int distance, Radius shape) {
+		
+		final FOVResult result;
+		synchronized (this) {
+			result = (map == this.map) ? results.get(new Key(revision, x, y, distance, shape)) : null;
+		}
+		
+		if (result == null)
+			misses.incrementAndGet();
+		else
+			hits.incrementAndGet();
+		
+		return result;
+	}
+	
+	/**
+	 * Cache the given result. If this cache currently holds results for some other
+	 * {@link GlobalMap}, those are discarded.
+	 * 
+	 * @param map
+	 * @param revision
+	 *            the map's {@link GlobalMap#getRevision() revision}
+	 * @param x
+	 * @param y
+	 * @param distance
+	 * @param shape
+	 * @param result
+	 */
+	public void put(GlobalMap map, long revision, int x, int y, int distance, Radius shape, FOVResult result) {
+		
+		if (capacity <= 0)
+			return;
+		
+		synchronized (this) {
+			if (map != this.map) {
+				results.clear();
+				this.map = map;
+			}
+			
+			results.put(new Key(revision, x, y, distance, shape), result);
+		}
+	}
+	
+	/**
+	 * Discard all cached results.
+	 */
+	public void clear() {
+		
+		synchronized (this) {
+			results.clear();
+			map = null;
+		}
+	}
+	
+	/**
+	 * @return the number of results currently cached
+	 */
+	public int size() {
+		
+		synchronized (this) {
+			return results.size();
+		}
+	}
+	
+	/**
+	 * @return the number of {@link #get(GlobalMap, long, int, int, int, Radius)
+	 *         lookups} which found a cached result
+	 */
+	public long getHits() {
+		
+		return hits.get();
+	}
+	
+	/**
+	 * @return the number of {@link #get(GlobalMap, long, int, int, int, Radius)
+	 *         lookups} which found no cached result
+	 */
+	public long getMisses() {
+		
+		return misses.get();
+	}
+	
+	private static class Key {
+		
+		private final long revision;
+		private final int x, y, distance;
+		private final Radius shape;
+		
+		public Key(long revision, int x, int y, int distance, Radius shape) {
+			
+			this.revision = revision;
+			this.x = x;
+			this.y = y;
+			this.distance = distance;
+			this.shape = shape;
+		}
+		
+		@Override
+		public int hashCode() {
+			
+			int result = Long.hashCode(revision);
+			result = 31 * result + x;
+			result = 31 * result + y;
+			result = 31 * result + distance;
+			result = 31 * result + shape.hashCode();
+			return result;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			
+			final Key other = (Key) obj;
+			return revision == other.revision && x == other.x && y == other.y && distance == other.distance
+					&& shape == other.shape;
+		}
+	}
+}
@@ -0,0 +1,247 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.map;
+
+import java.util.Arrays;
+
+import org.snowjak.runandgun.config.RulesConfiguration.LightingRulesConfiguration;
+import org.snowjak.runandgun.context.Context;
+
+import squidpony.squidmath.CoordPacker;
+
+/**
+ * The (compressed) result of a single field-of-view computation.
+ * <p>
+ * Light-levels are held only for a window of the map, whose {@code [0][0]}
+ * corresponds to the map-location ({@link #getOriginX()},
+ * {@link #getOriginY()}); every map-location outside that window is taken to
+ * be unseen. Within that window, each cell is held as a single byte, giving the
+ * {@link LightingRulesConfiguration#getLevels() lighting-level} it was rounded
+ * down to, so that per-cell queries take constant time.
+ * </p>
+ * <p>
+ * An FOVResult is immutable, and so may be freely shared.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class FOVResult {
+	
+	/**
+	 * An FOVResult in which nothing is seen.
+	 */
+	public static final FOVResult NONE = new FOVResult(new byte[0], 0, 0, 0, 0, new CellRegion());
+	
+	/**
+	 * Cell-values within {@link #levels}: unseen, or seen but below the lowest
+	 * lighting-level. Higher values {@code v} denote lighting-level {@code v - 2}.
+	 */
+	private static final byte UNSEEN = 0, SEEN_UNLIT = 1;
+	
+	private final byte[] levels;
+	private final int originX, originY, width, height;
+	private final CellRegion seen;
+	
+	private FOVResult(byte[] levels, int originX, int originY, int width, int height, CellRegion seen) {
+		
+		this.levels = levels;
+		this.originX = originX;
+		this.originY = originY;
+		this.width = width;
+		this.height = height;
+		this.seen = seen;
+	}
+	
+	/**
+	 * Compress the given window of light-levels into a new FOVResult.
+	 * 
+	 * @param lightLevels
+	 * @param originX
+	 *            the map-location corresponding to {@code lightLevels[0][0]}
+	 * @param originY
+	 *            the map-location corresponding to {@code lightLevels[0][0]}
+	 * @return
+	 */
+	public static FOVResult of(double[][] lightLevels, int originX, int originY) {
+		
+		final int width = lightLevels.length, height = (width == 0) ? 0 : lightLevels[0].length;
+		if (width == 0 || height == 0)
+			return NONE;
+		
+		final double[] packingLevels = Context.get().config().rules().lighting().getLightingLevelsForPacking();
+		
+		final byte[] levels = new byte[width * height];
+		final CellRegion seen = new CellRegion();
+		
+		for (int x = 0; x < width; x++)
+			for (int y = 0; y < height; y++) {
+				final double value = lightLevels[x][y];
+				if (value <= 0)
+					continue;
+				
+				int level = packingLevels.length - 1;
+				while (level >= 0 && value <= packingLevels[level])
+					level--;
+				
+				levels[x * height + y] = (byte) (level + 2);
+				seen.add(originX + x, originY + y);
+			}
+		
+		return new FOVResult(levels, originX, originY, width, height, seen);
+	}
+	
+	/**
+	 * @return the map-location corresponding to the left edge of this result's
+	 *         window
+	 */
+	public int getOriginX() {
+		
+		return originX;
+	}
+	
+	/**
+	 * @return the map-location corresponding to the top edge of this result's
+	 *         window
+	 */
+	public int getOriginY() {
+		
+		return originY;
+	}
+	
+	/**
+	 * @return the width of this result's window
+	 */
+	public int getWidth() {
+		
+		return width;
+	}
+	
+	/**
+	 * @return the height of this result's window
+	 */
+	public int getHeight() {
+		
+		return height;
+	}
+	
+	/**
+	 * Unpack this result's light-levels into a new map-sized array.
+	 * 
+	 * @param mapWidth
+	 * @param mapHeight
+	 * @return
+	 * @see #copyLightLevels(double[][])
+	 */
+	public double[][] getLightLevels(int mapWidth, int mapHeight) {
+		
+		final double[][] lightLevels = new double[mapWidth][mapHeight];
+		copyWindow(lightLevels);
+		return lightLevels;
+	}
+	
+	/**
+	 * Unpack this result's light-levels into the given (map-sized) array, which is
+	 * overwritten in its entirety.
+	 * 
+	 * @param lightLevels
+	 */
+	public void copyLightLevels(double[][] lightLevels) {
+		
+		for (int x = 0; x < lightLevels.length; x++)
+			Arrays.fill(lightLevels[x], 0.0);
+		
+		copyWindow(lightLevels);
+	}
+	
+	private void copyWindow(double[][] lightLevels) {
+		
+		if (width == 0)
+			return;
+		
+		final double[] unpackingLevels = Context.get().config().rules().lighting().getLightingLevelsForUnpacking();
+		final int mapWidth = lightLevels.length, mapHeight = (mapWidth == 0) ? 0 : lightLevels[0].length;
+		
+		final int fromX = Math.max(0, originX), toX = Math.min(mapWidth, originX + width);
+		final int fromY = Math.max(0, originY), toY = Math.min(mapHeight, originY + height);
+		
+		for (int mapX = fromX; mapX < toX; mapX++) {
+			final int column = (mapX - originX) * height;
+			for (int mapY = fromY; mapY < toY; mapY++)
+				lightLevels[mapX][mapY] = toLightLevel(levels[column + mapY - originY], unpackingLevels);
+		}
+	}
+	
+	/**
+	 * Get the light-level for the given map-location.
+	 * <p>
+	 * Note that, with compression, light-levels will be reported in distinct
+	 * {@link LightingRulesConfiguration#getLevels() levels}.
+	 * </p>
+	 * 
+	 * @param mapX
+	 * @param mapY
+	 * @return
+	 */
+	public double getLightLevel(int mapX, int mapY) {
+		
+		return toLightLevel(getLevel(mapX, mapY),
+				Context.get().config().rules().lighting().getLightingLevelsForUnpacking());
+	}
+	
+	/**
+	 * Pack this result's light-levels, in this result's window-coordinates, as by
+	 * {@link CoordPacker#packMulti(double[][], double[])} -- e.g., for
+	 * persistence.
+	 * 
+	 * @return
+	 */
+	public short[][] getPackedLightLevels() {
+		
+		final double[][] window = new double[width][height];
+		final double[] unpackingLevels = Context.get().config().rules().lighting().getLightingLevelsForUnpacking();
+		for (int x = 0; x < width; x++)
+			for (int y = 0; y < height; y++)
+				window[x][y] = toLightLevel(levels[x * height + y], unpackingLevels);
+		
+		return CoordPacker.packMulti(window, Context.get().config().rules().lighting().getLightingLevelsForPacking());
+	}
+	
+	/**
+	 * @return the region (in map-coordinates) for which the light-level is greater
+	 *         than 0, which must not be modified
+	 */
+	public CellRegion getSeen() {
+		
+		return seen;
+	}
+	
+	/**
+	 * @param mapX
+	 * @param mapY
+	 * @return {@code true} if the light-level for the given map-location exceeds
+	 *         0.0
+	 */
+	public boolean isSeen(int mapX, int mapY) {
+		
+		return getLevel(mapX, mapY) != UNSEEN;
+	}
+	
+	private byte getLevel(int mapX, int mapY) {
+		
+		final int x = mapX - originX, y = mapY - originY;
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return UNSEEN;
+		
+		return levels[x * height + y];
+	}
+	
+	private static double toLightLevel(byte level, double[] unpackingLevels) {
+		
+		if (level == UNSEEN || level == SEEN_UNLIT)
+			return 0.0;
+		
+		return unpackingLevels[Math.min(level - 2, unpackingLevels.length - 1)];
+	}
+}
@@ -3,19 +3,24 @@
  */
 package org.snowjak.runandgun.map;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
+
+import org.snowjak.runandgun.context.Context;
+import org.snowjak.runandgun.events.MapRegionChangedEvent;
+import org.snowjak.runandgun.pathfinding.BlockedCells;
 
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.gdx.graphics.Color;
 
+import squidpony.squidgrid.Radius;
 import squidpony.squidgrid.gui.gdx.MapUtility;
-import squidpony.squidgrid.mapping.DungeonUtility;
 import squidpony.squidmath.Coord;
 import squidpony.squidmath.GreasedRegion;
 
@@ -27,6 +32,30 @@ import squidpony.squidmath.GreasedRegion;
  * {@link #setMap(char, int, int, float, float)}, to ensure that all
  * interrelated data-structures are updated appropriately.
  * </p>
+ * <p>
+ * Map-contents are held in {@link GlobalMapChunk chunks}, which are only
+ * allocated where the map holds something other than solid {@link #FILL
+ * wall}; a GlobalMap's memory thus grows with the chunks in use, not with its
+ * overall size. Field-of-view copies {@link #copyVisibilityResistance(int, int,
+ * double[][]) visibility-resistance} out of those chunks for only the window it
+ * needs, and {@link #getWalls() terrain-masks} are built from them at one bit
+ * per cell. DijkstraMap-based pathfinding, however, still needs the whole-map
+ * {@link #getBareMap() bare map}, and every scanned goal-map holds a whole-map
+ * gradient; the memory these take scales with the map's overall size, and so
+ * they are avoided on large maps.
+ * </p>
+ * <p>
+ * The whole-map arrays handed out by {@link #getBareMap()} and
+ * {@link #getVisibilityResistance()} are never modified afterward. Updates
+ * only mark the columns they touch as stale; the next call copies the array,
+ * re-reading only those stale columns, and shares the rest. Callers may
+ * therefore read these arrays from any thread without locking.
+ * </p>
+ * <p>
+ * Every update increments this map's {@link #getRevision() revision}, and
+ * posts a {@link MapRegionChangedEvent} to the {@link Context#eventBus() event
+ * bus}, so that other systems can refresh whatever they derive from the map.
+ * </p>
  * 
  * @author snowjak88
  *
@@ -35,17 +64,52 @@ public class GlobalMap extends Map {
 	
 	private static final Logger LOG = Logger.getLogger(GlobalMap.class.getName());
 	
-	private final int width, height;
+	/**
+	 * Any cell not otherwise set holds this character.
+	 */
+	public static final char FILL = '#';
+	
+	private final int width, height, chunksWide, chunksHigh;
+	
+	private final GlobalMapChunk[] chunks;
 	
-	private final char[][] map, bareMap;
-	private final Color[][] colors, bgColors;
+	private final ColorPalette palette = new ColorPalette();
+	private final short fillColor, fillBGColor;
 	
-	private double[][] visibilityResistance;
+	private char[][] bareMap = null;
+	private double[][] visibilityResistance = null;
+	private final BitSet staleBareMap = new BitSet(), staleVisibilityResistance = new BitSet();
 	
-	private final GreasedRegion nonObstructing;
+	private long revision = 0;
 	
-	private final java.util.Map<Entity, Coord> entityToCoord = new HashMap<>();
-	private final java.util.Map<Coord, Collection<Entity>> coordToEntity = new HashMap<>();
+	private final EntityIndex entities;
+	
+	/**
+	 * Create a new GlobalMap of the given size, filled entirely with
+	 * {@link #FILL}.
+	 * 
+	 * @param width
+	 * @param height
+	 */
+	public GlobalMap(int width, int height) {
+		
+		if (width < 1 || height < 1)
+			throw new IllegalArgumentException(
+					"Cannot create a " + width + "x" + height + " GlobalMap -- width and height must be at least 1.");
+		
+		this.width = width;
+		this.height = height;
+		
+		this.chunksWide = (width + GlobalMapChunk.MASK) >> GlobalMapChunk.SHIFT;
+		this.chunksHigh = (height + GlobalMapChunk.MASK) >> GlobalMapChunk.SHIFT;
+		this.chunks = new GlobalMapChunk[chunksWide * chunksHigh];
+		
+		final char[][] fill = new char[][] { { FILL } };
+		this.fillColor = palette.indexOf(MapUtility.generateDefaultColors(fill)[0][0]);
+		this.fillBGColor = palette.indexOf(MapUtility.generateDefaultBGColors(fill)[0][0]);
+		
+		this.entities = new EntityIndex(width, height);
+	}
 	
 	/**
 	 * Create a new GlobalMap, providing both the decorated (i.e., non-minimal)
@@ -57,23 +121,27 @@ public class GlobalMap extends Map {
 	 */
 	public GlobalMap(char[][] map, char[][] bareMap) {
 		
+		this(map.length, map[0].length);
+		
 		if (map.length != bareMap.length || map[0].length != bareMap[0].length)
 			throw new IllegalArgumentException("map and bareMap must be equally-sized.");
 		
-		this.width = map.length;
-		this.height = map[0].length;
-		
-		this.map = map;
-		this.bareMap = bareMap;
-		
-		this.colors = MapUtility.generateDefaultColors(map);
-		this.bgColors = MapUtility.generateDefaultBGColors(map);
+		final Color[][] colors = MapUtility.generateDefaultColors(map);
+		final Color[][] bgColors = MapUtility.generateDefaultBGColors(map);
 		
-		this.nonObstructing = new GreasedRegion(bareMap, '#').not();
+		for (int x = 0; x < width; x++)
+			for (int y = 0; y < height; y++) {
+				if (map[x][y] == FILL && bareMap[x][y] == FILL && getChunk(x, y) == null)
+					continue;
+				
+				getWritableChunk(x, y).set(GlobalMapChunk.index(x, y), map[x][y], bareMap[x][y],
+						palette.indexOf(colors[x][y]), palette.indexOf(bgColors[x][y]));
+			}
 	}
 	
 	/**
-	 * Update the map-character at the given location.
+	 * Update the map-character at the given location. This takes constant time,
+	 * and posts a {@link MapRegionChangedEvent} once complete.
 	 * 
 	 * @param ch
 	 * @param x
@@ -85,22 +153,42 @@ public class GlobalMap extends Map {
 	 */
 	public void setMap(char ch, int x, int y, Color color, Color bgColor) {
 		
+		final long revision;
+		
 		synchronized (this) {
 			LOG.entering(GlobalMap.class.getName(), "setMap(char,int,int,Color,Color)");
 			
-			map[x][y] = ch;
-			if (ch == '#' || ch == '.')
-				bareMap[x][y] = ch;
+			final GlobalMapChunk chunk = getWritableChunk(x, y);
+			final int i = GlobalMapChunk.index(x, y);
 			
-			visibilityResistance = null;
+			final char bareCh = (ch == '#' || ch == '.') ? ch : chunk.bareMap[i];
+			chunk.set(i, ch, bareCh, palette.indexOf(color), palette.indexOf(bgColor));
 			
-			colors[x][y] = color;
-			bgColors[x][y] = bgColor;
+			if (bareMap != null)
+				staleBareMap.set(x);
+			if (visibilityResistance != null)
+				staleVisibilityResistance.set(x);
 			
-			nonObstructing.set((ch != '#'), x, y);
+			revision = ++this.revision;
 			
 			LOG.exiting(GlobalMap.class.getName(), "setMap(char,int,int,Color,Color)");
 		}
+		
+		//
+		// Post the change only after releasing this map, so that subscribers are free
+		// to query it.
+		//
+		Context.get().eventBus().post(new MapRegionChangedEvent(this, x, y, x, y, revision));
+	}
+	
+	/**
+	 * @return this map's revision, incremented upon every update
+	 */
+	public long getRevision() {
+		
+		synchronized (this) {
+			return revision;
+		}
 	}
 	
 	/**
@@ -122,54 +210,255 @@ public class GlobalMap extends Map {
 	}
 	
 	/**
+	 * Assemble the "decorated" map. This allocates and fills a whole-map array,
+	 * and should be reserved for infrequent tasks; prefer
+	 * {@link #getMapAt(int, int)}.
+	 * 
 	 * @return the "decorated" map, using '#' for walls
 	 */
 	public char[][] getMap() {
 		
-		return map;
+		synchronized (this) {
+			final char[][] result = new char[width][height];
+			for (int x = 0; x < width; x++)
+				for (int y = 0; y < height; y++)
+					result[x][y] = getMapAt(x, y);
+			
+			return result;
+		}
 	}
 	
 	@Override
 	public char getMapAt(int x, int y) {
 		
 		synchronized (this) {
-			return (isInMap(x, y)) ? map[x][y] : 0;
+			if (!isInMap(x, y))
+				return 0;
+			
+			final GlobalMapChunk chunk = getChunk(x, y);
+			return (chunk == null) ? FILL : chunk.map[GlobalMapChunk.index(x, y)];
 		}
 	}
 	
 	/**
+	 * Get the "bare" map, as of the current {@link #getRevision() revision}. The
+	 * returned array is never modified afterward (and must not be modified by the
+	 * caller), so it may be read without locking. It is at least as recent as any
+	 * revision read before this call.
+	 * 
 	 * @return the "bare" map (equivalent to {@link #getMap()}, albeit with only
 	 *         nonObstructing and walls included)
 	 */
 	public char[][] getBareMap() {
 		
-		return bareMap;
+		synchronized (this) {
+			if (bareMap == null || !staleBareMap.isEmpty()) {
+				final char[][] next = (bareMap == null) ? new char[width][] : bareMap.clone();
+				for (int x = 0; x < width; x++)
+					if (bareMap == null || staleBareMap.get(x)) {
+						next[x] = new char[height];
+						copyBareMap(x, next[x]);
+					}
+				
+				bareMap = next;
+				staleBareMap.clear();
+			}
+			
+			return bareMap;
+		}
 	}
 	
 	/**
+	 * @param x
+	 * @param y
+	 * @return the "bare" map-character at the given cell, or 0 if the cell is not
+	 *         in the map
+	 */
+	public char getBareMapAt(int x, int y) {
+		
+		synchronized (this) {
+			if (!isInMap(x, y))
+				return 0;
+			
+			final GlobalMapChunk chunk = getChunk(x, y);
+			return (chunk == null) ? FILL : chunk.bareMap[GlobalMapChunk.index(x, y)];
+		}
+	}
+	
+	/**
+	 * Get the visibility-resistance map, as of the current {@link #getRevision()
+	 * revision}. The returned array is never modified afterward (and must not be
+	 * modified by the caller), so it may be read without locking. It is at least
+	 * as recent as any revision read before this call.
+	 * <p>
+	 * This allocates a whole-map array; prefer
+	 * {@link #copyVisibilityResistance(int, int, double[][])}.
+	 * </p>
+	 * 
 	 * @return the visibility-resistance map
 	 */
 	public double[][] getVisibilityResistance() {
 		
 		synchronized (this) {
-			if (visibilityResistance == null)
-				visibilityResistance = DungeonUtility.generateResistances(map);
+			if (visibilityResistance == null || !staleVisibilityResistance.isEmpty()) {
+				final double[][] next = (visibilityResistance == null) ? new double[width][]
+						: visibilityResistance.clone();
+				for (int x = 0; x < width; x++)
+					if (visibilityResistance == null || staleVisibilityResistance.get(x)) {
+						next[x] = new double[height];
+						copyVisibilityResistance(x, 0, height, next[x], 0);
+					}
+				
+				visibilityResistance = next;
+				staleVisibilityResistance.clear();
+			}
 			
 			return visibilityResistance;
 		}
 	}
 	
+	/**
+	 * Copy the visibility-resistance of a window of cells into the given array,
+	 * reading only those chunks which the window overlaps. Cells outside the map
+	 * are treated as opaque.
+	 * 
+	 * @param windowX
+	 *            the map-location corresponding to {@code window[0][0]}
+	 * @param windowY
+	 *            the map-location corresponding to {@code window[0][0]}
+	 * @param window
+	 * @return this map's {@link #getRevision() revision}, as of the copy
+	 */
+	public long copyVisibilityResistance(int windowX, int windowY, double[][] window) {
+		
+		synchronized (this) {
+			for (int i = 0; i < window.length; i++) {
+				final int mapX = windowX + i;
+				final double[] column = window[i];
+				
+				final int fromY = Math.max(0, windowY), toY = Math.min(height, windowY + column.length);
+				if (mapX < 0 || mapX >= width || fromY >= toY) {
+					Arrays.fill(column, 1.0);
+					continue;
+				}
+				
+				Arrays.fill(column, 0, fromY - windowY, 1.0);
+				Arrays.fill(column, toY - windowY, column.length, 1.0);
+				copyVisibilityResistance(mapX, fromY, toY, column, fromY - windowY);
+			}
+			
+			return revision;
+		}
+	}
+	
+	/**
+	 * Copy the visibility-resistance of cells ({@code x}, {@code fromY}) through
+	 * ({@code x}, {@code toY - 1}) into {@code destination}, starting at
+	 * {@code offset}. Must be called while synchronized on this map.
+	 * 
+	 * @param x
+	 * @param fromY
+	 * @param toY
+	 * @param destination
+	 * @param offset
+	 */
+	private void copyVisibilityResistance(int x, int fromY, int toY, double[] destination, int offset) {
+		
+		//
+		// Within a chunk, each column's cells are contiguous.
+		//
+		for (int y = fromY; y < toY;) {
+			final int end = Math.min(toY, (y | GlobalMapChunk.MASK) + 1);
+			final GlobalMapChunk chunk = getChunk(x, y);
+			if (chunk == null)
+				Arrays.fill(destination, offset + y - fromY, offset + end - fromY, GlobalMapChunk.resistanceOf(FILL));
+			else
+				System.arraycopy(chunk.resistance, GlobalMapChunk.index(x, y), destination, offset + y - fromY,
+						end - y);
+			y = end;
+		}
+	}
+	
+	/**
+	 * Copy the "bare" map-characters of column {@code x} into
+	 * {@code destination}. Must be called while synchronized on this map.
+	 * 
+	 * @param x
+	 * @param destination
+	 */
+	private void copyBareMap(int x, char[] destination) {
+		
+		for (int y = 0; y < height;) {
+			final int end = Math.min(height, (y | GlobalMapChunk.MASK) + 1);
+			final GlobalMapChunk chunk = getChunk(x, y);
+			if (chunk == null)
+				Arrays.fill(destination, y, end, FILL);
+			else
+				System.arraycopy(chunk.bareMap, GlobalMapChunk.index(x, y), destination, y, end - y);
+			y = end;
+		}
+	}
+	
+	/**
+	 * Assemble a {@link BlockedCells mask} blocking every wall in this map. Only
+	 * allocated chunks are read, so this takes time proportional to the used area
+	 * of the map.
+	 * 
+	 * @return a new mask, which the caller is free to modify
+	 */
+	public BlockedCells getWalls() {
+		
+		synchronized (this) {
+			final BlockedCells result = new BlockedCells(width, height, true);
+			for (int cx = 0; cx < chunksWide; cx++)
+				for (int cy = 0; cy < chunksHigh; cy++) {
+					final GlobalMapChunk chunk = chunks[cx * chunksHigh + cy];
+					if (chunk != null)
+						forEachChunkCell(cx, cy, (x, y, i) -> {
+							if (chunk.bareMap[i] != FILL)
+								result.set(x, y, false);
+						});
+				}
+			
+			return result;
+		}
+	}
+	
+	/**
+	 * Assemble the foreground-colors for the whole map. This allocates and fills a
+	 * whole-map array, and should be reserved for infrequent tasks; prefer
+	 * {@link #getColorAt(int, int)}.
+	 * 
+	 * @return
+	 */
 	public Color[][] getColors() {
 		
 		synchronized (this) {
-			return colors;
+			final Color[][] result = new Color[width][height];
+			for (int x = 0; x < width; x++)
+				for (int y = 0; y < height; y++)
+					result[x][y] = getColorAt(x, y);
+			
+			return result;
 		}
 	}
 	
+	/**
+	 * Assemble the background-colors for the whole map. This allocates and fills a
+	 * whole-map array, and should be reserved for infrequent tasks; prefer
+	 * {@link #getBGColorAt(int, int)}.
+	 * 
+	 * @return
+	 */
 	public Color[][] getBGColors() {
 		
 		synchronized (this) {
-			return bgColors;
+			final Color[][] result = new Color[width][height];
+			for (int x = 0; x < width; x++)
+				for (int y = 0; y < height; y++)
+					result[x][y] = getBGColorAt(x, y);
+			
+			return result;
 		}
 	}
 	
@@ -177,7 +466,11 @@ public class GlobalMap extends Map {
 	public Color getColorAt(int x, int y) {
 		
 		synchronized (this) {
-			return (isInMap(x, y)) ? colors[x][y] : null;
+			if (!isInMap(x, y))
+				return null;
+			
+			final GlobalMapChunk chunk = getChunk(x, y);
+			return palette.get((chunk == null) ? fillColor : chunk.colors[GlobalMapChunk.index(x, y)]);
 		}
 	}
 	
@@ -185,16 +478,102 @@ public class GlobalMap extends Map {
 	public Color getBGColorAt(int x, int y) {
 		
 		synchronized (this) {
-			return (isInMap(x, y)) ? bgColors[x][y] : null;
+			if (!isInMap(x, y))
+				return null;
+			
+			final GlobalMapChunk chunk = getChunk(x, y);
+			return palette.get((chunk == null) ? fillBGColor : chunk.bgColors[GlobalMapChunk.index(x, y)]);
 		}
 	}
 	
 	/**
-	 * @return a set of non-wall-locations
+	 * Assemble the set of non-wall-locations. This allocates a whole-map region,
+	 * and should be reserved for infrequent tasks. Only allocated chunks are read.
+	 * 
+	 * @return a set of non-wall-locations, which the caller is free to modify
 	 */
 	public GreasedRegion getNonObstructing() {
 		
-		return nonObstructing;
+		synchronized (this) {
+			final GreasedRegion result = new GreasedRegion(width, height);
+			for (int cx = 0; cx < chunksWide; cx++)
+				for (int cy = 0; cy < chunksHigh; cy++) {
+					final GlobalMapChunk chunk = chunks[cx * chunksHigh + cy];
+					if (chunk != null)
+						forEachChunkCell(cx, cy, (x, y, i) -> {
+							if (chunk.bareMap[i] != FILL)
+								result.insert(x, y);
+						});
+				}
+			
+			return result;
+		}
+	}
+	
+	/**
+	 * @return the number of {@link GlobalMapChunk chunks} allocated so far
+	 */
+	int getChunkCount() {
+		
+		synchronized (this) {
+			int count = 0;
+			for (GlobalMapChunk chunk : chunks)
+				if (chunk != null)
+					count++;
+			
+			return count;
+		}
+	}
+	
+	/**
+	 * @param x
+	 * @param y
+	 * @return the chunk holding the given cell, or {@code null} if that chunk has
+	 *         not been allocated
+	 */
+	private GlobalMapChunk getChunk(int x, int y) {
+		
+		return chunks[(x >> GlobalMapChunk.SHIFT) * chunksHigh + (y >> GlobalMapChunk.SHIFT)];
+	}
+	
+	/**
+	 * Get the chunk holding the given cell, allocating it if necessary.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	private GlobalMapChunk getWritableChunk(int x, int y) {
+		
+		final int c = (x >> GlobalMapChunk.SHIFT) * chunksHigh + (y >> GlobalMapChunk.SHIFT);
+		if (chunks[c] == null)
+			chunks[c] = new GlobalMapChunk(FILL, fillColor, fillBGColor);
+		
+		return chunks[c];
+	}
+	
+	/**
+	 * Visit every in-map cell of the given chunk.
+	 * 
+	 * @param chunkX
+	 * @param chunkY
+	 * @param visitor
+	 */
+	private void forEachChunkCell(int chunkX, int chunkY, ChunkCellVisitor visitor) {
+		
+		final int startX = chunkX << GlobalMapChunk.SHIFT, startY = chunkY << GlobalMapChunk.SHIFT;
+		final int endX = Math.min(width, startX + GlobalMapChunk.SIZE),
+				endY = Math.min(height, startY + GlobalMapChunk.SIZE);
+		
+		for (int x = startX; x < endX; x++)
+			for (int y = startY; y < endY; y++)
+				visitor.visit(x, y, GlobalMapChunk.index(x, y));
+	}
+	
+	@FunctionalInterface
+	private interface ChunkCellVisitor {
+		
+		public void visit(int mapX, int mapY, int index);
 	}
 	
 	/**
@@ -207,7 +586,9 @@ public class GlobalMap extends Map {
 	@Override
 	public Coord getEntityLocation(Entity entity) {
 		
-		return entityToCoord.get(entity);
+		synchronized (this) {
+			return entities.get(entity);
+		}
 	}
 	
 	/**
@@ -220,7 +601,9 @@ public class GlobalMap extends Map {
 	@Override
 	public Collection<Entity> getEntitiesAt(Coord coord) {
 		
-		return coordToEntity.getOrDefault(coord, Collections.emptyList());
+		synchronized (this) {
+			return entities.getAt(coord.x, coord.y);
+		}
 	}
 	
 	/**
@@ -234,8 +617,9 @@ public class GlobalMap extends Map {
 		
 		synchronized (this) {
 			LOG.entering(GlobalMap.class.getName(), "getEntitiesNear(Coord,int)");
-			final Collection<Entity> result = getEntitiesIn(
-					new GreasedRegion(width, height).insert(coord).expand8way(radius));
+			final Collection<Entity> result = new LinkedHashSet<>();
+			entities.forEachInRange(coord.x - radius, coord.y - radius, coord.x + radius, coord.y + radius,
+					result::add);
 			LOG.exiting(GlobalMap.class.getName(), "getEntitiesNear(Coord,int)");
 			return result;
 		}
@@ -251,6 +635,14 @@ public class GlobalMap extends Map {
 		return getEntitiesNear(Coord.get(x, y), radius);
 	}
 	
+	@Override
+	public void forEachEntityNear(int x, int y, int radius, Radius shape, Consumer<Entity> consumer) {
+		
+		synchronized (this) {
+			entities.forEachInRadius(x, y, radius, shape, consumer);
+		}
+	}
+	
 	/**
 	 * Get the {@link Entity}s located at any of the given {@link Coord
 	 * coordinates}.
@@ -262,8 +654,9 @@ public class GlobalMap extends Map {
 		
 		synchronized (this) {
 			LOG.entering(GlobalMap.class.getName(), "getEntitiesIn(Collection<Coord>)");
-			final Set<Entity> result = coords.parallelStream().flatMap(c -> getEntitiesAt(c).stream())
-					.collect(Collectors.toCollection(HashSet::new));
+			final Set<Entity> result = new HashSet<>();
+			for (Coord c : coords)
+				result.addAll(entities.getAt(c.x, c.y));
 			LOG.exiting(GlobalMap.class.getName(), "getEntitiesIn(Collection<Coord>)");
 			return result;
 		}
@@ -277,7 +670,7 @@ public class GlobalMap extends Map {
 	@Override
 	public boolean isEntityAt(Entity entity, Coord coord) {
 		
-		return (entityToCoord.get(entity) == coord);
+		return (getEntityLocation(entity) == coord);
 	}
 	
 	/**
@@ -292,16 +685,7 @@ public class GlobalMap extends Map {
 		
 		synchronized (this) {
 			LOG.entering(GlobalMap.class.getName(), "setEntity(Entity,Coord)");
-			if (entityToCoord.containsKey(entity) && entityToCoord.get(entity) != coord) {
-				
-				final Coord oldCoord = entityToCoord.get(entity);
-				entityToCoord.remove(entity);
-				coordToEntity.get(oldCoord).remove(entity);
-				
-			}
-			
-			entityToCoord.put(entity, coord);
-			coordToEntity.computeIfAbsent(coord, (c) -> new HashSet<>()).add(entity);
+			entities.put(entity, coord);
 			LOG.exiting(GlobalMap.class.getName(), "setEntity(Entity,Coord)");
 		}
 	}
@@ -0,0 +1,89 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.map;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import squidpony.squidgrid.mapping.DungeonUtility;
+
+/**
+ * A square block of {@link GlobalMap} cells, held in flat primitive arrays.
+ * Colors are held as indices into the owning GlobalMap's {@link ColorPalette}.
+ * <p>
+ * This class is not thread-safe; its owning GlobalMap is expected to
+ * synchronize access.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+class GlobalMapChunk {
+	
+	public static final int SHIFT = 5, SIZE = 1 << SHIFT, MASK = SIZE - 1, CELLS = SIZE * SIZE;
+	
+	private static final java.util.Map<Character, Double> RESISTANCES = new ConcurrentHashMap<>();
+	
+	final char[] map = new char[CELLS], bareMap = new char[CELLS];
+	final short[] colors = new short[CELLS], bgColors = new short[CELLS];
+	final double[] resistance = new double[CELLS];
+	
+	/**
+	 * Create a new chunk, with every cell set to the given contents.
+	 * 
+	 * @param fill
+	 * @param fillColor
+	 * @param fillBGColor
+	 */
+	public GlobalMapChunk(char fill, short fillColor, short fillBGColor) {
+		
+		Arrays.fill(map, fill);
+		Arrays.fill(bareMap, fill);
+		Arrays.fill(colors, fillColor);
+		Arrays.fill(bgColors, fillBGColor);
+		Arrays.fill(resistance, resistanceOf(fill));
+	}
+	
+	/**
+	 * @param mapX
+	 * @param mapY
+	 * @return the index of the given map-cell within its chunk
+	 */
+	public static int index(int mapX, int mapY) {
+		
+		return ((mapX & MASK) << SHIFT) | (mapY & MASK);
+	}
+	
+	/**
+	 * Set the given cell's contents, keeping its visibility-resistance up to date.
+	 * 
+	 * @param index
+	 * @param ch
+	 * @param bareCh
+	 * @param color
+	 * @param bgColor
+	 */
+	public void set(int index, char ch, char bareCh, short color, short bgColor) {
+		
+		map[index] = ch;
+		bareMap[index] = bareCh;
+		colors[index] = color;
+		bgColors[index] = bgColor;
+		resistance[index] = resistanceOf(ch);
+	}
+	
+	/**
+	 * Visibility-resistance depends only on a cell's own character, so it can be
+	 * looked up once per character and re-used.
+	 * 
+	 * @param ch
+	 * @return the visibility-resistance of a cell holding the given character
+	 * @see DungeonUtility#generateResistances(char[][])
+	 */
+	public static double resistanceOf(char ch) {
+		
+		return RESISTANCES.computeIfAbsent(ch,
+				c -> DungeonUtility.generateResistances(new char[][] { { c } })[0][0]);
+	}
+}
@@ -5,28 +5,57 @@ package org.snowjak.runandgun.map;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
+import org.snowjak.runandgun.pathfinding.BlockedCells;
 import org.snowjak.runandgun.team.Team;
 
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.utils.IntSet;
-import com.badlogic.gdx.utils.IntSet.IntSetIterator;
 
+import squidpony.squidgrid.Radius;
 import squidpony.squidmath.Coord;
-import squidpony.squidmath.CoordPacker;
 import squidpony.squidmath.GreasedRegion;
 
 /**
  * Like {@link GlobalMap}, but records what an entity has actually seen or been
  * told about.
+ * <p>
+ * Internally, map-contents are held densely, one entry per cell: the cell's
+ * {@code char}, plus foreground- and background-colors given as indices into a
+ * shared {@link ColorPalette}. "Known" and "visible" are held as bitsets.
+ * Point-queries are thus constant-time. The {@link CellRegion region} views
+ * (e.g., {@link #getKnown(char)}) are still available, but are computed on
+ * demand and should be reserved for infrequent tasks like persistence.
+ * </p>
+ * <p>
+ * Cells are grouped into {@link KnownMapPage pages}, which are only allocated
+ * once something within them becomes known. Pages are shared copy-on-write
+ * between a KnownMap and its {@link #copy() copies} and {@link #snapshot()
+ * snapshots}, so taking a copy costs time proportional to the number of pages,
+ * and subsequent updates only duplicate those pages they actually touch.
+ * </p>
+ * <p>
+ * Queries never block. Updates are serialized amongst themselves, and are made
+ * against a private draft of this map's pages; once an update is complete --
+ * and never part-way through -- the draft is published as a new, immutable
+ * {@link State}. A query reads the current State once, and so sees either all
+ * of an update's cells or none of them.
+ * </p>
+ * <p>
+ * Entity-knowledge is held alongside the published State. When it is replaced
+ * wholesale (e.g., by {@link #clear()} or {@link #setMap(Team, CellRegion)}),
+ * the replacement is published together with the new cells. Incremental updates
+ * (e.g., {@link #updateEntities(GlobalMap, CellRegion, boolean)}) are instead
+ * applied in place, one {@link Entity} at a time, and are not atomic: a
+ * concurrent query may see some of an update's entity-changes and not others.
+ * </p>
  * 
  * @author snowjak88
  *
@@ -36,45 +65,158 @@ public class KnownMap extends Map {
 	@SuppressWarnings("unused")
 	private static final Logger LOG = Logger.getLogger(KnownMap.class.getName());
 	
-	private int width = 0, height = 0;
-	private short[] known = CoordPacker.ALL_WALL, visible = CoordPacker.ALL_WALL;
+	private static final AtomicInteger GENERATIONS = new AtomicInteger();
+	private static final AtomicLong KNOWN_REVISIONS = new AtomicLong();
 	
-	private final java.util.Map<Character, short[]> map = new HashMap<>();
-	private final java.util.Map<Color, short[]> colors = new HashMap<>();
-	private final java.util.Map<Color, short[]> bgColors = new HashMap<>();
+	//
+	// The draft being built by the current update. Only touched while holding
+	// this KnownMap's lock. Unless replaced by the current update, the draft's
+	// entities are the same as the published State's.
+	//
+	private KnownMapPage[] draftPages = new KnownMapPage[0];
+	private Entities draftEntities = new Entities();
+	private int draftWidth = 0, draftHeight = 0;
+	private int draftEpoch = 0, generation = GENERATIONS.incrementAndGet();
+	private boolean dirty = false, knownChanged = false;
 	
-	private final java.util.Map<Coord, Set<Entity>> coordToEntities = new HashMap<>();
-	private final java.util.Map<Entity, Coord> entityToCoord = new HashMap<>();
+	private volatile State state = new State(0, 0, draftPages, 0, 0, draftEntities);
+	
+	private final ColorPalette palette;
+	private final boolean readOnly;
 	
 	public KnownMap(int width, int height) {
 		
+		this(width, height, new ColorPalette());
+	}
+	
+	public KnownMap(int width, int height, CellRegion known, java.util.Map<Character, CellRegion> map,
+			java.util.Map<Color, CellRegion> colors, java.util.Map<Color, CellRegion> bgColors) {
+		
+		this(width, height);
+		
+		synchronized (this) {
+			known.forEach((x, y) -> {
+				if (isInDraft(x, y) && getWritablePage(x, y).setKnown(KnownMapPage.index(x, y)))
+					knownChanged = true;
+			});
+			
+			for (Character c : map.keySet())
+				map.get(c).forEach((x, y) -> {
+					if (isInDraft(x, y))
+						getWritablePage(x, y).map[KnownMapPage.index(x, y)] = c;
+				});
+			
+			for (Color c : colors.keySet()) {
+				final short i = palette.indexOf(c);
+				colors.get(c).forEach((x, y) -> {
+					if (isInDraft(x, y))
+						getWritablePage(x, y).colors[KnownMapPage.index(x, y)] = i;
+				});
+			}
+			
+			for (Color c : bgColors.keySet()) {
+				final short i = palette.indexOf(c);
+				bgColors.get(c).forEach((x, y) -> {
+					if (isInDraft(x, y))
+						getWritablePage(x, y).bgColors[KnownMapPage.index(x, y)] = i;
+				});
+			}
+			
+			publish();
+		}
+	}
+	
+	private KnownMap(int width, int height, ColorPalette palette) {
+		
+		this.palette = palette;
+		this.readOnly = false;
 		resize(width, height);
 	}
 	
-	public KnownMap(int width, int height, short[] known, java.util.Map<Character, short[]> map,
-			java.util.Map<Color, short[]> colors, java.util.Map<Color, short[]> bgColors) {
+	private KnownMap(KnownMap toCopy, boolean readOnly) {
 		
-		this.width = width;
-		this.height = height;
-		this.known = known;
-		this.map.putAll(map);
-		this.colors.putAll(colors);
-		this.bgColors.putAll(bgColors);
+		this.palette = toCopy.palette;
+		this.readOnly = readOnly;
+		share(toCopy);
 	}
 	
 	public void addKnownEntity(Entity entity, Coord coord) {
 		
+		checkWritable();
+		
 		synchronized (this) {
-			coordToEntities.computeIfAbsent(coord, c -> new LinkedHashSet<>()).add(entity);
-			entityToCoord.put(entity, coord);
+			putEntity(entity, coord);
 		}
 	}
 	
+	/**
+	 * Get an independent copy of this KnownMap. Map-contents are shared
+	 * copy-on-write, so this costs time proportional to the number of pages (and
+	 * known {@link Entity Entities}), not of cells.
+	 * 
+	 * @return
+	 */
 	public KnownMap copy() {
 		
-		final KnownMap result = new KnownMap(getWidth(), getHeight());
-		result.insertMap(this, this.known);
-		return result;
+		synchronized (this) {
+			return new KnownMap(this, false);
+		}
+	}
+	
+	/**
+	 * Get a read-only view of this KnownMap as it stands right now. Like
+	 * {@link #copy()}, map-contents are shared copy-on-write, so later updates to
+	 * this KnownMap are not reflected in the snapshot.
+	 * 
+	 * @return
+	 * @see #isReadOnly()
+	 */
+	public KnownMap snapshot() {
+		
+		synchronized (this) {
+			return new KnownMap(this, true);
+		}
+	}
+	
+	/**
+	 * @return {@code true} if this KnownMap is a {@link #snapshot() snapshot} and
+	 *         cannot be modified
+	 */
+	public boolean isReadOnly() {
+		
+		return readOnly;
+	}
+	
+	private void checkWritable() {
+		
+		if (readOnly)
+			throw new IllegalStateException("Cannot modify KnownMap -- this map is a read-only snapshot!");
+	}
+	
+	/**
+	 * Make this KnownMap share the given KnownMap's published {@link State}, and
+	 * copy its entities. Published pages are never written to, so this KnownMap
+	 * will copy any page before updating it.
+	 * 
+	 * @param toShare
+	 */
+	private void share(KnownMap toShare) {
+		
+		synchronized (this) {
+			final State shared = toShare.state;
+			
+			this.draftPages = shared.pages.clone();
+			this.draftEntities = new Entities(shared.entities);
+			this.draftWidth = shared.width;
+			this.draftHeight = shared.height;
+			this.draftEpoch = shared.visibleEpoch;
+			this.generation = GENERATIONS.incrementAndGet();
+			this.dirty = false;
+			this.knownChanged = false;
+			
+			this.state = new State(shared.width, shared.height, shared.pages, shared.visibleEpoch,
+					shared.knownRevision, draftEntities);
+		}
 	}
 	
 	/**
@@ -86,17 +228,17 @@ public class KnownMap extends Map {
 	 */
 	public void resize(int width, int height) {
 		
-		if (this.width == width && this.height == height)
+		if (getWidth() == width && getHeight() == height)
 			return;
 		
+		checkWritable();
+		
 		synchronized (this) {
-			if (this.width == width && this.height == height)
+			if (draftWidth == width && draftHeight == height)
 				return;
 			
-			this.width = width;
-			this.height = height;
-			
-			clear();
+			resetDraft(width, height);
+			publish();
 		}
 	}
 	
@@ -105,18 +247,36 @@ public class KnownMap extends Map {
 	 */
 	public void clear() {
 		
+		checkWritable();
+		
 		synchronized (this) {
-			this.known = CoordPacker.ALL_WALL;
-			this.visible = CoordPacker.ALL_WALL;
-			
-			this.map.clear();
-			this.colors.clear();
-			this.bgColors.clear();
-			this.entityToCoord.clear();
-			this.coordToEntities.clear();
+			resetDraft(draftWidth, draftHeight);
+			publish();
 		}
 	}
 	
+	/**
+	 * Replace the draft with an empty map of the given size, without publishing
+	 * it. Readers continue to see the old contents until the update that called
+	 * this publishes its draft.
+	 * <p>
+	 * Must be called while holding this KnownMap's lock.
+	 * </p>
+	 * 
+	 * @param width
+	 * @param height
+	 */
+	private void resetDraft(int width, int height) {
+		
+		this.draftWidth = width;
+		this.draftHeight = height;
+		this.draftPages = new KnownMapPage[((width + KnownMapPage.MASK) >> KnownMapPage.SHIFT)
+				* ((height + KnownMapPage.MASK) >> KnownMapPage.SHIFT)];
+		this.draftEntities = new Entities();
+		this.dirty = true;
+		this.knownChanged = true;
+	}
+	
 	/**
 	 * Set this KnownMap's contents to copy the given {@link Team}'s KnownMap,
 	 * overriding whatever was here before.
@@ -124,42 +284,36 @@ public class KnownMap extends Map {
 	 * @param map
 	 * @param timestamp
 	 */
-	public void setMap(Team team, short[] onlyThese) {
+	public void setMap(Team team, CellRegion onlyThese) {
+		
+		checkWritable();
 		
 		synchronized (this) {
 			final KnownMap teamMap = team.getMap();
-			resize(teamMap.getWidth(), teamMap.getHeight());
 			
-			final short[] update;
-			if (onlyThese == null)
-				update = CoordPacker.ALL_ON;
-			else
-				update = onlyThese;
-			
-			this.known = CoordPacker.intersectPacked(teamMap.known, update);
-			this.visible = CoordPacker.intersectPacked(teamMap.visible, update);
-			
-			this.map.clear();
-			for (Character c : teamMap.map.keySet())
-				this.map.put(c, CoordPacker.intersectPacked(teamMap.map.get(c), update));
-			
-			this.colors.clear();
-			for (Color c : teamMap.colors.keySet())
-				this.colors.put(c, CoordPacker.intersectPacked(teamMap.colors.get(c), update));
-			
-			this.bgColors.clear();
-			for (Color c : teamMap.bgColors.keySet())
-				this.bgColors.put(c, CoordPacker.intersectPacked(teamMap.bgColors.get(c), update));
-			
-			this.coordToEntities.clear();
-			this.entityToCoord.clear();
-			
-			teamMap.coordToEntities.entrySet().stream()
-					.filter(e -> CoordPacker.queryPacked(update, e.getKey().x, e.getKey().y))
-					.forEach(e -> this.coordToEntities.put(e.getKey(), e.getValue()));
-			teamMap.entityToCoord.entrySet().stream()
-					.filter(e -> CoordPacker.queryPacked(update, e.getValue().x, e.getValue().y))
-					.forEach(e -> this.entityToCoord.put(e.getKey(), e.getValue()));
+			synchronized (teamMap) {
+				if (onlyThese == null && teamMap.palette == palette) {
+					share(teamMap);
+					return;
+				}
+				
+				final State from = teamMap.state;
+				resetDraft(from.width, from.height);
+				
+				forEachCell(onlyThese, (x, y) -> {
+					if (isInDraft(x, y))
+						copyCell(teamMap, from, x, y);
+				});
+				
+				from.entities.coordToEntities.entrySet().stream()
+						.filter(e -> onlyThese == null || onlyThese.contains(e.getKey()))
+						.forEach(e -> draftEntities.coordToEntities.put(e.getKey(), e.getValue()));
+				from.entities.entityToCoord.entrySet().stream()
+						.filter(e -> onlyThese == null || onlyThese.contains(e.getValue()))
+						.forEach(e -> draftEntities.entityToCoord.put(e.getKey(), e.getValue()));
+				
+				publish();
+			}
 		}
 	}
 	
@@ -175,8 +329,9 @@ public class KnownMap extends Map {
 	 */
 	public void insertMap(GlobalMap map, GreasedRegion updateWithin, GreasedRegion visible) {
 		
-		insertMap(map, (updateWithin != null) ? CoordPacker.packSeveral(updateWithin) : null,
-				(visible != null) ? CoordPacker.packSeveral(visible) : null);
+		final CellRegion updateRegion = (updateWithin != null) ? CellRegion.of(updateWithin) : null;
+		insertMap(map, updateRegion, (visible == updateWithin) ? updateRegion
+				: (visible != null) ? CellRegion.of(visible) : null);
 	}
 	
 	/**
@@ -189,41 +344,30 @@ public class KnownMap extends Map {
 	 *            the region to be regarded as "currently visible", or {@code null}
 	 *            to assume that everything is currently visible
 	 */
-	public void insertMap(GlobalMap map, short[] updateWithin, short[] visible) {
+	public void insertMap(GlobalMap map, CellRegion updateWithin, CellRegion visible) {
+		
+		checkWritable();
 		
 		synchronized (this) {
-			resize(map.getWidth(), map.getHeight());
-			
-			final short[] update;
-			if (updateWithin == null)
-				update = CoordPacker.ALL_ON;
-			else
-				update = updateWithin;
+			if (draftWidth != map.getWidth() || draftHeight != map.getHeight())
+				resetDraft(map.getWidth(), map.getHeight());
 			
-			this.known = CoordPacker.unionPacked(this.known, update);
-			this.visible = CoordPacker.unionPacked(this.visible, (visible == null) ? CoordPacker.ALL_ON : visible);
-			
-			final GreasedRegion updateRegion = CoordPacker.unpackGreasedRegion(update, getWidth(), getHeight());
-			
-			final IntSetIterator uniqueChars = getUniqueCharacters(map.getMap(), updateRegion).iterator();
-			while (uniqueChars.hasNext) {
-				final char c = (char) uniqueChars.next();
-				final short[] existing = this.map.getOrDefault(c, CoordPacker.ALL_WALL);
-				final short[] updated = CoordPacker.pack(map.getMap(), c);
-				this.map.put(c, CoordPacker.unionPacked(existing, updated));
-			}
+			//
+			// Only walk the cells in the update-region itself. Converting the region to a
+			// GreasedRegion (or to a whole-map array per char/color) would cost time
+			// proportional to the whole map.
+			//
+			forEachCell(updateWithin, (x, y) -> {
+				if (isInDraft(x, y))
+					setCell(x, y, map.getMapAt(x, y), map.getColorAt(x, y), map.getBGColorAt(x, y));
+			});
 			
-			for (Color c : getUniqueColors(map.getColors(), updateRegion)) {
-				final short[] existing = this.colors.getOrDefault(c, CoordPacker.ALL_WALL);
-				final short[] updated = CoordPacker.packSeveral(getColorRegion(map.getColors(), c));
-				this.colors.put(c, CoordPacker.unionPacked(existing, updated));
-			}
+			forEachCell(visible, (x, y) -> {
+				if (isInDraft(x, y))
+					setVisible(x, y);
+			});
 			
-			for (Color c : getUniqueColors(map.getBGColors(), updateRegion)) {
-				final short[] existing = this.bgColors.getOrDefault(c, CoordPacker.ALL_WALL);
-				final short[] updated = CoordPacker.packSeveral(getColorRegion(map.getBGColors(), c));
-				this.bgColors.put(c, CoordPacker.unionPacked(existing, updated));
-			}
+			publish();
 		}
 	}
 	
@@ -233,7 +377,7 @@ public class KnownMap extends Map {
 	 * <p>
 	 * If you want to retrieve lists of entities added, moved, and removed from this
 	 * KnownMap by this update, use
-	 * {@link #updateEntities(GlobalMap, short[], Collection, Collection, Collection)}
+	 * {@link #updateEntities(GlobalMap, CellRegion, Collection, Collection, Collection)}
 	 * </p>
 	 * 
 	 * @param map
@@ -242,7 +386,7 @@ public class KnownMap extends Map {
 	 *            if {@link Entity Entities} should not be considered for removal
 	 *            from this map, only added and moved
 	 */
-	public void updateEntities(GlobalMap map, short[] updateWithin, boolean noRemove) {
+	public void updateEntities(GlobalMap map, CellRegion updateWithin, boolean noRemove) {
 		
 		updateEntities(map, updateWithin, noRemove, null, null, null);
 	}
@@ -269,63 +413,61 @@ public class KnownMap extends Map {
 	 *            removed from this KnownMap within {@updateWithin}, or {@code null}
 	 *            if no return needed
 	 */
-	public void updateEntities(GlobalMap map, short[] updateWithin, boolean noRemove, Collection<Entity> entitiesAdded,
-			Collection<Entity> entitiesMoved, Collection<Entity> entitiesRemoved) {
+	public void updateEntities(GlobalMap map, CellRegion updateWithin, boolean noRemove,
+			Collection<Entity> entitiesAdded, Collection<Entity> entitiesMoved, Collection<Entity> entitiesRemoved) {
+		
+		checkWritable();
 		
 		synchronized (this) {
 			
-			final short[] update;
-			if (updateWithin == null)
-				update = CoordPacker.ALL_ON;
-			else
-				update = updateWithin;
-				
 			//
 			// Update entities in the "to-update" region
 			//
-			Iterator<Entity> entityIterator = null;
-			
-			for (Coord c : CoordPacker.unpackGreasedRegion(update, getWidth(), getHeight())) {
+			forEachCell(updateWithin, (x, y) -> {
+				
+				if (!isInDraft(x, y))
+					return;
 				
-				entityIterator = this.coordToEntities.getOrDefault(c, Collections.emptySet()).iterator();
-				while (entityIterator.hasNext()) {
-					final Entity e = entityIterator.next();
+				final Coord c = Coord.get(x, y);
+				
+				//
+				// Stored entity-sets are never modified, so we're free to update this
+				// map while iterating over this one.
+				//
+				for (Entity e : draftEntities.coordToEntities.getOrDefault(c, Collections.emptySet())) {
 					final Coord globalLocation = map.getEntityLocation(e);
 					
-					if (!noRemove && globalLocation == null) {
+					if (globalLocation == null) {
+						
+						if (noRemove)
+							continue;
 						
 						if (entitiesRemoved != null)
 							entitiesRemoved.add(e);
 						
-						entityIterator.remove();
-						entityToCoord.remove(e);
-						
+						removeEntity(e);
+					
 					} else if (globalLocation.x != c.x || globalLocation.y != c.y) {
 						
 						if (entitiesMoved != null)
 							entitiesMoved.add(e);
 						
-						entityIterator.remove();
-						coordToEntities.computeIfAbsent(globalLocation, (x) -> new LinkedHashSet<>()).add(e);
-						entityToCoord.put(e, globalLocation);
-						
+						putEntity(e, globalLocation);
+					
 					}
 				}
 				
 				for (Entity e : map.getEntitiesAt(c)) {
-					final Coord thisLocation = entityToCoord.get(e);
-					
-					if (thisLocation == null) {
+					if (!draftEntities.entityToCoord.containsKey(e)) {
 						
 						if (entitiesAdded != null)
 							entitiesAdded.add(e);
 						
-						coordToEntities.computeIfAbsent(c, (x) -> new LinkedHashSet<>()).add(e);
-						entityToCoord.put(e, c);
-						
+						putEntity(e, c);
+					
 					}
 				}
-			}
+			});
 		}
 	}
 	
@@ -338,7 +480,7 @@ public class KnownMap extends Map {
 	 */
 	public void insertMap(KnownMap map) {
 		
-		insertMap(map, CoordPacker.ALL_ON);
+		insertMap(map, (CellRegion) null);
 	}
 	
 	/**
@@ -353,7 +495,7 @@ public class KnownMap extends Map {
 	 */
 	public void insertMap(KnownMap map, GreasedRegion updateWithin) {
 		
-		insertMap(map, (updateWithin == null) ? CoordPacker.ALL_ON : CoordPacker.packSeveral(updateWithin));
+		insertMap(map, (updateWithin == null) ? null : CellRegion.of(updateWithin));
 	}
 	
 	/**
@@ -361,68 +503,37 @@ public class KnownMap extends Map {
 	 * 
 	 * @param map
 	 * @param updateWithin
-	 *            a {@link CoordPacker#packSeveral(Collection) packed} region to
-	 *            update, or {@code null} to update everything
+	 *            a {@link CellRegion region} to update, or {@code null} to
+	 *            update everything
 	 */
-	public void insertMap(KnownMap map, short[] updateWithin) {
+	public void insertMap(KnownMap map, CellRegion updateWithin) {
+		
+		checkWritable();
 		
 		synchronized (this) {
 			
-			final short[] update;
-			if (updateWithin == null)
-				update = CoordPacker.ALL_ON;
-			else
-				update = updateWithin;
-			
-			this.known = CoordPacker.unionPacked(this.known, CoordPacker.intersectPacked(map.known, update));
-			this.visible = CoordPacker.unionPacked(this.visible,
-					CoordPacker.intersectPacked(map.visible, updateWithin));
-			
-			for (Character c : map.map.keySet()) {
-				final short[] existingRegion = this.map.getOrDefault(c, CoordPacker.ALL_WALL);
-				final short[] updatedRegion = CoordPacker.intersectPacked(map.map.getOrDefault(c, CoordPacker.ALL_WALL),
-						update);
-				this.map.put(c, CoordPacker.unionPacked(existingRegion, updatedRegion));
-			}
-			
-			for (Color c : map.colors.keySet()) {
-				final short[] existingRegion = this.colors.getOrDefault(c, CoordPacker.ALL_WALL);
-				final short[] updatedRegion = CoordPacker
-						.intersectPacked(map.colors.getOrDefault(c, CoordPacker.ALL_WALL), update);
-				this.colors.put(c, CoordPacker.unionPacked(existingRegion, updatedRegion));
-			}
-			
-			for (Color c : map.bgColors.keySet()) {
-				final short[] existingRegion = this.bgColors.getOrDefault(c, CoordPacker.ALL_WALL);
-				final short[] updatedRegion = CoordPacker
-						.intersectPacked(map.bgColors.getOrDefault(c, CoordPacker.ALL_WALL), update);
-				this.bgColors.put(c, CoordPacker.unionPacked(existingRegion, updatedRegion));
-			}
+			//
+			// Reading the other map's published state needs no lock.
+			//
+			final State from = map.state;
+			forEachCell(updateWithin, (x, y) -> {
+				if (isInDraft(x, y))
+					copyCell(map, from, x, y);
+			});
 			
 			//
 			// Update entities in the "to-update" region
 			//
-			for (Coord c : CoordPacker.unpackGreasedRegion(update, getWidth(), getHeight()))
+			forEachCell(updateWithin, (x, y) -> {
 				
 				//
-				// If there are any entities in the other map at the given coord
-				if (map.coordToEntities.containsKey(c))
-					//
-					// Process each entity at the coord
-					for (Entity e : map.coordToEntities.getOrDefault(c, Collections.emptySet())) {
-						
-						//
-						// If this map already has that entity, and needs to be updated
-						if (this.entityToCoord.containsKey(e) && this.entityToCoord.get(e) != c) {
-							final Coord prevCoord = this.entityToCoord.get(e);
-							this.coordToEntities.get(prevCoord).remove(e);
-						}
-						
-						//
-						// Store the entity at the new coord
-						this.entityToCoord.put(e, c);
-						this.coordToEntities.computeIfAbsent(c, (x) -> new LinkedHashSet<>()).add(e);
-					}
+				// Process each entity at the coord in the other map
+				final Coord c = Coord.get(x, y);
+				for (Entity e : from.entities.coordToEntities.getOrDefault(c, Collections.emptySet()))
+					putEntity(e, c);
+			});
+			
+			publish();
 		}
 	}
 	
@@ -444,26 +555,34 @@ public class KnownMap extends Map {
 	 */
 	public boolean isKnown(int mapX, int mapY) {
 		
-		if (!isInMap(mapX, mapY))
+		final State current = state;
+		if (!current.isInMap(mapX, mapY))
 			return false;
 		
-		synchronized (this) {
-			if (!isInMap(mapX, mapY))
-				return false;
-			
-			return CoordPacker.queryPacked(known, mapX, mapY);
-		}
+		final KnownMapPage page = current.getPage(mapX, mapY);
+		return page != null && page.isKnown(KnownMapPage.index(mapX, mapY));
 	}
 	
 	/**
-	 * @return the {@link CoordPacker#packSeveral(Collection) packed} version of
-	 *         {@link #getKnownRegion()}
+	 * @return a {@link CellRegion} holding all known cells in this KnownMap
 	 */
-	public short[] getKnown() {
+	public CellRegion getKnown() {
 		
-		synchronized (this) {
-			return known;
-		}
+		final CellRegion result = new CellRegion();
+		state.forEachKnownCell((x, y, page, i) -> result.add(x, y));
+		return result;
+	}
+	
+	/**
+	 * @return a number which changes whenever this KnownMap's set of known cells
+	 *         changes, so that anything derived from that set (e.g.,
+	 *         {@link #getKnownRegion()}) can tell when it must be re-derived. Two
+	 *         KnownMaps report the same revision only if they share the same set
+	 *         of known cells.
+	 */
+	public long getKnownRevision() {
+		
+		return state.knownRevision;
 	}
 	
 	/**
@@ -471,9 +590,22 @@ public class KnownMap extends Map {
 	 */
 	public GreasedRegion getKnownRegion() {
 		
-		synchronized (this) {
-			return CoordPacker.unpackGreasedRegion(known, width, height);
-		}
+		final State current = state;
+		final GreasedRegion result = new GreasedRegion(current.width, current.height);
+		current.forEachKnownCell((x, y, page, i) -> result.insert(x, y));
+		return result;
+	}
+	
+	/**
+	 * @return a {@link BlockedCells mask} in which every cell <em>not</em> known
+	 *         to this KnownMap is blocked
+	 */
+	public BlockedCells getUnknownCells() {
+		
+		final State current = state;
+		final BlockedCells result = new BlockedCells(current.width, current.height, true);
+		current.forEachKnownCell((x, y, page, i) -> result.set(x, y, false));
+		return result;
 	}
 	
 	/**
@@ -483,25 +615,35 @@ public class KnownMap extends Map {
 	 */
 	public GreasedRegion getKnownRegion(char ch) {
 		
-		return CoordPacker.unpackGreasedRegion(getKnown(ch), width, height);
+		final State current = state;
+		final GreasedRegion result = new GreasedRegion(current.width, current.height);
+		current.forEachKnownCell((x, y, page, i) -> {
+			if (page.map[i] == ch)
+				result.insert(x, y);
+		});
+		
+		return result;
 	}
 	
 	/**
-	 * The {@link CoordPacker#packSeveral(Collection) packed} version of
-	 * {@link #getKnownRegion(char)}.
+	 * The {@link CellRegion} version of {@link #getKnownRegion(char)}.
 	 * 
 	 * @param ch
 	 * @return
 	 */
-	public short[] getKnown(char ch) {
+	public CellRegion getKnown(char ch) {
 		
-		synchronized (this) {
-			return map.getOrDefault(ch, CoordPacker.ALL_WALL);
-		}
+		final CellRegion result = new CellRegion();
+		state.forEachKnownCell((x, y, page, i) -> {
+			if (page.map[i] == ch)
+				result.add(x, y);
+		});
+		
+		return result;
 	}
 	
 	/**
-	 * The packed locations of all instances of the given {@link Color} on the map.
+	 * The locations of all known instances of the given {@link Color} on the map.
 	 * 
 	 * @param color
 	 * @param isBackground
@@ -509,11 +651,18 @@ public class KnownMap extends Map {
 	 *            query the foreground-color map
 	 * @return
 	 */
-	public short[] getKnown(Color color, boolean isBackground) {
+	public CellRegion getKnown(Color color, boolean isBackground) {
 		
-		synchronized (this) {
-			return (isBackground ? colors : bgColors).getOrDefault(color, CoordPacker.ALL_WALL);
-		}
+		final short colorIndex = palette.find(color);
+		
+		final CellRegion result = new CellRegion();
+		if (colorIndex > 0)
+			state.forEachKnownCell((x, y, page, i) -> {
+				if ((isBackground ? page.bgColors : page.colors)[i] == colorIndex)
+					result.add(x, y);
+			});
+		
+		return result;
 	}
 	
 	/**
@@ -521,17 +670,32 @@ public class KnownMap extends Map {
 	 */
 	public Set<Character> getUniqueKnownChars() {
 		
-		return map.keySet();
+		final Set<Character> result = new LinkedHashSet<>();
+		state.forEachKnownCell((x, y, page, i) -> result.add(page.map[i]));
+		
+		return result;
 	}
 	
 	public Set<Color> getUniqueKnownColors() {
 		
-		return colors.keySet();
+		return getUniqueKnownColors(false);
 	}
 	
 	public Set<Color> getUniqueKnownBGColors() {
 		
-		return bgColors.keySet();
+		return getUniqueKnownColors(true);
+	}
+	
+	private Set<Color> getUniqueKnownColors(boolean isBackground) {
+		
+		final Set<Color> result = new LinkedHashSet<>();
+		state.forEachKnownCell((x, y, page, i) -> {
+			final Color color = palette.get((isBackground ? page.bgColors : page.colors)[i]);
+			if (color != null)
+				result.add(color);
+		});
+		
+		return result;
 	}
 	
 	/**
@@ -540,13 +704,11 @@ public class KnownMap extends Map {
 	 */
 	public char[][] getKnownMap() {
 		
-		synchronized (this) {
-			final char[][] map = new char[width][height];
-			for (char ch : this.map.keySet())
-				CoordPacker.unpackGreasedRegion(this.map.get(ch), width, height).forEach(c -> map[c.x][c.y] = ch);
-			
-			return map;
-		}
+		final State current = state;
+		final char[][] map = new char[current.width][current.height];
+		current.forEachKnownCell((x, y, page, i) -> map[x][y] = page.map[i]);
+		
+		return map;
 	}
 	
 	/**
@@ -554,9 +716,7 @@ public class KnownMap extends Map {
 	 */
 	public Collection<Entity> getKnownEntities() {
 		
-		synchronized (this) {
-			return entityToCoord.keySet();
-		}
+		return state.entities.entityToCoord.keySet();
 	}
 	
 	/**
@@ -579,20 +739,23 @@ public class KnownMap extends Map {
 	 */
 	public boolean isVisible(int x, int y) {
 		
-		synchronized (this) {
-			return CoordPacker.queryPacked(visible, x, y);
-		}
+		final State current = state;
+		if (!current.isInMap(x, y))
+			return false;
+		
+		final KnownMapPage page = current.getPage(x, y);
+		return page != null && page.isVisible(KnownMapPage.index(x, y), current.visibleEpoch);
 	}
 	
 	/**
-	 * @return the {@link CoordPacker#packSeveral(Collection) packed} version of
-	 *         {@link #getVisibleRegion()}.
+	 * @return a {@link CellRegion} holding those parts of this map tagged as
+	 *         "visible"
 	 */
-	public short[] getVisible() {
+	public CellRegion getVisible() {
 		
-		synchronized (this) {
-			return visible;
-		}
+		final CellRegion result = new CellRegion();
+		state.forEachVisibleCell(result::add);
+		return result;
 	}
 	
 	/**
@@ -601,18 +764,24 @@ public class KnownMap extends Map {
 	 */
 	public GreasedRegion getVisibleRegion() {
 		
-		synchronized (this) {
-			return CoordPacker.unpackGreasedRegion(visible, getWidth(), getHeight());
-		}
+		final State current = state;
+		final GreasedRegion result = new GreasedRegion(current.width, current.height);
+		current.forEachVisibleCell(result::insert);
+		return result;
 	}
 	
 	/**
-	 * Remove all "is-visible" regions from this map.
+	 * Remove all "is-visible" regions from this map. This takes constant time --
+	 * pages only discard their stale visibility when next written.
 	 */
 	public void resetVisibleRegion() {
 		
+		checkWritable();
+		
 		synchronized (this) {
-			visible = CoordPacker.ALL_WALL;
+			draftEpoch++;
+			dirty = true;
+			publish();
 		}
 	}
 	
@@ -626,23 +795,12 @@ public class KnownMap extends Map {
 	 */
 	public char getMapAt(int mapX, int mapY) {
 		
-		if (!isInMap(mapX, mapY))
+		final State current = state;
+		if (!current.isInMap(mapX, mapY))
 			return 0;
 		
-		synchronized (this) {
-			if (!isInMap(mapX, mapY))
-				return 0;
-			return getCharAtInternal(mapX, mapY);
-		}
-	}
-	
-	private char getCharAtInternal(int mapX, int mapY) {
-		
-		for (char ch : this.map.keySet())
-			if (CoordPacker.queryPacked(this.map.get(ch), mapX, mapY))
-				return ch;
-			
-		return 0;
+		final KnownMapPage page = current.getPage(mapX, mapY);
+		return (page == null) ? 0 : page.map[KnownMapPage.index(mapX, mapY)];
 	}
 	
 	/**
@@ -656,23 +814,12 @@ public class KnownMap extends Map {
 	@Override
 	public Color getColorAt(int mapX, int mapY) {
 		
-		if (!isInMap(mapX, mapY))
+		final State current = state;
+		if (!current.isInMap(mapX, mapY))
 			return null;
 		
-		synchronized (this) {
-			if (!isInMap(mapX, mapY))
-				return null;
-			
-			return getColorAtInternal(mapX, mapY);
-		}
-	}
-	
-	private Color getColorAtInternal(int mapX, int mapY) {
-		
-		for (Color c : this.colors.keySet())
-			if (CoordPacker.queryPacked(this.colors.get(c), mapX, mapY))
-				return c;
-		return null;
+		final KnownMapPage page = current.getPage(mapX, mapY);
+		return (page == null) ? null : palette.get(page.colors[KnownMapPage.index(mapX, mapY)]);
 	}
 	
 	/**
@@ -686,23 +833,198 @@ public class KnownMap extends Map {
 	@Override
 	public Color getBGColorAt(int mapX, int mapY) {
 		
-		if (!isInMap(mapX, mapY))
+		final State current = state;
+		if (!current.isInMap(mapX, mapY))
 			return null;
 		
-		synchronized (this) {
-			if (!isInMap(mapX, mapY))
-				return null;
-			
-			return getBGColorAtInternal(mapX, mapY);
+		final KnownMapPage page = current.getPage(mapX, mapY);
+		return (page == null) ? null : palette.get(page.bgColors[KnownMapPage.index(mapX, mapY)]);
+	}
+	
+	/**
+	 * Record the given cell as "known", with the given contents.
+	 * 
+	 * @param mapX
+	 * @param mapY
+	 * @param ch
+	 * @param color
+	 * @param bgColor
+	 */
+	private void setCell(int mapX, int mapY, char ch, Color color, Color bgColor) {
+		
+		if (getWritablePage(mapX, mapY).set(KnownMapPage.index(mapX, mapY), ch, palette.indexOf(color),
+				palette.indexOf(bgColor)))
+			knownChanged = true;
+	}
+	
+	/**
+	 * Flag the given cell as "visible".
+	 * 
+	 * @param mapX
+	 * @param mapY
+	 */
+	private void setVisible(int mapX, int mapY) {
+		
+		getWritablePage(mapX, mapY).setVisible(KnownMapPage.index(mapX, mapY), draftEpoch);
+	}
+	
+	/**
+	 * Copy the given cell (both contents and visibility) from another KnownMap's
+	 * {@link State}, if that map knows anything about it.
+	 * 
+	 * @param from
+	 * @param fromState
+	 * @param mapX
+	 * @param mapY
+	 */
+	private void copyCell(KnownMap from, State fromState, int mapX, int mapY) {
+		
+		if (!fromState.isInMap(mapX, mapY))
+			return;
+		
+		final KnownMapPage page = fromState.getPage(mapX, mapY);
+		if (page == null)
+			return;
+		
+		final int i = KnownMapPage.index(mapX, mapY);
+		if (page.isKnown(i))
+			setCell(mapX, mapY, page.map[i], from.palette.get(page.colors[i]), from.palette.get(page.bgColors[i]));
+		if (page.isVisible(i, fromState.visibleEpoch))
+			setVisible(mapX, mapY);
+	}
+	
+	/**
+	 * Visit every cell in the given {@link CellRegion region}. This takes time
+	 * proportional to the size of the region, not of this map.
+	 * 
+	 * @param region
+	 *            a region, or {@code null} to visit every cell in the draft
+	 * @param visitor
+	 */
+	private void forEachCell(CellRegion region, CellRegion.CellVisitor visitor) {
+		
+		if (region != null) {
+			region.forEach(visitor);
+			return;
 		}
+		
+		for (int x = 0; x < draftWidth; x++)
+			for (int y = 0; y < draftHeight; y++)
+				visitor.visit(x, y);
 	}
 	
-	private Color getBGColorAtInternal(int mapX, int mapY) {
+	/**
+	 * @param mapX
+	 * @param mapY
+	 * @return {@code true} if the given cell lies within the draft's bounds
+	 */
+	private boolean isInDraft(int mapX, int mapY) {
 		
-		for (Color c : this.bgColors.keySet())
-			if (CoordPacker.queryPacked(this.bgColors.get(c), mapX, mapY))
-				return c;
-		return null;
+		return !(mapX < 0 || mapY < 0 || mapX >= draftWidth || mapY >= draftHeight);
+	}
+	
+	/**
+	 * Get the draft page holding the given cell, allocating it if necessary. If
+	 * that page belongs to another generation (i.e., may be shared with a
+	 * published {@link State}, a copy, or a snapshot), it is copied first.
+	 * <p>
+	 * Must be called while holding this KnownMap's lock.
+	 * </p>
+	 * 
+	 * @param mapX
+	 * @param mapY
+	 * @return
+	 */
+	private KnownMapPage getWritablePage(int mapX, int mapY) {
+		
+		final int pagesHigh = (draftHeight + KnownMapPage.MASK) >> KnownMapPage.SHIFT;
+		final int p = (mapX >> KnownMapPage.SHIFT) * pagesHigh + (mapY >> KnownMapPage.SHIFT);
+		
+		KnownMapPage page = draftPages[p];
+		if (page == null)
+			page = new KnownMapPage(generation);
+		else if (page.getGeneration() != generation)
+			page = page.copy(generation);
+		else
+			return page;
+		
+		draftPages[p] = page;
+		dirty = true;
+		return page;
+	}
+	
+	/**
+	 * Publish the current draft as this KnownMap's new {@link State}, if anything
+	 * has changed. The draft's pages are now visible to readers, and so are moved
+	 * into a past generation.
+	 * <p>
+	 * Must be called while holding this KnownMap's lock.
+	 * </p>
+	 */
+	private void publish() {
+		
+		if (!dirty)
+			return;
+		
+		state = new State(draftWidth, draftHeight, draftPages.clone(), draftEpoch,
+				knownChanged ? KNOWN_REVISIONS.incrementAndGet() : state.knownRevision, draftEntities);
+		
+		generation = GENERATIONS.incrementAndGet();
+		dirty = false;
+		knownChanged = false;
+	}
+	
+	/**
+	 * Store the given {@link Entity} at the given location, replacing its previous
+	 * location, if any.
+	 * <p>
+	 * Must be called while holding this KnownMap's lock.
+	 * </p>
+	 * 
+	 * @param entity
+	 * @param coord
+	 */
+	private void putEntity(Entity entity, Coord coord) {
+		
+		final Coord previous = draftEntities.entityToCoord.put(entity, coord);
+		if (previous != null && !previous.equals(coord))
+			removeEntityAt(entity, previous);
+		
+		draftEntities.coordToEntities.compute(coord, (c, entities) -> {
+			if (entities != null && entities.contains(entity))
+				return entities;
+			
+			final Set<Entity> updated = (entities == null) ? new LinkedHashSet<>() : new LinkedHashSet<>(entities);
+			updated.add(entity);
+			return Collections.unmodifiableSet(updated);
+		});
+	}
+	
+	/**
+	 * Remove the given {@link Entity} from this KnownMap.
+	 * <p>
+	 * Must be called while holding this KnownMap's lock.
+	 * </p>
+	 * 
+	 * @param entity
+	 */
+	private void removeEntity(Entity entity) {
+		
+		final Coord previous = draftEntities.entityToCoord.remove(entity);
+		if (previous != null)
+			removeEntityAt(entity, previous);
+	}
+	
+	private void removeEntityAt(Entity entity, Coord coord) {
+		
+		draftEntities.coordToEntities.computeIfPresent(coord, (c, entities) -> {
+			if (!entities.contains(entity))
+				return entities;
+			
+			final Set<Entity> updated = new LinkedHashSet<>(entities);
+			updated.remove(entity);
+			return (updated.isEmpty()) ? null : Collections.unmodifiableSet(updated);
+		});
 	}
 	
 	/**
@@ -713,39 +1035,28 @@ public class KnownMap extends Map {
 	 */
 	public Collection<Entity> getEntitiesAt(Coord point) {
 		
-		if (!isInMap(point))
+		LOG.entering(KnownMap.class.getName(), "getEntitiesAt(Coord)");
+		
+		final State current = state;
+		if (!current.isInMap(point.x, point.y))
 			return Collections.emptySet();
 		
-		synchronized (this) {
-			LOG.entering(KnownMap.class.getName(), "getEntitiesAt(Coord)");
-			
-			if (!isInMap(point))
-				return Collections.emptySet();
-			
-			final Collection<Entity> result = coordToEntities.getOrDefault(point, Collections.emptySet());
-			
-			LOG.exiting(KnownMap.class.getName(), "getEntitiesAt(Coord)");
-			return result;
-		}
+		final Collection<Entity> result = current.entities.coordToEntities.getOrDefault(point, Collections.emptySet());
+		
+		LOG.exiting(KnownMap.class.getName(), "getEntitiesAt(Coord)");
+		return result;
 	}
 	
 	@Override
 	public Collection<Entity> getEntitiesNear(Coord point, int radius) {
 		
-		synchronized (this) {
-			LOG.entering(KnownMap.class.getName(), "getEntitiesNear(Coord,int)");
-			
-			// LOG.info("Building search-region ...");
-			final GreasedRegion region = new GreasedRegion(getWidth(), getHeight()).insert(point).expand8way(radius);
-			
-			// LOG.info("Searching region ...");
-			final Set<Entity> entities = region.stream()
-					.filter(c -> coordToEntities.containsKey(c) && coordToEntities.get(c) != null)
-					.flatMap(c -> coordToEntities.get(c).stream()).collect(Collectors.toCollection(LinkedHashSet::new));
-			
-			LOG.exiting(KnownMap.class.getName(), "getEntitiesNear(Coord,int)");
-			return entities;
-		}
+		LOG.entering(KnownMap.class.getName(), "getEntitiesNear(Coord,int)");
+		
+		final Set<Entity> entities = new LinkedHashSet<>();
+		forEachEntityNear(point.x, point.y, radius, Radius.SQUARE, entities::add);
+		
+		LOG.exiting(KnownMap.class.getName(), "getEntitiesNear(Coord,int)");
+		return entities;
 	}
 	
 	@Override
@@ -754,6 +1065,60 @@ public class KnownMap extends Map {
 		return getEntitiesNear(Coord.get(x, y), radius);
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This visits either every cell within the search-area, or every cell known to
+	 * hold an {@link Entity}, whichever is fewer.
+	 * </p>
+	 */
+	@Override
+	public void forEachEntityNear(int x, int y, int radius, Radius shape, Consumer<Entity> consumer) {
+		
+		if (radius < 0)
+			return;
+		
+		final State current = state;
+		final java.util.Map<Coord, Set<Entity>> coordToEntities = current.entities.coordToEntities;
+		
+		final int minX = Math.max(0, x - radius), minY = Math.max(0, y - radius);
+		final int maxX = Math.min(current.width - 1, x + radius), maxY = Math.min(current.height - 1, y + radius);
+		final long area = (long) (maxX - minX + 1) * (long) (maxY - minY + 1);
+		
+		if (area > coordToEntities.size()) {
+			for (java.util.Map.Entry<Coord, Set<Entity>> e : coordToEntities.entrySet()) {
+				final Coord c = e.getKey();
+				if (c.x >= minX && c.x <= maxX && c.y >= minY && c.y <= maxY && shape.radius(x, y, c.x, c.y) <= radius)
+					e.getValue().forEach(consumer);
+			}
+			return;
+		}
+		
+		for (int cx = minX; cx <= maxX; cx++)
+			for (int cy = minY; cy <= maxY; cy++) {
+				if (shape.radius(x, y, cx, cy) > radius)
+					continue;
+				
+				final Set<Entity> entities = coordToEntities.get(Coord.get(cx, cy));
+				if (entities != null)
+					entities.forEach(consumer);
+			}
+	}
+	
+	/**
+	 * Execute the given {@link Consumer} against every {@link Entity} at the given
+	 * {@link Coord point}. Entity-sets are never modified in place, so this does
+	 * not need to lock this KnownMap.
+	 * 
+	 * @param point
+	 * @param consumer
+	 */
+	@Override
+	public void forEntitiesAt(Coord point, Consumer<Entity> consumer) {
+		
+		getEntitiesAt(point).forEach(consumer);
+	}
+	
 	/**
 	 * Get the last-known location of the given Entity, or {@code null} if this
 	 * Entity has no last-known-location.
@@ -764,9 +1129,7 @@ public class KnownMap extends Map {
 	@Override
 	public Coord getEntityLocation(Entity entity) {
 		
-		synchronized (this) {
-			return entityToCoord.get(entity);
-		}
+		return state.entities.entityToCoord.get(entity);
 	}
 	
 	/**
@@ -776,102 +1139,137 @@ public class KnownMap extends Map {
 	 */
 	public void forgetEntity(Entity entity) {
 		
+		checkWritable();
+		
 		synchronized (this) {
-			final Coord c = entityToCoord.get(entity);
-			if (c == null)
-				return;
-			
-			if (coordToEntities.containsKey(c))
-				coordToEntities.get(c).remove(entity);
-			entityToCoord.remove(entity);
+			removeEntity(entity);
 		}
 	}
 	
 	@Override
 	public int getWidth() {
 		
-		return width;
+		return state.width;
 	}
 	
 	@Override
 	public int getHeight() {
 		
-		return height;
+		return state.height;
 	}
 	
-	private static IntSet getUniqueCharacters(char[][] map, GreasedRegion search) {
+	/**
+	 * An immutable, published view of a KnownMap's cells, along with the
+	 * {@link Entities} current when it was published.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	private static class State {
 		
-		LOG.entering(KnownMap.class.getName(), "getUniqueCharacters(char[][],GreasedRegion");
-		final IntSet chars = new IntSet(8);
+		final int width, height, pagesWide, pagesHigh, visibleEpoch;
+		final KnownMapPage[] pages;
+		final long knownRevision;
+		final Entities entities;
 		
-		final int startX, startY, endX, endY;
-		if (search == null) {
-			startX = 0;
-			startY = 0;
-			endX = map.length - 1;
-			endY = map[0].length - 1;
-		} else {
-			startX = search.x(true);
-			startY = search.y(true);
-			endX = search.x(false);
-			endY = search.y(false);
+		State(int width, int height, KnownMapPage[] pages, int visibleEpoch, long knownRevision, Entities entities) {
+			
+			this.width = width;
+			this.height = height;
+			this.pagesWide = (width + KnownMapPage.MASK) >> KnownMapPage.SHIFT;
+			this.pagesHigh = (height + KnownMapPage.MASK) >> KnownMapPage.SHIFT;
+			this.pages = pages;
+			this.visibleEpoch = visibleEpoch;
+			this.knownRevision = knownRevision;
+			this.entities = entities;
 		}
-		// LOG.info("searching [" + startX + "," + startY + "]-[" + endX + "," + endY +
-		// "]");
 		
-		for (int x = startX; x <= endX; x++)
-			for (int y = startY; y <= endY; y++)
-				if (map[x][y] != 0 && search.contains(x, y))
-					chars.add((int) map[x][y]);
-				
-		LOG.exiting(KnownMap.class.getName(), "getUniqueCharacters(char[][],GreasedRegion");
-		return chars;
-	}
-	
-	private static Set<Color> getUniqueColors(Color[][] colors, GreasedRegion search) {
-		
-		LOG.entering(KnownMap.class.getName(), "getUniqueColors(Color[][],GreasedRegion");
-		final Set<Color> result = new HashSet<>();
-		
-		final int startX, startY, endX, endY;
-		if (search == null) {
-			startX = 0;
-			startY = 0;
-			endX = colors.length - 1;
-			endY = colors[0].length - 1;
-		} else {
-			startX = search.x(true);
-			startY = search.y(true);
-			endX = search.x(false);
-			endY = search.y(false);
+		boolean isInMap(int mapX, int mapY) {
+			
+			return !(mapX < 0 || mapY < 0 || mapX >= width || mapY >= height);
 		}
-		// LOG.info("searching [" + startX + "," + startY + "]-[" + endX + "," + endY +
-		// "]");
 		
-		for (int x = startX; x <= endX; x++)
-			for (int y = startY; y <= endY; y++)
-				if (search.contains(x, y))
-					result.add(colors[x][y]);
-				
-		LOG.exiting(KnownMap.class.getName(), "getUniqueColors(Color[][],GreasedRegion");
-		return result;
+		/**
+		 * @param mapX
+		 * @param mapY
+		 * @return the page holding the given cell, or {@code null} if that page has
+		 *         not been allocated
+		 */
+		KnownMapPage getPage(int mapX, int mapY) {
+			
+			return pages[(mapX >> KnownMapPage.SHIFT) * pagesHigh + (mapY >> KnownMapPage.SHIFT)];
+		}
+		
+		/**
+		 * Visit every known cell. This takes time proportional to the number of
+		 * allocated pages.
+		 * 
+		 * @param visitor
+		 */
+		void forEachKnownCell(CellVisitor visitor) {
+			
+			for (int px = 0; px < pagesWide; px++)
+				for (int py = 0; py < pagesHigh; py++) {
+					final KnownMapPage page = pages[px * pagesHigh + py];
+					if (page == null)
+						continue;
+					
+					for (int i = 0; i < KnownMapPage.CELLS; i++)
+						if (page.isKnown(i))
+							visitor.visit((px << KnownMapPage.SHIFT) | (i >>> KnownMapPage.SHIFT),
+									(py << KnownMapPage.SHIFT) | (i & KnownMapPage.MASK), page, i);
+				}
+		}
+		
+		/**
+		 * Visit every visible cell. This takes time proportional to the number of
+		 * allocated pages.
+		 * 
+		 * @param visitor
+		 */
+		void forEachVisibleCell(CellRegion.CellVisitor visitor) {
+			
+			for (int px = 0; px < pagesWide; px++)
+				for (int py = 0; py < pagesHigh; py++) {
+					final KnownMapPage page = pages[px * pagesHigh + py];
+					if (page == null || page.getVisibleEpoch() != visibleEpoch)
+						continue;
+					
+					for (int i = 0; i < KnownMapPage.CELLS; i++)
+						if (page.isVisible(i, visibleEpoch))
+							visitor.visit((px << KnownMapPage.SHIFT) | (i >>> KnownMapPage.SHIFT),
+									(py << KnownMapPage.SHIFT) | (i & KnownMapPage.MASK));
+				}
+		}
 	}
 	
-	private static GreasedRegion getColorRegion(Color[][] colors, Color c) {
+	/**
+	 * A KnownMap's entity-knowledge. Entity-sets are never modified once stored
+	 * here -- they are replaced instead -- so they may be handed to callers without
+	 * copying.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	private static class Entities {
 		
-		LOG.entering(KnownMap.class.getName(), "getColorRegion(Color[][],Color");
-		final GreasedRegion result = new GreasedRegion(colors.length, colors[0].length);
+		final java.util.Map<Coord, Set<Entity>> coordToEntities = new ConcurrentHashMap<>();
+		final java.util.Map<Entity, Coord> entityToCoord = new ConcurrentHashMap<>();
 		
-		final int startX = 0, startY = 0, endX = colors.length - 1, endY = colors[0].length - 1;
-		// LOG.info("searching [" + startX + "," + startY + "]-[" + endX + "," + endY +
-		// "]");
+		Entities() {
+			
+		}
 		
-		for (int x = startX; x <= endX; x++)
-			for (int y = startY; y <= endY; y++)
-				if (colors[x][y] == c)
-					result.add(Coord.get(x, y));
-				
-		LOG.exiting(KnownMap.class.getName(), "getColorRegion(Color[][],Color");
-		return result;
+		Entities(Entities toCopy) {
+			
+			coordToEntities.putAll(toCopy.coordToEntities);
+			entityToCoord.putAll(toCopy.entityToCoord);
+		}
+	}
+	
+	@FunctionalInterface
+	private interface CellVisitor {
+		
+		public void visit(int mapX, int mapY, KnownMapPage page, int index);
 	}
 }
@@ -0,0 +1,138 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.map;
+
+import java.util.Arrays;
+
+/**
+ * A square block of {@link KnownMap} cells.
+ * <p>
+ * Every page is stamped with the {@link #getGeneration() generation} of the
+ * KnownMap that created it. A KnownMap may only write to pages of its own
+ * generation; any other page may be shared with a snapshot, and must be
+ * {@link #copy(int) copied} first.
+ * </p>
+ * <p>
+ * Visibility is tracked against an "epoch": a cell is only visible if its
+ * page's {@link #getVisibleEpoch() visible-epoch} matches the epoch being
+ * queried. This allows a KnownMap to forget all visibility by simply advancing
+ * its own epoch, without touching any pages.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+class KnownMapPage {
+	
+	public static final int SHIFT = 4, SIZE = 1 << SHIFT, MASK = SIZE - 1, CELLS = SIZE * SIZE;
+	
+	private final int generation;
+	
+	final char[] map;
+	final short[] colors, bgColors;
+	private final long[] known, visible;
+	private int visibleEpoch;
+	
+	public KnownMapPage(int generation) {
+		
+		this.generation = generation;
+		
+		this.map = new char[CELLS];
+		this.colors = new short[CELLS];
+		this.bgColors = new short[CELLS];
+		this.known = new long[CELLS / 64];
+		this.visible = new long[CELLS / 64];
+		this.visibleEpoch = 0;
+	}
+	
+	private KnownMapPage(int generation, KnownMapPage toCopy) {
+		
+		this.generation = generation;
+		
+		this.map = Arrays.copyOf(toCopy.map, CELLS);
+		this.colors = Arrays.copyOf(toCopy.colors, CELLS);
+		this.bgColors = Arrays.copyOf(toCopy.bgColors, CELLS);
+		this.known = Arrays.copyOf(toCopy.known, toCopy.known.length);
+		this.visible = Arrays.copyOf(toCopy.visible, toCopy.visible.length);
+		this.visibleEpoch = toCopy.visibleEpoch;
+	}
+	
+	/**
+	 * @param generation
+	 * @return a copy of this page, stamped with the given generation
+	 */
+	public KnownMapPage copy(int generation) {
+		
+		return new KnownMapPage(generation, this);
+	}
+	
+	public int getGeneration() {
+		
+		return generation;
+	}
+	
+	public int getVisibleEpoch() {
+		
+		return visibleEpoch;
+	}
+	
+	/**
+	 * @param mapX
+	 * @param mapY
+	 * @return the index of the given map-cell within its page
+	 */
+	public static int index(int mapX, int mapY) {
+		
+		return ((mapX & MASK) << SHIFT) | (mapY & MASK);
+	}
+	
+	public boolean isKnown(int index) {
+		
+		return (known[index >>> 6] & (1L << index)) != 0;
+	}
+	
+	public boolean isVisible(int index, int epoch) {
+		
+		return visibleEpoch == epoch && (visible[index >>> 6] & (1L << index)) != 0;
+	}
+	
+	/**
+	 * @param index
+	 * @param ch
+	 * @param color
+	 * @param bgColor
+	 * @return {@code true} if the given cell was not already known
+	 */
+	public boolean set(int index, char ch, short color, short bgColor) {
+		
+		map[index] = ch;
+		colors[index] = color;
+		bgColors[index] = bgColor;
+		return setKnown(index);
+	}
+	
+	/**
+	 * @param index
+	 * @return {@code true} if the given cell was not already known
+	 */
+	public boolean setKnown(int index) {
+		
+		final long bit = 1L << index;
+		if ((known[index >>> 6] & bit) != 0)
+			return false;
+		
+		known[index >>> 6] |= bit;
+		return true;
+	}
+	
+	public void setVisible(int index, int epoch) {
+		
+		if (visibleEpoch != epoch) {
+			Arrays.fill(visible, 0L);
+			visibleEpoch = epoch;
+		}
+		
+		visible[index >>> 6] |= (1L << index);
+	}
+}
@@ -9,8 +9,8 @@ import java.util.function.Consumer;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.gdx.graphics.Color;
 
+import squidpony.squidgrid.Radius;
 import squidpony.squidmath.Coord;
-import squidpony.squidmath.GreasedRegion;
 
 /**
  * Encapsulates knowledge about the world.
@@ -52,6 +52,25 @@ public abstract class Map {
 	
 	public abstract Collection<Entity> getEntitiesNear(int x, int y, int radius);
 	
+	/**
+	 * Execute the given {@link Consumer} against every {@link Entity} within
+	 * {@code radius} of the given point, with distance measured according to the
+	 * given {@link Radius}. Unlike {@link #getEntitiesNear(int, int, int)}, this
+	 * allocates no intermediate collections.
+	 * <p>
+	 * The consumer may be called while this Map is locked, and so should not
+	 * attempt to modify this Map.
+	 * </p>
+	 * 
+	 * @param x
+	 * @param y
+	 * @param radius
+	 * @param shape
+	 * @param consumer
+	 * @see EntityQuery
+	 */
+	public abstract void forEachEntityNear(int x, int y, int radius, Radius shape, Consumer<Entity> consumer);
+	
 	/**
 	 * Execute the given {@link Consumer} against every {@link Entity} at the given
 	 * {@link Coord point}. Use this if you have problems enforcing synchronization.
@@ -107,15 +126,27 @@ public abstract class Map {
 	
 	public boolean isEntityNear(Entity entity, Coord point, int radius) {
 		
-		synchronized (this) {
-			return new GreasedRegion(getWidth(), getHeight()).insertCircle(point, radius).parallelStream()
-					.anyMatch(c -> isEntityAt(entity, c));
-		}
+		return isEntityNear(entity, point.x, point.y, radius);
 	}
 	
+	/**
+	 * Is the given {@link Entity} within {@code radius} (measured as a
+	 * {@link Radius#CIRCLE circle}) of the given point? This only needs the
+	 * Entity's location, and so takes constant time.
+	 * 
+	 * @param entity
+	 * @param x
+	 * @param y
+	 * @param radius
+	 * @return {@code false} if the Entity is not in this Map
+	 */
 	public boolean isEntityNear(Entity entity, int x, int y, int radius) {
 		
-		return isEntityNear(entity, Coord.get(x, y), radius);
+		final Coord location = getEntityLocation(entity);
+		if (location == null)
+			return false;
+		
+		return Radius.CIRCLE.radius(x, y, location.x, location.y) <= radius;
 	}
 	
 	public abstract Coord getEntityLocation(Entity entity);
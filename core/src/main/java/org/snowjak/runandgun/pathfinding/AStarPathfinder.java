@@ -0,0 +1,27 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.pathfinding;
+
+import squidpony.squidgrid.Direction;
+
+/**
+ * A plain A* {@link Pathfinder}, offering every unblocked neighbor of each
+ * expanded node.
+ * 
+ * @author snowjak88
+ *
+ */
+public class AStarPathfinder extends GridPathfinder {
+	
+	@Override
+	protected void expand(Search search, int x, int y, int index) {
+		
+		final double cost = search.getCost(index);
+		for (Direction d : Direction.OUTWARDS) {
+			final int nx = x + d.deltaX, ny = y + d.deltaY;
+			if (!search.isBlocked(nx, ny))
+				search.offer(nx, ny, cost + ((d.deltaX != 0 && d.deltaY != 0) ? DIAGONAL_COST : 1d), index);
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.pathfinding;
+
+import squidpony.squidai.DijkstraMap;
+import squidpony.squidmath.Coord;
+
+/**
+ * A mask of "blocked" cells -- cells over which a path may not be laid --
+ * held as a bitset (one bit per cell).
+ * <p>
+ * A BlockedCells is not thread-safe while being modified. Masks shared between
+ * threads (e.g., those handed out by a {@link BlockedCellsCache}) must not be
+ * modified.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class BlockedCells {
+	
+	private final int width, height;
+	private final long[] bits;
+	
+	/**
+	 * @param width
+	 * @param height
+	 * @param blocked
+	 *            {@code true} if every cell should begin blocked, {@code false} if
+	 *            every cell should begin unblocked
+	 */
+	public BlockedCells(int width, int height, boolean blocked) {
+		
+		this.width = width;
+		this.height = height;
+		this.bits = new long[(width * height + 63) >> 6];
+		
+		if (blocked)
+			for (int i = 0; i < bits.length; i++)
+				bits[i] = -1L;
+	}
+	
+	/**
+	 * Construct a copy of the given mask.
+	 * 
+	 * @param toCopy
+	 */
+	public BlockedCells(BlockedCells toCopy) {
+		
+		this.width = toCopy.width;
+		this.height = toCopy.height;
+		this.bits = toCopy.bits.clone();
+	}
+	
+	public int getWidth() {
+		
+		return width;
+	}
+	
+	public int getHeight() {
+		
+		return height;
+	}
+	
+	/**
+	 * @param x
+	 * @param y
+	 * @return {@code true} if the given cell is blocked, or lies outside this mask
+	 */
+	public boolean isBlocked(int x, int y) {
+		
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return true;
+		
+		final int i = x + y * width;
+		return (bits[i >> 6] & (1L << i)) != 0;
+	}
+	
+	/**
+	 * @param coord
+	 * @return {@code true} if the given cell is blocked, or lies outside this mask
+	 */
+	public boolean isBlocked(Coord coord) {
+		
+		return isBlocked(coord.x, coord.y);
+	}
+	
+	/**
+	 * Block or unblock the given cell. Cells outside this mask are ignored.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param blocked
+	 */
+	public void set(int x, int y, boolean blocked) {
+		
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return;
+		
+		final int i = x + y * width;
+		if (blocked)
+			bits[i >> 6] |= (1L << i);
+		else
+			bits[i >> 6] &= ~(1L << i);
+	}
+	
+	/**
+	 * Construct a new mask, blocking every cell blocked in either this mask or the
+	 * other.
+	 * 
+	 * @param other
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the two masks are not the same size
+	 */
+	public BlockedCells or(BlockedCells other) {
+		
+		if (other.width != width || other.height != height)
+			throw new IllegalArgumentException("Cannot combine masks of different sizes.");
+		
+		final BlockedCells result = new BlockedCells(this);
+		for (int i = 0; i < bits.length; i++)
+			result.bits[i] |= other.bits[i];
+		return result;
+	}
+	
+	/**
+	 * Mark every blocked cell as a {@link DijkstraMap#WALL wall} in the given
+	 * (initialized) DijkstraMap's gradient, in preparation for a scan. This
+	 * stands in for passing a {@code Collection} of impassable cells to
+	 * {@link DijkstraMap#scan(java.util.Collection)}. The walls remain until the
+	 * DijkstraMap is {@link DijkstraMap#resetMap() reset}.
+	 * 
+	 * @param dijkstra
+	 */
+	public void applyTo(DijkstraMap dijkstra) {
+		
+		final int w = Math.min(width, dijkstra.width), h = Math.min(height, dijkstra.height);
+		
+		for (int word = 0; word < bits.length; word++) {
+			long remaining = bits[word];
+			while (remaining != 0) {
+				final int i = (word << 6) + Long.numberOfTrailingZeros(remaining);
+				remaining &= remaining - 1;
+				
+				final int x = i % width, y = i / width;
+				if (x < w && y < h)
+					dijkstra.gradientMap[x][y] = DijkstraMap.WALL;
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.pathfinding;
+
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.snowjak.runandgun.map.KnownMap;
+
+/**
+ * Caches, for each {@link KnownMap}, the {@link BlockedCells mask} of its
+ * unknown cells. A KnownMap's mask is rebuilt only when its
+ * {@link KnownMap#getKnownRevision() known-revision} changes -- i.e., when it
+ * learns of new cells -- and not on every request.
+ * <p>
+ * KnownMaps are held weakly, so that a discarded team's mask does not linger.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class BlockedCellsCache {
+	
+	private final java.util.Map<KnownMap, Entry> masks = new WeakHashMap<>();
+	
+	private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+	
+	/**
+	 * @param knownMap
+	 * @return a mask blocking every cell unknown to {@code knownMap}, which must
+	 *         not be modified
+	 */
+	public BlockedCells get(KnownMap knownMap) {
+		
+		final long revision = knownMap.getKnownRevision();
+		
+		synchronized (this) {
+			final Entry entry = masks.get(knownMap);
+			if (entry != null && entry.revision == revision) {
+				hits.incrementAndGet();
+				return entry.mask;
+			}
+		}
+		
+		misses.incrementAndGet();
+		final BlockedCells mask = knownMap.getUnknownCells();
+		
+		synchronized (this) {
+			masks.put(knownMap, new Entry(revision, mask));
+		}
+		
+		return mask;
+	}
+	
+	/**
+	 * Discard all cached masks.
+	 */
+	public void clear() {
+		
+		synchronized (this) {
+			masks.clear();
+		}
+	}
+	
+	/**
+	 * @return the number of {@link #get(KnownMap) lookups} which found a cached
+	 *         mask
+	 */
+	public long getHits() {
+		
+		return hits.get();
+	}
+	
+	/**
+	 * @return the number of {@link #get(KnownMap) lookups} which had to build a
+	 *         new mask
+	 */
+	public long getMisses() {
+		
+		return misses.get();
+	}
+	
+	private static class Entry {
+		
+		private final long revision;
+		private final BlockedCells mask;
+		
+		public Entry(long revision, BlockedCells mask) {
+			
+			this.revision = revision;
+			this.mask = mask;
+		}
+	}
+}
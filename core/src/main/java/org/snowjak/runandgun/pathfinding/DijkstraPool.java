@@ -0,0 +1,121 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.pathfinding;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+import org.snowjak.runandgun.map.GlobalMap;
+
+import squidpony.squidai.DijkstraMap;
+import squidpony.squidgrid.Measurement;
+
+/**
+ * A pool of {@link DijkstraMap}s, all initialized from the same
+ * {@link GlobalMap}.
+ * <p>
+ * A DijkstraMap holds its working-state between calls, and so can only serve
+ * one search at a time. Rather than serializing every search through a single
+ * DijkstraMap, each caller borrows one from this pool for the duration of its
+ * search -- so that searches from different threads (e.g., the engine and the
+ * UI) run concurrently. The pool grows to match the number of concurrent
+ * callers.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class DijkstraPool {
+	
+	private final Measurement measurement;
+	private final Queue<Pooled> idle = new ConcurrentLinkedQueue<>();
+	
+	private volatile GlobalMap map = null;
+	
+	/**
+	 * @param measurement
+	 *            the {@link Measurement} every pooled DijkstraMap should use
+	 */
+	public DijkstraPool(Measurement measurement) {
+		
+		this.measurement = measurement;
+	}
+	
+	/**
+	 * Set the {@link GlobalMap} from which pooled DijkstraMaps are initialized.
+	 * 
+	 * @param map
+	 */
+	public void setMap(GlobalMap map) {
+		
+		this.map = map;
+		idle.clear();
+	}
+	
+	/**
+	 * @return the {@link GlobalMap} from which pooled DijkstraMaps are initialized
+	 */
+	public GlobalMap getMap() {
+		
+		return map;
+	}
+	
+	/**
+	 * Borrow a {@link DijkstraMap}, initialized to the current revision of the
+	 * current {@link GlobalMap}, and apply the given task to it. The DijkstraMap is
+	 * reset and returned to this pool afterward; {@code task} must not retain it.
+	 * 
+	 * @param task
+	 * @return the task's result, or {@code null} if there is no current map
+	 */
+	public <T> T apply(Function<DijkstraMap, T> task) {
+		
+		final GlobalMap map = this.map;
+		if (map == null)
+			return null;
+		
+		Pooled pooled = idle.poll();
+		if (pooled == null)
+			pooled = new Pooled(measurement);
+		
+		pooled.ensureInitialized(map);
+		
+		try {
+			return task.apply(pooled.dijkstra);
+		} finally {
+			pooled.dijkstra.clearGoals();
+			pooled.dijkstra.resetMap();
+			
+			if (this.map == map)
+				idle.offer(pooled);
+		}
+	}
+	
+	private static class Pooled {
+		
+		private final DijkstraMap dijkstra = new DijkstraMap();
+		private GlobalMap map = null;
+		private long revision = -1;
+		
+		public Pooled(Measurement measurement) {
+			
+			dijkstra.measurement = measurement;
+		}
+		
+		public void ensureInitialized(GlobalMap map) {
+			
+			final long revision = map.getRevision();
+			if (map == this.map && revision == this.revision)
+				return;
+			
+			dijkstra.initialize(map.getBareMap());
+			this.map = map;
+			this.revision = revision;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.pathfinding;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import squidpony.squidai.DijkstraMap;
+import squidpony.squidgrid.Direction;
+import squidpony.squidmath.Coord;
+
+/**
+ * A fully-scanned {@link DijkstraMap} gradient toward some goal. Any number of
+ * entities, starting anywhere, may find their path to that goal by walking
+ * "downhill" along the gradient, without re-scanning.
+ * <p>
+ * An entity may also be steered by a GoalMap directly, one {@link #next(Coord)
+ * step} at a time, without ever building a path. A GoalMap used this way is a
+ * "flow-field".
+ * </p>
+ * <p>
+ * A GoalMap is immutable, and so may be freely shared.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class GoalMap {
+	
+	private final double[][] gradient;
+	private final int width, height;
+	
+	/**
+	 * Capture the given {@link DijkstraMap}'s current gradient. The DijkstraMap
+	 * must have just been {@link DijkstraMap#scan(java.util.Collection) scanned}.
+	 * 
+	 * @param dijkstra
+	 */
+	public GoalMap(DijkstraMap dijkstra) {
+		
+		this.width = dijkstra.width;
+		this.height = dijkstra.height;
+		this.gradient = new double[width][];
+		for (int x = 0; x < width; x++)
+			this.gradient[x] = dijkstra.gradientMap[x].clone();
+	}
+	
+	/**
+	 * Find a path from the given starting-point toward this GoalMap's goal,
+	 * stopping early if the path reaches {@code maxPathLength} steps or no further
+	 * progress can be made.
+	 * 
+	 * @param start
+	 * @param maxPathLength
+	 * @return the path (not including {@code start}), which may be empty
+	 */
+	public List<Coord> walk(Coord start, int maxPathLength) {
+		
+		final List<Coord> path = new ArrayList<>();
+		
+		Coord current = start;
+		while (path.size() < maxPathLength && (current = next(current)) != null)
+			path.add(current);
+		
+		return path;
+	}
+	
+	/**
+	 * Find the next step from the given location toward this GoalMap's goal.
+	 * 
+	 * @param from
+	 * @return the next step, or {@code null} if {@code from} is the goal or no
+	 *         further progress can be made
+	 */
+	public Coord next(Coord from) {
+		
+		final int x = from.x, y = from.y;
+		if (!isWalkable(x, y) || gradient[x][y] <= DijkstraMap.GOAL)
+			return null;
+		
+		Direction best = null;
+		double bestValue = gradient[x][y];
+		for (Direction d : Direction.OUTWARDS) {
+			final int nx = x + d.deltaX, ny = y + d.deltaY;
+			if (isWalkable(nx, ny) && gradient[nx][ny] < bestValue) {
+				best = d;
+				bestValue = gradient[nx][ny];
+			}
+		}
+		
+		return (best == null) ? null : Coord.get(x + best.deltaX, y + best.deltaY);
+	}
+	
+	private boolean isWalkable(int x, int y) {
+		
+		return x >= 0 && y >= 0 && x < width && y < height && gradient[x][y] < DijkstraMap.FLOOR;
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.pathfinding;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.snowjak.runandgun.map.GlobalMap;
+import org.snowjak.runandgun.map.KnownMap;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * A least-recently-used cache of {@link GoalMap}s.
+ * <p>
+ * GoalMaps are keyed on everything a scan depends upon: the goal, the
+ * {@link GlobalMap#getRevision() revision} of the map being scanned, and the
+ * {@link KnownMap#getKnownRevision() known-revision} of the KnownMap which
+ * determined what was impassable (or {@code -1}, if nothing was). Any change
+ * to either therefore leaves older GoalMaps unreachable, to be evicted in due
+ * course.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class GoalMapCache {
+	
+	private final int capacity;
+	private final LinkedHashMap<Key, GoalMap> goalMaps;
+	
+	private GlobalMap map = null;
+	
+	private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+	
+	/**
+	 * @param capacity
+	 *            the maximum number of GoalMaps to retain
+	 */
+	public GoalMapCache(int capacity) {
+		
+		this.capacity = capacity;
+		this.goalMaps = new LinkedHashMap<Key, GoalMap>(16, 0.75f, true) {
+			
+			private static final long serialVersionUID = 4316853197342815946L;
+			
+			@Override
+			protected boolean removeEldestEntry(java.util.Map.Entry<Key, GoalMap> eldest) {
+				
+				return size() > GoalMapCache.this.capacity;
+			}
+		};
+	}
+	
+	/**
+	 * @param map
+	 * @param mapRevision
+	 *            the map's {@link GlobalMap#getRevision() revision}
+	 * @param knownRevision
+	 *            the {@link KnownMap#getKnownRevision() known-revision} governing
+	 *            impassability, or {@code -1}
+	 * @param goal
+	 * @return the cached GoalMap, or {@code null} if no such GoalMap is cached
+	 */
+	public GoalMap get(GlobalMap map, long mapRevision, long knownRevision, Coord goal) {
+		
+		final GoalMap result;
+		synchronized (this) {
+			result = (map == this.map) ? goalMaps.get(new Key(mapRevision, knownRevision, goal)) : null;
+		}
+		
+		if (result == null)
+			misses.incrementAndGet();
+		else
+			hits.incrementAndGet();
+		
+		return result;
+	}
+	
+	/**
+	 * Cache the given GoalMap. If this cache currently holds GoalMaps for some
+	 * other {@link GlobalMap}, those are discarded.
+	 * 
+	 * @param map
+	 * @param mapRevision
+	 *            the map's {@link GlobalMap#getRevision() revision}
+	 * @param knownRevision
+	 *            the {@link KnownMap#getKnownRevision() known-revision} governing
+	 *            impassability, or {@code -1}
+	 * @param goal
+	 * @param goalMap
+	 */
+	public void put(GlobalMap map, long mapRevision, long knownRevision, Coord goal, GoalMap goalMap) {
+		
+		if (capacity <= 0)
+			return;
+		
+		synchronized (this) {
+			if (map != this.map) {
+				goalMaps.clear();
+				this.map = map;
+			}
+			
+			goalMaps.put(new Key(mapRevision, knownRevision, goal), goalMap);
+		}
+	}
+	
+	/**
+	 * Discard all cached GoalMaps.
+	 */
+	public void clear() {
+		
+		synchronized (this) {
+			goalMaps.clear();
+			map = null;
+		}
+	}
+	
+	/**
+	 * @return the number of GoalMaps currently cached
+	 */
+	public int size() {
+		
+		synchronized (this) {
+			return goalMaps.size();
+		}
+	}
+	
+	/**
+	 * @return the number of {@link #get(GlobalMap, long, long, Coord) lookups}
+	 *         which found a cached GoalMap
+	 */
+	public long getHits() {
+		
+		return hits.get();
+	}
+	
+	/**
+	 * @return the number of {@link #get(GlobalMap, long, long, Coord) lookups}
+	 *         which found no cached GoalMap
+	 */
+	public long getMisses() {
+		
+		return misses.get();
+	}
+	
+	/**
+	 * @return the fraction of {@link #get(GlobalMap, long, long, Coord) lookups}
+	 *         which found a cached GoalMap, or {@code 0} if there have been no
+	 *         lookups
+	 */
+	public double getHitRate() {
+		
+		final long hits = getHits(), total = hits + getMisses();
+		return (total == 0) ? 0d : (double) hits / (double) total;
+	}
+	
+	private static class Key {
+		
+		private final long mapRevision, knownRevision;
+		private final Coord goal;
+		
+		public Key(long mapRevision, long knownRevision, Coord goal) {
+			
+			this.mapRevision = mapRevision;
+			this.knownRevision = knownRevision;
+			this.goal = goal;
+		}
+		
+		@Override
+		public int hashCode() {
+			
+			int result = Long.hashCode(mapRevision);
+			result = 31 * result + Long.hashCode(knownRevision);
+			result = 31 * result + goal.hashCode();
+			return result;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			
+			final Key other = (Key) obj;
+			return mapRevision == other.mapRevision && knownRevision == other.knownRevision
+					&& goal.equals(other.goal);
+		}
+	}
+}
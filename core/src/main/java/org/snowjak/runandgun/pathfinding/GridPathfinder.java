@@ -0,0 +1,372 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.pathfinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * Base for best-first {@link Pathfinder}s over a grid, allowing movement in all
+ * 8 directions (straight steps costing 1, diagonal steps costing &radic;2).
+ * Subclasses decide which successors each expanded node offers.
+ * <p>
+ * Each thread keeps its own {@link Search} working-state, held in primitive
+ * arrays and re-used from one search to the next, so that searching allocates
+ * little beyond the resulting path. That state is divided into square pages,
+ * allocated only where a search actually reaches, so that it grows with the
+ * area searched rather than with the size of the map.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public abstract class GridPathfinder implements Pathfinder {
+	
+	protected static final double DIAGONAL_COST = Math.sqrt(2d);
+	
+	private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+	private final AtomicLong expandedNodes = new AtomicLong();
+	
+	@Override
+	public List<Coord> findPath(BlockedCells blocked, Coord start, Coord goal, int maxPathLength) {
+		
+		if (start.equals(goal) || blocked.isBlocked(goal.x, goal.y))
+			return new ArrayList<>();
+		
+		final Search search = searches.get();
+		search.begin(blocked, goal);
+		search.offer(start.x, start.y, 0d, -1);
+		
+		final int goalIndex = search.indexOf(goal.x, goal.y);
+		long expanded = 0;
+		try {
+			int index;
+			while ((index = search.poll()) >= 0) {
+				expanded++;
+				if (index == goalIndex)
+					return search.getPath(index, maxPathLength);
+				
+				expand(search, search.getX(index), search.getY(index), index);
+			}
+			
+			return new ArrayList<>();
+		} finally {
+			expandedNodes.addAndGet(expanded);
+		}
+	}
+	
+	@Override
+	public long getExpandedNodes() {
+		
+		return expandedNodes.get();
+	}
+	
+	/**
+	 * Offer every successor of the given node to the search.
+	 * 
+	 * @param search
+	 * @param x
+	 * @param y
+	 * @param index
+	 *            the node's {@link Search#indexOf(int, int) index}
+	 */
+	protected abstract void expand(Search search, int x, int y, int index);
+	
+	/**
+	 * @param dx
+	 * @param dy
+	 * @return the cost of moving {@code dx} and {@code dy} cells, in straight or
+	 *         diagonal steps
+	 */
+	protected static double octile(int dx, int dy) {
+		
+		dx = Math.abs(dx);
+		dy = Math.abs(dy);
+		return Math.max(dx, dy) + (DIAGONAL_COST - 1d) * Math.min(dx, dy);
+	}
+	
+	/**
+	 * The working-state of a single search.
+	 * <p>
+	 * Nodes are identified by an index packing their x- and y-coordinates into
+	 * 16 bits each, so maps may be no larger than 32768 cells on a side.
+	 * </p>
+	 */
+	protected static class Search {
+		
+		private static final int MAX_SIZE = 1 << 15;
+		
+		private static final int PAGE_SHIFT = 6, PAGE_SIZE = 1 << PAGE_SHIFT, PAGE_MASK = PAGE_SIZE - 1,
+				PAGE_CELLS = PAGE_SIZE * PAGE_SIZE;
+		
+		/**
+		 * Once this many pages (some 20 MB) have been allocated, they are all
+		 * discarded before the next search begins.
+		 */
+		private static final int MAX_PAGES = 256;
+		
+		private BlockedCells blocked;
+		private int width, height, pagesHigh, goalX, goalY;
+		
+		private int generation = 0;
+		private Page[] pages = new Page[0];
+		private int pageCount = 0;
+		
+		private int openSize = 0;
+		private int[] openNodes = new int[64];
+		private double[] openEstimates = new double[64];
+		
+		void begin(BlockedCells blocked, Coord goal) {
+			
+			if (blocked.getWidth() > MAX_SIZE || blocked.getHeight() > MAX_SIZE)
+				throw new IllegalArgumentException("Cannot search a " + blocked.getWidth() + "x"
+						+ blocked.getHeight() + " map -- maps may be no larger than " + MAX_SIZE + " on a side.");
+			
+			this.blocked = blocked;
+			this.goalX = goal.x;
+			this.goalY = goal.y;
+			
+			if (blocked.getWidth() != width || blocked.getHeight() != height || pageCount > MAX_PAGES) {
+				this.width = blocked.getWidth();
+				this.height = blocked.getHeight();
+				this.pagesHigh = (height + PAGE_MASK) >> PAGE_SHIFT;
+				this.pages = new Page[((width + PAGE_MASK) >> PAGE_SHIFT) * pagesHigh];
+				this.pageCount = 0;
+				this.generation = 0;
+			}
+			
+			if (++generation == Integer.MAX_VALUE) {
+				for (Page page : pages)
+					if (page != null) {
+						Arrays.fill(page.seen, 0);
+						Arrays.fill(page.closed, 0);
+					}
+				generation = 1;
+			}
+			
+			openSize = 0;
+		}
+		
+		public int getGoalX() {
+			
+			return goalX;
+		}
+		
+		public int getGoalY() {
+			
+			return goalY;
+		}
+		
+		/**
+		 * @param x
+		 * @param y
+		 * @return {@code true} if the given cell is blocked or outside the map
+		 */
+		public boolean isBlocked(int x, int y) {
+			
+			return blocked.isBlocked(x, y);
+		}
+		
+		public int indexOf(int x, int y) {
+			
+			return (x << 16) | y;
+		}
+		
+		public int getX(int index) {
+			
+			return index >>> 16;
+		}
+		
+		public int getY(int index) {
+			
+			return index & 0xFFFF;
+		}
+		
+		/**
+		 * @param index
+		 * @return the index of the node from which the given node was reached, or
+		 *         {@code -1} if it is the starting-node
+		 */
+		public int getParent(int index) {
+			
+			return getPage(index).parents[offsetOf(index)];
+		}
+		
+		/**
+		 * @param index
+		 * @return the cost of the cheapest known path to the given node
+		 */
+		public double getCost(int index) {
+			
+			return getPage(index).costs[offsetOf(index)];
+		}
+		
+		/**
+		 * @param index
+		 * @return the page holding the given node, allocating it if necessary
+		 */
+		private Page getPage(int index) {
+			
+			final int p = (getX(index) >> PAGE_SHIFT) * pagesHigh + (getY(index) >> PAGE_SHIFT);
+			Page page = pages[p];
+			if (page == null) {
+				page = new Page();
+				pages[p] = page;
+				pageCount++;
+			}
+			
+			return page;
+		}
+		
+		/**
+		 * @param index
+		 * @return the given node's offset within its page
+		 */
+		private static int offsetOf(int index) {
+			
+			return ((index >>> 16 & PAGE_MASK) << PAGE_SHIFT) | (index & PAGE_MASK);
+		}
+		
+		/**
+		 * Offer the given cell as reachable at the given cost. The offer is ignored
+		 * if the cell is already reachable more cheaply.
+		 * 
+		 * @param x
+		 * @param y
+		 * @param cost
+		 * @param parent
+		 *            the index of the node from which this cell is reached
+		 */
+		public void offer(int x, int y, double cost, int parent) {
+			
+			final int index = indexOf(x, y);
+			final Page page = getPage(index);
+			final int offset = offsetOf(index);
+			if (page.closed[offset] == generation || (page.seen[offset] == generation && page.costs[offset] <= cost))
+				return;
+			
+			page.seen[offset] = generation;
+			page.costs[offset] = cost;
+			page.parents[offset] = parent;
+			push(index, cost + octile(goalX - x, goalY - y));
+		}
+		
+		/**
+		 * @return the index of the most promising open node (which is thereby
+		 *         closed), or {@code -1} if no open nodes remain
+		 */
+		int poll() {
+			
+			while (openSize > 0) {
+				final int index = openNodes[0];
+				
+				openSize--;
+				if (openSize > 0) {
+					openNodes[0] = openNodes[openSize];
+					openEstimates[0] = openEstimates[openSize];
+					siftDown(0);
+				}
+				
+				//
+				// A node may have been pushed more than once, as cheaper paths to it
+				// were found. Only its first appearance counts.
+				//
+				final Page page = getPage(index);
+				final int offset = offsetOf(index);
+				if (page.closed[offset] == generation)
+					continue;
+				
+				page.closed[offset] = generation;
+				return index;
+			}
+			
+			return -1;
+		}
+		
+		/**
+		 * Build the path ending at the given node. Consecutive nodes needn't be
+		 * adjacent, but must lie along a straight or diagonal line.
+		 * 
+		 * @param index
+		 * @param maxPathLength
+		 * @return
+		 */
+		List<Coord> getPath(int index, int maxPathLength) {
+			
+			final List<Coord> path = new ArrayList<>();
+			for (int child = index, parent = getParent(index); parent >= 0; child = parent,
+					parent = getParent(parent)) {
+				
+				final int cx = getX(child), cy = getY(child);
+				final int px = getX(parent), py = getY(parent);
+				final int dx = Integer.signum(px - cx), dy = Integer.signum(py - cy);
+				
+				for (int x = cx, y = cy; x != px || y != py; x += dx, y += dy)
+					path.add(Coord.get(x, y));
+			}
+			
+			Collections.reverse(path);
+			return (path.size() > maxPathLength) ? new ArrayList<>(path.subList(0, maxPathLength)) : path;
+		}
+		
+		private void push(int index, double estimate) {
+			
+			if (openSize == openNodes.length) {
+				openNodes = Arrays.copyOf(openNodes, openSize * 2);
+				openEstimates = Arrays.copyOf(openEstimates, openSize * 2);
+			}
+			
+			int i = openSize++;
+			while (i > 0) {
+				final int parent = (i - 1) >> 1;
+				if (openEstimates[parent] <= estimate)
+					break;
+				openNodes[i] = openNodes[parent];
+				openEstimates[i] = openEstimates[parent];
+				i = parent;
+			}
+			
+			openNodes[i] = index;
+			openEstimates[i] = estimate;
+		}
+		
+		private void siftDown(int i) {
+			
+			final int node = openNodes[i];
+			final double estimate = openEstimates[i];
+			
+			while (true) {
+				int child = (i << 1) + 1;
+				if (child >= openSize)
+					break;
+				if (child + 1 < openSize && openEstimates[child + 1] < openEstimates[child])
+					child++;
+				if (openEstimates[child] >= estimate)
+					break;
+				
+				openNodes[i] = openNodes[child];
+				openEstimates[i] = openEstimates[child];
+				i = child;
+			}
+			
+			openNodes[i] = node;
+			openEstimates[i] = estimate;
+		}
+		
+		/**
+		 * The working-state of one page of nodes.
+		 */
+		private static class Page {
+			
+			private final int[] seen = new int[PAGE_CELLS], closed = new int[PAGE_CELLS],
+					parents = new int[PAGE_CELLS];
+			private final double[] costs = new double[PAGE_CELLS];
+		}
+	}
+}
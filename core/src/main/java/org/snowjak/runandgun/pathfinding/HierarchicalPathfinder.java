@@ -0,0 +1,673 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.pathfinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+import org.snowjak.runandgun.events.MapRegionChangedEvent;
+import org.snowjak.runandgun.map.GlobalMap;
+
+import squidpony.squidgrid.Direction;
+import squidpony.squidmath.Coord;
+
+/**
+ * A hierarchical (HPA*) pathfinder over a {@link GlobalMap}'s
+ * {@link GlobalMap#getWalls() terrain}.
+ * <p>
+ * The map is divided into square clusters. Wherever two neighboring clusters
+ * share a passable stretch of border, an "entrance" is placed, joining the two
+ * clusters; and within each cluster, the shortest paths between its entrances
+ * are precomputed. A long-range search can then be answered on this (much
+ * smaller) graph of entrances, and refined into individual steps using the
+ * precomputed paths.
+ * </p>
+ * <p>
+ * When the map changes, only those clusters (and borders) which the change
+ * touches are {@link #markChanged(MapRegionChangedEvent) marked}, and are
+ * repaired before the next search.
+ * </p>
+ * <p>
+ * Paths found here are near-optimal, not optimal, and consider only terrain.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class HierarchicalPathfinder {
+	
+	private static final Logger LOG = Logger.getLogger(HierarchicalPathfinder.class.getName());
+	
+	private static final double DIAGONAL_COST = Math.sqrt(2d);
+	
+	/**
+	 * Passable stretches of border at least this long receive two entrances (one
+	 * at either end) instead of one.
+	 */
+	private static final int WIDE_ENTRANCE = 6;
+	
+	private static final int EAST = 0, SOUTH = 1, SOUTHEAST = 2, BORDER_KINDS = 4;
+	
+	private final GlobalMap map;
+	private final int clusterSize, width, height, clustersWide, clustersHigh;
+	
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	private BlockedCells walls = null;
+	private List<Node>[] clusterNodes;
+	private List<Node>[] borderNodes;
+	
+	private final List<MapRegionChangedEvent> pendingChanges = new ArrayList<>();
+	
+	/**
+	 * @param map
+	 * @param clusterSize
+	 *            the width (and height) of each cluster
+	 * @throws IllegalArgumentException
+	 *             if {@code clusterSize} is less than 2
+	 */
+	@SuppressWarnings("unchecked")
+	public HierarchicalPathfinder(GlobalMap map, int clusterSize) {
+		
+		if (clusterSize < 2)
+			throw new IllegalArgumentException("Cluster-size must be at least 2.");
+		
+		this.map = map;
+		this.clusterSize = clusterSize;
+		this.width = map.getWidth();
+		this.height = map.getHeight();
+		this.clustersWide = (width + clusterSize - 1) / clusterSize;
+		this.clustersHigh = (height + clusterSize - 1) / clusterSize;
+		
+		this.clusterNodes = new List[clustersWide * clustersHigh];
+		this.borderNodes = new List[clustersWide * clustersHigh * BORDER_KINDS];
+	}
+	
+	/**
+	 * @return the {@link GlobalMap} this pathfinder searches
+	 */
+	public GlobalMap getMap() {
+		
+		return map;
+	}
+	
+	/**
+	 * @return the width (and height) of each cluster
+	 */
+	public int getClusterSize() {
+		
+		return clusterSize;
+	}
+	
+	/**
+	 * Note that some region of the map has changed. The clusters affected by this
+	 * change will be repaired before the next search. Events for other maps are
+	 * ignored.
+	 * 
+	 * @param event
+	 */
+	public void markChanged(MapRegionChangedEvent event) {
+		
+		if (event.getMap() != map)
+			return;
+		
+		synchronized (pendingChanges) {
+			pendingChanges.add(event);
+		}
+	}
+	
+	/**
+	 * Search for a path from {@code start} to {@code goal}.
+	 * 
+	 * @param start
+	 * @param goal
+	 * @param maxPathLength
+	 * @return the path (not including {@code start}), truncated to
+	 *         {@code maxPathLength} steps, or an empty list if {@code goal}
+	 *         cannot be reached
+	 */
+	public List<Coord> findPath(Coord start, Coord goal, int maxPathLength) {
+		
+		ensureRepaired();
+		
+		lock.readLock().lock();
+		try {
+			final List<Coord> path = search(start, goal);
+			return (path.size() > maxPathLength) ? new ArrayList<>(path.subList(0, maxPathLength)) : path;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Build the entrance-graph (if it has not yet been built), and repair every
+	 * cluster touched by any pending change.
+	 */
+	private void ensureRepaired() {
+		
+		final List<MapRegionChangedEvent> changes;
+		synchronized (pendingChanges) {
+			if (walls != null && pendingChanges.isEmpty())
+				return;
+			changes = new ArrayList<>(pendingChanges);
+			pendingChanges.clear();
+		}
+		
+		lock.writeLock().lock();
+		try {
+			if (walls == null) {
+				build();
+				return;
+			}
+			
+			repair(changes);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	private void build() {
+		
+		LOG.entering(HierarchicalPathfinder.class.getName(), "build()");
+		
+		walls = map.getWalls();
+		
+		for (int i = 0; i < clusterNodes.length; i++)
+			clusterNodes[i] = new ArrayList<>();
+		
+		for (int border = 0; border < borderNodes.length; border++)
+			buildBorder(border);
+		
+		for (int cluster = 0; cluster < clusterNodes.length; cluster++)
+			buildCluster(cluster);
+		
+		LOG.exiting(HierarchicalPathfinder.class.getName(), "build()");
+	}
+	
+	private void repair(List<MapRegionChangedEvent> changes) {
+		
+		final Set<Integer> borders = new LinkedHashSet<>(), clusters = new LinkedHashSet<>();
+		
+		for (MapRegionChangedEvent change : changes) {
+			final int minX = Math.max(0, change.getMinX()), minY = Math.max(0, change.getMinY());
+			final int maxX = Math.min(width - 1, change.getMaxX()), maxY = Math.min(height - 1, change.getMaxY());
+			if (minX > maxX || minY > maxY)
+				continue;
+			
+			for (int x = minX; x <= maxX; x++)
+				for (int y = minY; y <= maxY; y++)
+					walls.set(x, y, map.getBareMapAt(x, y) == GlobalMap.FILL);
+				
+			//
+			// A changed cell may affect any border within one cluster of its own --
+			// corner-crossings, in particular, depend on cells in three clusters.
+			//
+			for (int cx = minX / clusterSize - 1; cx <= maxX / clusterSize + 1; cx++)
+				for (int cy = minY / clusterSize - 1; cy <= maxY / clusterSize + 1; cy++) {
+					if (cx < 0 || cy < 0 || cx >= clustersWide || cy >= clustersHigh)
+						continue;
+					
+					final int cluster = cx + cy * clustersWide;
+					for (int kind = 0; kind < BORDER_KINDS; kind++)
+						borders.add(cluster * BORDER_KINDS + kind);
+				}
+			
+			for (int cx = minX / clusterSize; cx <= maxX / clusterSize; cx++)
+				for (int cy = minY / clusterSize; cy <= maxY / clusterSize; cy++)
+					clusters.add(cx + cy * clustersWide);
+		}
+		
+		for (int border : borders) {
+			final int neighbor = getNeighbor(border);
+			if (neighbor < 0)
+				continue;
+			
+			buildBorder(border);
+			clusters.add(border / BORDER_KINDS);
+			clusters.add(neighbor);
+		}
+		
+		for (int cluster : clusters)
+			buildCluster(cluster);
+		
+		LOG.fine("Repaired " + clusters.size() + " cluster(s) and " + borders.size() + " border(s).");
+	}
+	
+	/**
+	 * @param border
+	 * @return the cluster on the far side of the given border, or {@code -1} if
+	 *         that border lies on the edge of the map
+	 */
+	private int getNeighbor(int border) {
+		
+		final int cluster = border / BORDER_KINDS;
+		final int cx = cluster % clustersWide, cy = cluster / clustersWide;
+		
+		switch (border % BORDER_KINDS) {
+		case EAST:
+			return (cx + 1 < clustersWide) ? cluster + 1 : -1;
+		case SOUTH:
+			return (cy + 1 < clustersHigh) ? cluster + clustersWide : -1;
+		case SOUTHEAST:
+			return (cx + 1 < clustersWide && cy + 1 < clustersHigh) ? cluster + clustersWide + 1 : -1;
+		default:
+			return (cx > 0 && cy + 1 < clustersHigh) ? cluster + clustersWide - 1 : -1;
+		}
+	}
+	
+	/**
+	 * (Re)place the entrances along the given border. Each cluster {@code c} has
+	 * four borders: with its eastern neighbor ({@code 4c}), its southern neighbor
+	 * ({@code 4c + 1}), and -- meeting only at a corner -- its south-eastern
+	 * ({@code 4c + 2}) and south-western ({@code 4c + 3}) neighbors.
+	 * 
+	 * @param border
+	 */
+	private void buildBorder(int border) {
+		
+		final List<Node> previous = borderNodes[border];
+		if (previous != null)
+			for (Node node : previous)
+				clusterNodes[node.cluster].remove(node);
+			
+		final List<Node> nodes = new ArrayList<>();
+		borderNodes[border] = nodes;
+		
+		final int neighbor = getNeighbor(border);
+		if (neighbor < 0)
+			return;
+		
+		final int cluster = border / BORDER_KINDS;
+		final int cx = cluster % clustersWide, cy = cluster / clustersWide;
+		final int x0 = cx * clusterSize, y0 = cy * clusterSize;
+		final int x1 = Math.min(width, x0 + clusterSize) - 1, y1 = Math.min(height, y0 + clusterSize) - 1;
+		
+		switch (border % BORDER_KINDS) {
+		case EAST:
+			buildSide(nodes, cluster, neighbor, x1, y0, 0, 1, y1 - y0 + 1);
+			break;
+		case SOUTH:
+			buildSide(nodes, cluster, neighbor, x0, y1, 1, 0, x1 - x0 + 1);
+			break;
+		case SOUTHEAST:
+			buildCorner(nodes, cluster, neighbor, x1, y1, 1);
+			break;
+		default:
+			buildCorner(nodes, cluster, neighbor, x0, y1, -1);
+			break;
+		}
+	}
+	
+	/**
+	 * Place entrances along one side of a cluster, which runs from ({@code x},
+	 * {@code y}) in steps of ({@code dx}, {@code dy}). The neighboring cluster
+	 * lies one step across -- i.e., at ({@code dy}, {@code dx}) from each cell.
+	 */
+	private void buildSide(List<Node> nodes, int cluster, int neighbor, int x, int y, int dx, int dy, int length) {
+		
+		final int ax = dy, ay = dx;
+		
+		//
+		// Walk along the side, looking for runs of cells passable on both sides.
+		//
+		int runStart = -1;
+		for (int i = 0; i <= length; i++) {
+			final int nx = x + i * dx, ny = y + i * dy;
+			final boolean open = (i < length) && isOpen(nx, ny) && isOpen(nx + ax, ny + ay);
+			
+			if (open && runStart < 0)
+				runStart = i;
+			else if (!open && runStart >= 0) {
+				final int runEnd = i - 1;
+				if (runEnd - runStart + 1 >= WIDE_ENTRANCE) {
+					addStraightEntrance(nodes, cluster, neighbor, x + runStart * dx, y + runStart * dy, ax, ay);
+					addStraightEntrance(nodes, cluster, neighbor, x + runEnd * dx, y + runEnd * dy, ax, ay);
+				} else {
+					final int mid = (runStart + runEnd) / 2;
+					addStraightEntrance(nodes, cluster, neighbor, x + mid * dx, y + mid * dy, ax, ay);
+				}
+				runStart = -1;
+			}
+		}
+		
+		//
+		// Cells may also be joined only diagonally across the side, with both
+		// corner-cells between them blocked.
+		//
+		for (int i = 0; i + 1 < length; i++) {
+			final int nx = x + i * dx, ny = y + i * dy;
+			final int nextX = nx + dx, nextY = ny + dy;
+			
+			if (isOpen(nx, ny) && isOpen(nextX + ax, nextY + ay) && !isOpen(nx + ax, ny + ay)
+					&& !isOpen(nextX, nextY))
+				addEntrance(nodes, cluster, neighbor, nx, ny, nextX + ax, nextY + ay, DIAGONAL_COST);
+			
+			if (isOpen(nextX, nextY) && isOpen(nx + ax, ny + ay) && !isOpen(nx, ny)
+					&& !isOpen(nextX + ax, nextY + ay))
+				addEntrance(nodes, cluster, neighbor, nextX, nextY, nx + ax, ny + ay, DIAGONAL_COST);
+		}
+	}
+	
+	/**
+	 * Place an entrance across the corner at ({@code x}, {@code y}), into the
+	 * cluster diagonally below it ({@code dx} giving the direction), if the two
+	 * cells are joined only diagonally.
+	 */
+	private void buildCorner(List<Node> nodes, int cluster, int neighbor, int x, int y, int dx) {
+		
+		if (isOpen(x, y) && isOpen(x + dx, y + 1) && !isOpen(x + dx, y) && !isOpen(x, y + 1))
+			addEntrance(nodes, cluster, neighbor, x, y, x + dx, y + 1, DIAGONAL_COST);
+	}
+	
+	private void addStraightEntrance(List<Node> nodes, int cluster, int neighbor, int x, int y, int ax, int ay) {
+		
+		addEntrance(nodes, cluster, neighbor, x, y, x + ax, y + ay, 1d);
+	}
+	
+	private void addEntrance(List<Node> nodes, int cluster, int neighbor, int nearX, int nearY, int farX, int farY,
+			double cost) {
+		
+		final Node near = new Node(nearX, nearY, cluster);
+		final Node far = new Node(farX, farY, neighbor);
+		
+		near.interEdges.add(new Edge(far, cost, new Coord[] { far.coord }));
+		far.interEdges.add(new Edge(near, cost, new Coord[] { near.coord }));
+		
+		nodes.add(near);
+		nodes.add(far);
+		clusterNodes[cluster].add(near);
+		clusterNodes[neighbor].add(far);
+	}
+	
+	/**
+	 * Recompute the paths between every pair of entrances within the given
+	 * cluster.
+	 * 
+	 * @param cluster
+	 */
+	private void buildCluster(int cluster) {
+		
+		final List<Node> nodes = clusterNodes[cluster];
+		for (Node node : nodes)
+			node.intraEdges.clear();
+		
+		for (Node from : nodes) {
+			final LocalSearch search = new LocalSearch(cluster, from.coord);
+			for (Node to : nodes)
+				if (to != from && search.isReached(to.coord))
+					from.intraEdges.add(new Edge(to, search.getCost(to.coord), search.pathTo(to.coord)));
+		}
+	}
+	
+	private List<Coord> search(Coord start, Coord goal) {
+		
+		if (!isInside(start) || !isInside(goal) || !isOpen(start.x, start.y) || !isOpen(goal.x, goal.y))
+			return new ArrayList<>();
+		
+		if (start.equals(goal))
+			return new ArrayList<>();
+		
+		final LocalSearch fromStart = new LocalSearch(getCluster(start), start);
+		final LocalSearch toGoal = new LocalSearch(getCluster(goal), goal);
+		
+		final Node startNode = new Node(start.x, start.y, -1), goalNode = new Node(goal.x, goal.y, -1);
+		
+		//
+		// If the goal lies within the starting cluster, and can be reached without
+		// leaving it, we need not consult the entrance-graph at all.
+		//
+		double bestCost = Double.POSITIVE_INFINITY;
+		if (getCluster(start) == getCluster(goal) && fromStart.isReached(goal)) {
+			bestCost = fromStart.getCost(goal);
+			startNode.intraEdges.add(new Edge(goalNode, bestCost, fromStart.pathTo(goal)));
+		}
+		
+		for (Node node : clusterNodes[getCluster(start)])
+			if (fromStart.isReached(node.coord))
+				startNode.intraEdges.add(new Edge(node, fromStart.getCost(node.coord), fromStart.pathTo(node.coord)));
+		
+		//
+		// A* across the entrance-graph.
+		//
+		final java.util.Map<Node, Double> costs = new HashMap<>();
+		final java.util.Map<Node, Edge> via = new HashMap<>();
+		final java.util.Map<Node, Node> previous = new HashMap<>();
+		final PriorityQueue<Open> open = new PriorityQueue<>();
+		
+		costs.put(startNode, 0d);
+		open.add(new Open(startNode, 0d, heuristic(start, goal)));
+		
+		final int goalCluster = getCluster(goal);
+		
+		while (!open.isEmpty()) {
+			final Open current = open.poll();
+			if (current.cost > costs.getOrDefault(current.node, Double.POSITIVE_INFINITY))
+				continue;
+			if (current.node == goalNode)
+				break;
+			
+			final List<Edge> edges = new ArrayList<>(current.node.intraEdges);
+			edges.addAll(current.node.interEdges);
+			if (current.node.cluster == goalCluster && toGoal.isReached(current.node.coord))
+				edges.add(new Edge(goalNode, toGoal.getCost(current.node.coord), toGoal.pathFrom(current.node.coord)));
+			
+			for (Edge edge : edges) {
+				final double cost = current.cost + edge.cost;
+				if (cost >= costs.getOrDefault(edge.to, Double.POSITIVE_INFINITY))
+					continue;
+				
+				costs.put(edge.to, cost);
+				via.put(edge.to, edge);
+				previous.put(edge.to, current.node);
+				open.add(new Open(edge.to, cost, cost + heuristic(edge.to.coord, goal)));
+			}
+		}
+		
+		if (!via.containsKey(goalNode))
+			return new ArrayList<>();
+		
+		//
+		// Refine the abstract path into individual steps.
+		//
+		final List<Coord[]> segments = new ArrayList<>();
+		for (Node node = goalNode; node != startNode; node = previous.get(node))
+			segments.add(via.get(node).path);
+		Collections.reverse(segments);
+		
+		final List<Coord> path = new ArrayList<>();
+		for (Coord[] segment : segments)
+			path.addAll(Arrays.asList(segment));
+		return path;
+	}
+	
+	private double heuristic(Coord from, Coord to) {
+		
+		final int dx = Math.abs(from.x - to.x), dy = Math.abs(from.y - to.y);
+		return Math.max(dx, dy) + (DIAGONAL_COST - 1d) * Math.min(dx, dy);
+	}
+	
+	private boolean isInside(Coord coord) {
+		
+		return coord.x >= 0 && coord.y >= 0 && coord.x < width && coord.y < height;
+	}
+	
+	private int getCluster(Coord coord) {
+		
+		return (coord.x / clusterSize) + (coord.y / clusterSize) * clustersWide;
+	}
+	
+	private boolean isOpen(int x, int y) {
+		
+		return !walls.isBlocked(x, y);
+	}
+	
+	/**
+	 * An entrance into a cluster.
+	 */
+	private static class Node {
+		
+		private final Coord coord;
+		private final int cluster;
+		private final List<Edge> intraEdges = new ArrayList<>(), interEdges = new ArrayList<>(1);
+		
+		public Node(int x, int y, int cluster) {
+			
+			this.coord = Coord.get(x, y);
+			this.cluster = cluster;
+		}
+	}
+	
+	private static class Edge {
+		
+		private final Node to;
+		private final double cost;
+		private final Coord[] path;
+		
+		/**
+		 * @param to
+		 * @param cost
+		 * @param path
+		 *            the steps from this edge's origin (exclusive) to {@code to}
+		 *            (inclusive)
+		 */
+		public Edge(Node to, double cost, Coord[] path) {
+			
+			this.to = to;
+			this.cost = cost;
+			this.path = path;
+		}
+	}
+	
+	private static class Open implements Comparable<Open> {
+		
+		private final Node node;
+		private final double cost, estimate;
+		
+		public Open(Node node, double cost, double estimate) {
+			
+			this.node = node;
+			this.cost = cost;
+			this.estimate = estimate;
+		}
+		
+		@Override
+		public int compareTo(Open o) {
+			
+			return Double.compare(estimate, o.estimate);
+		}
+	}
+	
+	/**
+	 * A Dijkstra search confined to a single cluster.
+	 */
+	private class LocalSearch {
+		
+		private final int x0, y0, w, h;
+		private final double[] costs;
+		private final int[] parents;
+		
+		public LocalSearch(int cluster, Coord source) {
+			
+			this.x0 = (cluster % clustersWide) * clusterSize;
+			this.y0 = (cluster / clustersWide) * clusterSize;
+			this.w = Math.min(width, x0 + clusterSize) - x0;
+			this.h = Math.min(height, y0 + clusterSize) - y0;
+			
+			this.costs = new double[w * h];
+			this.parents = new int[w * h];
+			Arrays.fill(costs, Double.POSITIVE_INFINITY);
+			Arrays.fill(parents, -1);
+			
+			final int sourceIndex = indexOf(source.x, source.y);
+			costs[sourceIndex] = 0d;
+			
+			final PriorityQueue<double[]> open = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+			open.add(new double[] { 0d, sourceIndex });
+			
+			while (!open.isEmpty()) {
+				final double[] current = open.poll();
+				final int index = (int) current[1];
+				if (current[0] > costs[index])
+					continue;
+				
+				final int x = x0 + index % w, y = y0 + index / w;
+				for (Direction d : Direction.OUTWARDS) {
+					final int nx = x + d.deltaX, ny = y + d.deltaY;
+					if (nx < x0 || ny < y0 || nx >= x0 + w || ny >= y0 + h || !isOpen(nx, ny))
+						continue;
+					
+					final int neighbor = indexOf(nx, ny);
+					final double cost = costs[index] + ((d.deltaX != 0 && d.deltaY != 0) ? DIAGONAL_COST : 1d);
+					if (cost < costs[neighbor]) {
+						costs[neighbor] = cost;
+						parents[neighbor] = index;
+						open.add(new double[] { cost, neighbor });
+					}
+				}
+			}
+		}
+		
+		public boolean isReached(Coord coord) {
+			
+			return costs[indexOf(coord.x, coord.y)] < Double.POSITIVE_INFINITY;
+		}
+		
+		public double getCost(Coord coord) {
+			
+			return costs[indexOf(coord.x, coord.y)];
+		}
+		
+		/**
+		 * @param coord
+		 * @return the steps from this search's source (exclusive) to {@code coord}
+		 *         (inclusive)
+		 */
+		public Coord[] pathTo(Coord coord) {
+			
+			final Coord[] path = pathFrom(coord);
+			final Coord[] result = new Coord[path.length];
+			
+			//
+			// pathFrom() gives the steps from coord (exclusive) to the source
+			// (inclusive). Reversing those (and exchanging the source for coord)
+			// gives the steps in the other direction.
+			//
+			for (int i = 0; i < path.length - 1; i++)
+				result[i] = path[path.length - 2 - i];
+			if (path.length > 0)
+				result[path.length - 1] = coord;
+			return result;
+		}
+		
+		/**
+		 * @param coord
+		 * @return the steps from {@code coord} (exclusive) to this search's source
+		 *         (inclusive)
+		 */
+		public Coord[] pathFrom(Coord coord) {
+			
+			final List<Coord> path = new ArrayList<>();
+			for (int index = parents[indexOf(coord.x, coord.y)]; index >= 0; index = parents[index])
+				path.add(Coord.get(x0 + index % w, y0 + index / w));
+			return path.toArray(new Coord[path.size()]);
+		}
+		
+		private int indexOf(int x, int y) {
+			
+			return (x - x0) + (y - y0) * w;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.pathfinding;
+
+import squidpony.squidgrid.Direction;
+
+/**
+ * A Jump Point Search {@link Pathfinder}.
+ * <p>
+ * Rather than offering each neighbor of an expanded node, JPS "jumps" in each
+ * promising direction, skipping over every cell which some other path could
+ * reach at least as cheaply, and offers only the "jump-points" where such a
+ * straight run must turn or branch. On open ground, this expands far fewer
+ * nodes than A*, while finding paths of the same cost.
+ * </p>
+ * <p>
+ * As with the rest of this game's movement, diagonal steps are allowed to cut
+ * past the corners of blocked cells.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class JumpPointPathfinder extends GridPathfinder {
+	
+	@Override
+	protected void expand(Search search, int x, int y, int index) {
+		
+		final int parent = search.getParent(index);
+		
+		//
+		// The starting-node has no direction of travel to prune by.
+		//
+		if (parent < 0) {
+			for (Direction d : Direction.OUTWARDS)
+				jumpFrom(search, x, y, index, d.deltaX, d.deltaY);
+			return;
+		}
+		
+		final int dx = Integer.signum(x - search.getX(parent)), dy = Integer.signum(y - search.getY(parent));
+		
+		if (dx != 0 && dy != 0) {
+			jumpFrom(search, x, y, index, dx, dy);
+			jumpFrom(search, x, y, index, dx, 0);
+			jumpFrom(search, x, y, index, 0, dy);
+			if (search.isBlocked(x - dx, y))
+				jumpFrom(search, x, y, index, -dx, dy);
+			if (search.isBlocked(x, y - dy))
+				jumpFrom(search, x, y, index, dx, -dy);
+			
+		} else if (dx != 0) {
+			jumpFrom(search, x, y, index, dx, 0);
+			if (search.isBlocked(x, y + 1))
+				jumpFrom(search, x, y, index, dx, 1);
+			if (search.isBlocked(x, y - 1))
+				jumpFrom(search, x, y, index, dx, -1);
+			
+		} else {
+			jumpFrom(search, x, y, index, 0, dy);
+			if (search.isBlocked(x + 1, y))
+				jumpFrom(search, x, y, index, 1, dy);
+			if (search.isBlocked(x - 1, y))
+				jumpFrom(search, x, y, index, -1, dy);
+		}
+	}
+	
+	private void jumpFrom(Search search, int x, int y, int index, int dx, int dy) {
+		
+		final int jump = jump(search, x, y, dx, dy);
+		if (jump < 0)
+			return;
+		
+		final int jx = search.getX(jump), jy = search.getY(jump);
+		search.offer(jx, jy, search.getCost(index) + octile(jx - x, jy - y), index);
+	}
+	
+	/**
+	 * Travel from the given cell in the given direction until reaching a
+	 * jump-point (or being blocked).
+	 * 
+	 * @param search
+	 * @param x
+	 * @param y
+	 * @param dx
+	 * @param dy
+	 * @return the index of the jump-point reached, or {@code -1} if none
+	 */
+	private int jump(Search search, int x, int y, int dx, int dy) {
+		
+		while (true) {
+			x += dx;
+			y += dy;
+			
+			if (search.isBlocked(x, y))
+				return -1;
+			if (x == search.getGoalX() && y == search.getGoalY())
+				return search.indexOf(x, y);
+			
+			if (dx != 0 && dy != 0) {
+				if ((search.isBlocked(x - dx, y) && !search.isBlocked(x - dx, y + dy))
+						|| (search.isBlocked(x, y - dy) && !search.isBlocked(x + dx, y - dy)))
+					return search.indexOf(x, y);
+				
+				//
+				// A diagonal run must stop wherever one of its straight components
+				// would find a jump-point.
+				//
+				if (jump(search, x, y, dx, 0) >= 0 || jump(search, x, y, 0, dy) >= 0)
+					return search.indexOf(x, y);
+				
+			} else if (dx != 0) {
+				if ((search.isBlocked(x, y + 1) && !search.isBlocked(x + dx, y + 1))
+						|| (search.isBlocked(x, y - 1) && !search.isBlocked(x + dx, y - 1)))
+					return search.indexOf(x, y);
+				
+			} else {
+				if ((search.isBlocked(x + 1, y) && !search.isBlocked(x + 1, y + dy))
+						|| (search.isBlocked(x - 1, y) && !search.isBlocked(x - 1, y + dy)))
+					return search.indexOf(x, y);
+			}
+		}
+	}
+}
@@ -0,0 +1,245 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.pathfinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.snowjak.runandgun.components.HasMovementList;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * A path -- a sequence of {@link Coord cells} -- held as packed {@code int}s,
+ * with a cursor marking the current cell. Advancing along the path merely moves
+ * the cursor, and so allocates nothing.
+ * <p>
+ * PathBuffers are pooled: {@link #obtain() obtain} one rather than constructing
+ * it, and {@link #free() free} it once done with it (as
+ * {@link HasMovementList#reset()} does).
+ * </p>
+ * <p>
+ * A PathBuffer is not thread-safe; its pool is.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class PathBuffer {
+	
+	private static final int INITIAL_CAPACITY = 32;
+	
+	/**
+	 * Freed buffers larger than this are left for the garbage-collector, rather
+	 * than pooled.
+	 */
+	private static final int MAX_POOLED_CAPACITY = 4096;
+	private static final int MAX_POOLED = 1024;
+	
+	private static final Queue<PathBuffer> POOL = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger POOLED = new AtomicInteger();
+	
+	private int[] cells = new int[INITIAL_CAPACITY];
+	private int cursor = 0, size = 0;
+	
+	private PathBuffer() {
+		
+	}
+	
+	/**
+	 * @return an empty PathBuffer, taken from the pool if possible
+	 */
+	public static PathBuffer obtain() {
+		
+		final PathBuffer buffer = POOL.poll();
+		if (buffer == null)
+			return new PathBuffer();
+		
+		POOLED.decrementAndGet();
+		return buffer;
+	}
+	
+	/**
+	 * Clear this PathBuffer and return it to the pool. It must not be used
+	 * afterward.
+	 */
+	public void free() {
+		
+		clear();
+		
+		if (cells.length > MAX_POOLED_CAPACITY)
+			return;
+		
+		if (POOLED.incrementAndGet() > MAX_POOLED) {
+			POOLED.decrementAndGet();
+			return;
+		}
+		
+		POOL.offer(this);
+	}
+	
+	/**
+	 * Pack the given cell into a single {@code int}.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public static int pack(int x, int y) {
+		
+		return (x << 16) | (y & 0xFFFF);
+	}
+	
+	public static int unpackX(int packed) {
+		
+		return packed >> 16;
+	}
+	
+	public static int unpackY(int packed) {
+		
+		return (short) packed;
+	}
+	
+	/**
+	 * Append the given cell to the end of this path.
+	 * 
+	 * @param x
+	 * @param y
+	 */
+	public void add(int x, int y) {
+		
+		ensureCapacity(1);
+		cells[size++] = pack(x, y);
+	}
+	
+	/**
+	 * Append the given cell to the end of this path.
+	 * 
+	 * @param cell
+	 */
+	public void add(Coord cell) {
+		
+		add(cell.x, cell.y);
+	}
+	
+	/**
+	 * Append the given cells to the end of this path.
+	 * 
+	 * @param cells
+	 */
+	public void addAll(List<Coord> cells) {
+		
+		ensureCapacity(cells.size());
+		for (int i = 0; i < cells.size(); i++) {
+			final Coord cell = cells.get(i);
+			this.cells[size++] = pack(cell.x, cell.y);
+		}
+	}
+	
+	/**
+	 * Append the given {@link #pack(int, int) packed} cells to the end of this
+	 * path.
+	 * 
+	 * @param packed
+	 */
+	public void addAllPacked(int[] packed) {
+		
+		ensureCapacity(packed.length);
+		System.arraycopy(packed, 0, cells, size, packed.length);
+		size += packed.length;
+	}
+	
+	/**
+	 * @return {@code true} if any cells remain at or after the cursor
+	 */
+	public boolean hasRemaining() {
+		
+		return cursor < size;
+	}
+	
+	/**
+	 * @return the number of cells remaining at or after the cursor
+	 */
+	public int remaining() {
+		
+		return size - cursor;
+	}
+	
+	/**
+	 * @return the cell at the cursor, or {@code null} if none remain
+	 */
+	public Coord getCurrent() {
+		
+		if (cursor >= size)
+			return null;
+		
+		return Coord.get(unpackX(cells[cursor]), unpackY(cells[cursor]));
+	}
+	
+	/**
+	 * Advance the cursor by one cell.
+	 * 
+	 * @return {@code true} if any cells remain
+	 */
+	public boolean advance() {
+		
+		if (cursor < size)
+			cursor++;
+		
+		return hasRemaining();
+	}
+	
+	/**
+	 * @return the cells remaining at or after the cursor
+	 */
+	public List<Coord> getRemaining() {
+		
+		final List<Coord> result = new ArrayList<>(remaining());
+		for (int i = cursor; i < size; i++)
+			result.add(Coord.get(unpackX(cells[i]), unpackY(cells[i])));
+		return result;
+	}
+	
+	/**
+	 * @return the {@link #pack(int, int) packed} cells remaining at or after the
+	 *         cursor
+	 */
+	public int[] getRemainingPacked() {
+		
+		return Arrays.copyOfRange(cells, cursor, size);
+	}
+	
+	/**
+	 * Discard every cell in this path.
+	 */
+	public void clear() {
+		
+		cursor = 0;
+		size = 0;
+	}
+	
+	private void ensureCapacity(int additional) {
+		
+		if (size + additional <= cells.length)
+			return;
+		
+		//
+		// Reclaim the space behind the cursor before growing.
+		//
+		if (cursor > 0) {
+			System.arraycopy(cells, cursor, cells, 0, size - cursor);
+			size -= cursor;
+			cursor = 0;
+			
+			if (size + additional <= cells.length)
+				return;
+		}
+		
+		cells = Arrays.copyOf(cells, Math.max(cells.length * 2, size + additional));
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.pathfinding;
+
+import java.util.List;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * A point-to-point pathfinder over a {@link BlockedCells passability-mask}.
+ * <p>
+ * Implementations must be thread-safe.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public interface Pathfinder {
+	
+	/**
+	 * Search for a path from {@code start} to {@code goal}, crossing no
+	 * {@link BlockedCells#isBlocked(int, int) blocked} cells.
+	 * 
+	 * @param blocked
+	 * @param start
+	 * @param goal
+	 * @param maxPathLength
+	 * @return the path (not including {@code start}), truncated to
+	 *         {@code maxPathLength} steps, or an empty list if {@code goal}
+	 *         cannot be reached
+	 */
+	public List<Coord> findPath(BlockedCells blocked, Coord start, Coord goal, int maxPathLength);
+	
+	/**
+	 * @return the total number of search-nodes this pathfinder has expanded, across
+	 *         all searches
+	 */
+	public long getExpandedNodes();
+}
@@ -0,0 +1,44 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.pathfinding;
+
+import squidpony.squidai.DijkstraMap;
+
+/**
+ * Enumerates the available point-to-point {@link Pathfinder}s.
+ * 
+ * @author snowjak88
+ *
+ */
+public enum PathfinderType {
+	/**
+	 * Scan a {@link GoalMap} using a {@link DijkstraMap}, and walk it. This is the
+	 * only type for which no {@link Pathfinder} is {@link #create() created}.
+	 */
+	DIJKSTRA,
+	/**
+	 * Search with an {@link AStarPathfinder}.
+	 */
+	A_STAR,
+	/**
+	 * Search with a {@link JumpPointPathfinder}.
+	 */
+	JUMP_POINT;
+	
+	/**
+	 * @return a new {@link Pathfinder} of this type, or {@code null} if this is
+	 *         {@link #DIJKSTRA}
+	 */
+	public Pathfinder create() {
+		
+		switch (this) {
+		case A_STAR:
+			return new AStarPathfinder();
+		case JUMP_POINT:
+			return new JumpPointPathfinder();
+		default:
+			return null;
+		}
+	}
+}
@@ -51,7 +51,7 @@ public class MyScreen extends AbstractScreen {
 	
 	private DungeonGenerator dungeonGen;
 	
-	public final int mapWidth = 64, mapHeight = 64;
+	private int mapWidth, mapHeight;
 	
 	private static final float FLOAT_LIGHTING = SColor.COSMIC_LATTE.toFloatBits(),
 			GRAY_FLOAT = SColor.CW_GRAY_BLACK.toFloatBits();
@@ -61,6 +61,9 @@ public class MyScreen extends AbstractScreen {
 		
 		final DisplayConfiguration dc = Context.get().config().display();
 		
+		mapWidth = Context.get().config().rules().world().getWidth();
+		mapHeight = Context.get().config().rules().world().getHeight();
+		
 		warmMildFilter = new FloatFilters.YCwCmFilter(0.875f, 0.6f, 0.6f);
 		batch = new FilterBatch(warmMildFilter);
 		
@@ -209,7 +212,7 @@ public class MyScreen extends AbstractScreen {
 					
 				} else {
 					
-					mapCh = map.getMap()[x][y];
+					mapCh = map.getMapAt(x, y);
 					
 					mapColor = map.getColorAt(x, y).toFloatBits();
 					mapBGColor = map.getBGColorAt(x, y).toFloatBits();
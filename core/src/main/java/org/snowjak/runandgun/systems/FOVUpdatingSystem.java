@@ -3,29 +3,74 @@
  */
 package org.snowjak.runandgun.systems;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import org.snowjak.runandgun.components.CanSee;
 import org.snowjak.runandgun.components.HasLocation;
+import org.snowjak.runandgun.concurrent.ParallelRunner;
+import org.snowjak.runandgun.concurrent.TaskScheduler.Lane;
+import org.snowjak.runandgun.config.RulesConfiguration.EntitySystemRulesConfiguration;
 import org.snowjak.runandgun.context.Context;
 import org.snowjak.runandgun.events.CurrentMapChangedEvent;
+import org.snowjak.runandgun.events.MapRegionChangedEvent;
+import org.snowjak.runandgun.map.FOVCache;
+import org.snowjak.runandgun.map.FOVResult;
 import org.snowjak.runandgun.map.GlobalMap;
 
 import com.badlogic.ashley.core.ComponentMapper;
 import com.badlogic.ashley.core.Engine;
 import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntitySystem;
 import com.badlogic.ashley.core.Family;
-import com.badlogic.ashley.systems.IteratingSystem;
+import com.badlogic.ashley.utils.ImmutableArray;
 import com.google.common.eventbus.Subscribe;
 
 import squidpony.squidgrid.FOV;
 import squidpony.squidgrid.Radius;
 
 /**
+ * Computes the field-of-view of every {@link CanSee} entity.
+ * <p>
+ * A viewer's FOV is only re-computed when it is stale: when the viewer has
+ * moved (or changed its sight-distance) since its FOV was last computed, or
+ * when the {@link GlobalMap} has {@link MapRegionChangedEvent changed} within
+ * the viewer's sight-distance. All other viewers keep their current FOV.
+ * </p>
+ * <p>
+ * Each FOV is computed only within a square window of side {@code 2r+1}
+ * centered on the viewer (where {@code r} is its {@link CanSee#getDistance()
+ * sight-distance}), clipped to the map's bounds. The cost of each FOV therefore
+ * depends on the viewer's sight-distance, not on the size of the map.
+ * </p>
+ * <p>
+ * Results are kept in an {@link FOVCache}, keyed on the viewer's location and
+ * sight-distance and on the map's {@link GlobalMap#getRevision() revision}, so
+ * that a viewer which has neither moved nor seen the map change re-uses its
+ * previous result rather than re-computing it.
+ * </p>
+ * <p>
+ * Viewers are first grouped by viewpoint (i.e., by location and
+ * sight-distance), and each viewpoint's FOV is computed only once per update,
+ * with every viewer in the group receiving the same (immutable)
+ * {@link FOVResult}.
+ * </p>
+ * <p>
+ * When configured with {@link EntitySystemRulesConfiguration#getFovThreads()
+ * more than one FOV thread}, viewpoints are split into contiguous shards, each
+ * computed on the {@link Lane#PARALLEL parallel lane} into its own
+ * scratch-buffers. Each FOV depends only on the map and its viewpoint, so
+ * results are identical to those computed serially.
+ * </p>
+ * 
  * @author snowjak88
  *
  */
-public class FOVUpdatingSystem extends IteratingSystem {
+public class FOVUpdatingSystem extends EntitySystem {
 	
 	@SuppressWarnings("unused")
 	private static final Logger LOG = Logger.getLogger(FOVUpdatingSystem.class.getName());
@@ -33,22 +78,36 @@ public class FOVUpdatingSystem extends IteratingSystem {
 	private static final ComponentMapper<CanSee> CAN_SEE = ComponentMapper.getFor(CanSee.class);
 	private static final ComponentMapper<HasLocation> HAS_LOCATION = ComponentMapper.getFor(HasLocation.class);
 	
-	private double[][] scratch_lightLevels;
+	private static final Family FAMILY = Family.all(CanSee.class, HasLocation.class).get();
+	
+	private static final int MAX_CHANGED_REGIONS = 16;
+	
+	private ImmutableArray<Entity> entities = null;
+	
+	private final ParallelRunner runner = new ParallelRunner();
+	private final FOVCache cache = new FOVCache(Context.get().config().rules().entities().getFovCacheSize());
+	
+	private Scratch[] scratch = new Scratch[0];
+	
+	private final java.util.Map<Viewpoint, Viewpoint> viewpoints = new LinkedHashMap<>();
+	private int lastSavedComputations = 0;
+	private long totalSavedComputations = 0;
+	
+	private final List<MapRegionChangedEvent> changes = new ArrayList<>();
+	private boolean allStale = true;
+	
+	private final AtomicInteger computations = new AtomicInteger();
+	private int lastRecomputedViewers = 0;
+	private MetricsListener metricsListener = null;
 	
 	public FOVUpdatingSystem() {
 		
-		super(Family.all(CanSee.class, HasLocation.class).get());
-		
-		if (Context.get().globalMap() != null) {
-			final GlobalMap m = Context.get().globalMap();
-			scratch_lightLevels = new double[m.getWidth()][m.getHeight()];
-		}
 	}
 	
 	@Override
 	public void addedToEngine(Engine engine) {
 		
-		super.addedToEngine(engine);
+		entities = engine.getEntitiesFor(FAMILY);
 		
 		Context.get().eventBus().register(this);
 	}
@@ -56,7 +115,7 @@ public class FOVUpdatingSystem extends IteratingSystem {
 	@Override
 	public void removedFromEngine(Engine engine) {
 		
-		super.removedFromEngine(engine);
+		entities = null;
 		
 		Context.get().eventBus().unregister(this);
 	}
@@ -64,28 +123,362 @@ public class FOVUpdatingSystem extends IteratingSystem {
 	@Subscribe
 	public void receiveNewMapEvent(CurrentMapChangedEvent event) {
 		
-		if (Context.get().globalMap() != null) {
-			final GlobalMap m = Context.get().globalMap();
-			scratch_lightLevels = new double[m.getWidth()][m.getHeight()];
+		cache.clear();
+		
+		synchronized (changes) {
+			changes.clear();
+			allStale = true;
 		}
 	}
 	
+	@Subscribe
+	public void receiveMapRegionChangedEvent(MapRegionChangedEvent event) {
+		
+		synchronized (changes) {
+			changes.add(event);
+		}
+	}
+	
+	/**
+	 * Register a {@link MetricsListener} to be notified at the end of every
+	 * update.
+	 * 
+	 * @param metricsListener
+	 *            {@code null} to remove the current listener
+	 */
+	public void setMetricsListener(MetricsListener metricsListener) {
+		
+		this.metricsListener = metricsListener;
+	}
+	
+	/**
+	 * @return the number of viewers whose FOV was stale, and so re-computed,
+	 *         during the last update
+	 */
+	public int getLastRecomputedViewers() {
+		
+		return lastRecomputedViewers;
+	}
+	
+	/**
+	 * @return this system's {@link FOVCache}, whose hit- and miss-counts may be
+	 *         of interest
+	 */
+	public FOVCache getCache() {
+		
+		return cache;
+	}
+	
+	/**
+	 * @return the number of FOV computations avoided during the last update, by
+	 *         sharing one computation among viewers with the same viewpoint
+	 */
+	public int getLastSavedComputations() {
+		
+		return lastSavedComputations;
+	}
+	
+	/**
+	 * @return the number of FOV computations avoided since this system was
+	 *         created, by sharing one computation among viewers with the same
+	 *         viewpoint
+	 */
+	public long getTotalSavedComputations() {
+		
+		return totalSavedComputations;
+	}
+	
 	@Override
-	protected void processEntity(Entity entity, float deltaTime) {
+	public void update(float deltaTime) {
 		
-		if (!CAN_SEE.has(entity) || !HAS_LOCATION.has(entity))
+		final GlobalMap map = Context.get().globalMap();
+		if (map == null || entities == null)
 			return;
 		
-		final CanSee fov = CAN_SEE.get(entity);
-		final HasLocation location = HAS_LOCATION.get(entity);
+		final List<MapRegionChangedEvent> changes = drainChanges(map);
+		final boolean allStale;
+		synchronized (this.changes) {
+			allStale = this.allStale;
+			this.allStale = false;
+		}
 		
-		final GlobalMap map = Context.get().globalMap();
-		if (map == null)
+		//
+		// The scratch-buffers are only ever touched from the engine's thread, so
+		// they're discarded here (rather than when the new map is announced).
+		//
+		if (allStale)
+			scratch = new Scratch[0];
+		
+		int viewers = 0, staleViewers = 0;
+		viewpoints.clear();
+		for (int i = 0; i < entities.size(); i++) {
+			final Entity entity = entities.get(i);
+			if (!CAN_SEE.has(entity) || !HAS_LOCATION.has(entity))
+				continue;
+			
+			final CanSee fov = CAN_SEE.get(entity);
+			final HasLocation location = HAS_LOCATION.get(entity);
+			final int x = location.getX(), y = location.getY(), distance = fov.getDistance();
+			
+			viewers++;
+			if (!allStale && fov.isFOVFrom(x, y, distance) && !isChangedWithin(changes, map, x, y, distance))
+				continue;
+			
+			viewpoints.computeIfAbsent(new Viewpoint(x, y, distance), v -> v).viewers.add(fov);
+			staleViewers++;
+		}
+		
+		lastRecomputedViewers = staleViewers;
+		lastSavedComputations = staleViewers - viewpoints.size();
+		totalSavedComputations += lastSavedComputations;
+		
+		final List<Viewpoint> toCompute = new ArrayList<>(viewpoints.values());
+		viewpoints.clear();
+		
+		computations.set(0);
+		computeAll(toCompute, map);
+		
+		final MetricsListener metricsListener = this.metricsListener;
+		if (metricsListener != null)
+			metricsListener.fovUpdated(viewers, staleViewers, computations.get());
+	}
+	
+	private void computeAll(List<Viewpoint> toCompute, GlobalMap map) {
+		
+		if (toCompute.isEmpty())
 			return;
 		
-		FOV.reuseFOV(map.getVisibilityResistance(), scratch_lightLevels, location.getX(), location.getY(),
-				fov.getDistance(), Radius.CIRCLE);
+		final long revision = map.getRevision();
+		
+		final int shards = Math.min(getThreadCount(), toCompute.size());
+		if (shards <= 1) {
+			final Scratch scratch = getScratch(0);
+			for (int i = 0; i < toCompute.size(); i++)
+				updateFOV(toCompute.get(i), map, revision, scratch);
+			return;
+		}
 		
-		fov.setLightLevels(scratch_lightLevels);
+		for (int s = 0; s < shards; s++) {
+			final Scratch scratch = getScratch(s);
+			final int from = toCompute.size() * s / shards, to = toCompute.size() * (s + 1) / shards;
+			
+			runner.add(() -> {
+				for (int i = from; i < to; i++)
+					updateFOV(toCompute.get(i), map, revision, scratch);
+			});
+		}
+		
+		runner.awaitAll();
+	}
+	
+	/**
+	 * Take all {@link MapRegionChangedEvent}s received since the last update which
+	 * concern the given map. If there are many, they are merged into a single
+	 * bounding region, so that checking viewers against them stays cheap.
+	 * 
+	 * @param map
+	 * @return
+	 */
+	private List<MapRegionChangedEvent> drainChanges(GlobalMap map) {
+		
+		final List<MapRegionChangedEvent> drained = new ArrayList<>();
+		synchronized (changes) {
+			for (MapRegionChangedEvent change : changes)
+				if (change.getMap() == map)
+					drained.add(change);
+			changes.clear();
+		}
+		
+		if (drained.size() <= MAX_CHANGED_REGIONS)
+			return drained;
+		
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		long revision = 0;
+		for (MapRegionChangedEvent change : drained) {
+			minX = Math.min(minX, change.getMinX());
+			minY = Math.min(minY, change.getMinY());
+			maxX = Math.max(maxX, change.getMaxX());
+			maxY = Math.max(maxY, change.getMaxY());
+			revision = Math.max(revision, change.getRevision());
+		}
+		
+		drained.clear();
+		drained.add(new MapRegionChangedEvent(map, minX, minY, maxX, maxY, revision));
+		return drained;
+	}
+	
+	/**
+	 * @param changes
+	 * @param map
+	 * @param x
+	 * @param y
+	 * @param distance
+	 * @return {@code true} if any of the given changes lies within the window
+	 *         over which an FOV from the given viewpoint would be computed
+	 */
+	private static boolean isChangedWithin(List<MapRegionChangedEvent> changes, GlobalMap map, int x, int y,
+			int distance) {
+		
+		final int radius = Math.max(0, distance);
+		for (int i = 0; i < changes.size(); i++) {
+			final MapRegionChangedEvent change = changes.get(i);
+			if (change.getMaxX() >= x - radius && change.getMinX() <= x + radius && change.getMaxY() >= y - radius
+					&& change.getMinY() <= y + radius)
+				return true;
+		}
+		return false;
+	}
+	
+	private void updateFOV(Viewpoint viewpoint, GlobalMap map, long revision, Scratch scratch) {
+		
+		final int x = viewpoint.x, y = viewpoint.y, distance = viewpoint.distance;
+		
+		FOVResult result = cache.get(map, revision, x, y, distance, Radius.CIRCLE);
+		if (result == null) {
+			scratch.compute(map, x, y, distance);
+			result = FOVResult.of(scratch.lightLevels, scratch.originX, scratch.originY);
+			cache.put(map, scratch.revision, x, y, distance, Radius.CIRCLE, result);
+			computations.incrementAndGet();
+		}
+		
+		for (int i = 0; i < viewpoint.viewers.size(); i++)
+			viewpoint.viewers.get(i).setFOV(result, x, y, distance);
+	}
+	
+	private int getThreadCount() {
+		
+		final int threads = Context.get().config().rules().entities().getFovThreads();
+		return (threads > 0) ? threads : Context.get().scheduler().getThreadCount(Lane.PARALLEL);
+	}
+	
+	/**
+	 * Get the given shard's scratch-buffers, allocating them if necessary. Must only
+	 * be called from the engine's own thread.
+	 * 
+	 * @param shard
+	 * @return
+	 */
+	private Scratch getScratch(int shard) {
+		
+		if (shard >= scratch.length)
+			scratch = Arrays.copyOf(scratch, shard + 1);
+		
+		if (scratch[shard] == null)
+			scratch[shard] = new Scratch();
+		
+		return scratch[shard];
+	}
+	
+	/**
+	 * Receives per-update metrics from an {@link FOVUpdatingSystem}.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	@FunctionalInterface
+	public interface MetricsListener {
+		
+		/**
+		 * Called at the end of every update.
+		 * 
+		 * @param viewers
+		 *            the number of viewers considered
+		 * @param recomputedViewers
+		 *            the number of viewers whose FOV was stale, and so updated
+		 * @param computations
+		 *            the number of FOVs actually computed (i.e., not shared among
+		 *            viewers or found in the {@link FOVCache})
+		 */
+		public void fovUpdated(int viewers, int recomputedViewers, int computations);
+	}
+	
+	/**
+	 * A location and sight-distance from which one or more viewers are looking.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	private static class Viewpoint {
+		
+		private final int x, y, distance;
+		private final List<CanSee> viewers = new ArrayList<>(1);
+		
+		public Viewpoint(int x, int y, int distance) {
+			
+			this.x = x;
+			this.y = y;
+			this.distance = distance;
+		}
+		
+		@Override
+		public int hashCode() {
+			
+			int result = x;
+			result = 31 * result + y;
+			result = 31 * result + distance;
+			return result;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Viewpoint))
+				return false;
+			
+			final Viewpoint other = (Viewpoint) obj;
+			return x == other.x && y == other.y && distance == other.distance;
+		}
+	}
+	
+	/**
+	 * Buffers for computing a single FOV within a window around its viewer.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	private static class Scratch {
+		
+		private double[][] resistance = new double[0][0], lightLevels = new double[0][0];
+		private int originX, originY;
+		private long revision;
+		
+		/**
+		 * Compute the FOV from the given map-location, leaving its light-levels in
+		 * {@link #lightLevels}, whose {@code [0][0]} corresponds to map-location
+		 * ({@link #originX}, {@link #originY}), and the map-revision they reflect in
+		 * {@link #revision}.
+		 * <p>
+		 * The window is clipped to the map's bounds, so a viewer near (or beyond) an
+		 * edge never computes light over cells that aren't there.
+		 * </p>
+		 * 
+		 * @param map
+		 * @param x
+		 * @param y
+		 * @param distance
+		 */
+		public void compute(GlobalMap map, int x, int y, int distance) {
+			
+			final int radius = Math.max(0, distance);
+			
+			originX = Math.max(0, x - radius);
+			originY = Math.max(0, y - radius);
+			final int width = Math.max(0, Math.min(map.getWidth(), x + radius + 1) - originX);
+			final int height = Math.max(0, Math.min(map.getHeight(), y + radius + 1) - originY);
+			
+			if (resistance.length != width || (width > 0 && resistance[0].length != height)) {
+				resistance = new double[width][height];
+				lightLevels = new double[width][height];
+			}
+			
+			revision = map.copyVisibilityResistance(originX, originY, resistance);
+			
+			if (width == 0 || height == 0)
+				return;
+			
+			FOV.reuseFOV(resistance, lightLevels, x - originX, y - originY, distance, Radius.CIRCLE);
+		}
 	}
 }
@@ -3,23 +3,45 @@
  */
 package org.snowjak.runandgun.systems;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.snowjak.runandgun.components.CanMove;
+import org.snowjak.runandgun.components.HasFlowField;
 import org.snowjak.runandgun.components.HasGlyph;
 import org.snowjak.runandgun.components.HasLocation;
-import org.snowjak.runandgun.components.HasMap;
 import org.snowjak.runandgun.components.HasMovementList;
 import org.snowjak.runandgun.components.IsMoving;
+import org.snowjak.runandgun.components.NeedsMovementList;
 import org.snowjak.runandgun.context.Context;
+import org.snowjak.runandgun.map.GlobalMap;
+import org.snowjak.runandgun.map.KnownMap;
 
 import com.badlogic.ashley.core.ComponentMapper;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.systems.IteratingSystem;
 
+import squidpony.squidmath.Coord;
+
 /**
  * For all entities that {@link HasMovementList have active movement-lists},
  * ensures that the active movement is executed.
  * <p>
+ * Entities which are instead {@link HasFlowField following a flow-field} are
+ * stepped along that flow-field, one cell at a time.
+ * </p>
+ * <p>
+ * Whenever the map -- or the entity's knowledge of it -- changes, the remainder
+ * of each movement-list is checked. If it has become blocked, only the blocked
+ * stretch is re-planned, as a short detour rejoining the original route. Only
+ * if no such detour can be found is a whole new movement-list requested.
+ * Passability is always judged as the {@link PathfindingSystem} judges it
+ * ({@link PathfindingSystem#isPassable(KnownMap, Coord, int, int)}), against
+ * the same {@link PathfindingSystem#getKnownMap(Entity) KnownMap}, so that a
+ * repair never plans across a cell which this system would then refuse.
+ * </p>
+ * <p>
  * If the entity {@link HasGlyph has a glyph} associated with it, this system
  * fires a {@link GlyphMoveStartEvent}.
  * </p>
@@ -32,17 +54,34 @@ public class MovementListExecutingSystem extends IteratingSystem {
 	private static final ComponentMapper<HasMovementList> HAS_MOVEMENT = ComponentMapper.getFor(HasMovementList.class);
 	private static final ComponentMapper<HasLocation> HAS_LOCATION = ComponentMapper.getFor(HasLocation.class);
 	private static final ComponentMapper<CanMove> CAN_MOVE = ComponentMapper.getFor(CanMove.class);
-	private static final ComponentMapper<HasMap> HAS_MAP = ComponentMapper.getFor(HasMap.class);
 	private static final ComponentMapper<HasGlyph> HAS_GLYPH = ComponentMapper.getFor(HasGlyph.class);
+	private static final ComponentMapper<HasFlowField> HAS_FLOW_FIELD = ComponentMapper.getFor(HasFlowField.class);
+	
+	/**
+	 * A detour must rejoin the original route within this many steps of where it
+	 * became blocked.
+	 */
+	private static final int REJOIN_WITHIN = 16;
+	
+	/**
+	 * A detour may be no longer than this.
+	 */
+	private static final int MAX_DETOUR_LENGTH = 64;
 	
 	public MovementListExecutingSystem() {
 		
-		super(Family.all(HasMovementList.class, HasLocation.class, CanMove.class).exclude(IsMoving.class).get());
+		super(Family.all(HasLocation.class, CanMove.class).one(HasMovementList.class, HasFlowField.class)
+				.exclude(IsMoving.class).get());
 	}
 	
 	@Override
 	protected void processEntity(Entity entity, float deltaTime) {
 		
+		if (HAS_FLOW_FIELD.has(entity)) {
+			processFlowField(entity);
+			return;
+		}
+		
 		if (!HAS_MOVEMENT.has(entity))
 			return;
 		final HasMovementList movement = HAS_MOVEMENT.get(entity);
@@ -83,22 +122,160 @@ public class MovementListExecutingSystem extends IteratingSystem {
 		if (Context.get().clock().isPaused() || Context.get().clock().getSpeed() == 0)
 			return;
 		
+		//
+		// Re-check the route, and repair it if necessary. If this returns true, the
+		// next step is passable.
+		if (!checkRoute(entity, movement, location))
+			return;
+		
 		final int destinationX = movement.getCurrent().x, destinationY = movement.getCurrent().y;
-		final int currentX = location.getX(), currentY = location.getY();
 		
+		move(entity, location, canMove, destinationX, destinationY);
+	}
+	
+	/**
+	 * If the map (or the entity's knowledge of it) has changed since the given
+	 * movement-list was last checked, or if its next step has turned out to be
+	 * impassable, check the rest of the movement-list and repair it if necessary.
+	 * 
+	 * @param entity
+	 * @param movement
+	 * @param location
+	 * @return {@code true} if the entity may proceed along its (possibly repaired)
+	 *         movement-list -- i.e., its next step is passable -- or {@code false}
+	 *         if it has been stopped
+	 */
+	private boolean checkRoute(Entity entity, HasMovementList movement, HasLocation location) {
+		
+		final PathfindingSystem pathfinding = getEngine().getSystem(PathfindingSystem.class);
+		if (pathfinding == null)
+			return true;
+		
+		final GlobalMap map = Context.get().globalMap();
+		final KnownMap knownMap = pathfinding.getKnownMap(entity);
+		final long mapRevision = (map == null) ? -1 : map.getRevision();
+		final long knownRevision = (knownMap == null) ? -1 : knownMap.getKnownRevision();
+		
+		final Coord next = movement.getCurrent();
+		if (mapRevision == movement.getMapRevision() && knownRevision == movement.getKnownRevision()
+				&& pathfinding.isPassable(knownMap, movement.getGoal(), next.x, next.y))
+			return true;
+		
+		movement.setRevisions(mapRevision, knownRevision);
+		
+		final List<Coord> route = movement.getRemaining();
+		final Coord goal = (movement.getGoal() != null) ? movement.getGoal() : route.get(route.size() - 1);
+		
+		int blockedAt = -1;
+		for (int i = 0; i < route.size() && blockedAt < 0; i++)
+			if (!pathfinding.isPassable(knownMap, goal, route.get(i).x, route.get(i).y))
+				blockedAt = i;
+			
+		if (blockedAt < 0)
+			return true;
+		
+		int rejoinAt = -1;
+		for (int i = blockedAt + 1; i < route.size() && i <= blockedAt + REJOIN_WITHIN && rejoinAt < 0; i++)
+			if (pathfinding.isPassable(knownMap, goal, route.get(i).x, route.get(i).y))
+				rejoinAt = i;
+			
 		//
-		// If the destination turns out to be a wall, don't move into it.
-		final boolean isNavigable;
-		if (HAS_MAP.has(entity)) {
-			isNavigable = HAS_MAP.get(entity).getMap().getMapAt(destinationX, destinationY) != '#';
-		} else
-			isNavigable = Context.get().globalMap().getBareMap()[destinationX][destinationY] != '#';
-		
-		if (!isNavigable) {
-			movement.advanceList();
+		// If the route is blocked all the way to its end, then its destination
+		// can't be reached. Go as far as we can.
+		//
+		if (rejoinAt < 0 && blockedAt + REJOIN_WITHIN >= route.size() - 1) {
+			movement.setMovement(route.subList(0, blockedAt));
+			if (movement.hasMovement())
+				return true;
+			
+			entity.remove(HasMovementList.class);
+			return false;
+		}
+		
+		if (rejoinAt >= 0) {
+			final Coord from = (blockedAt == 0) ? location.get() : route.get(blockedAt - 1);
+			final Coord to = route.get(rejoinAt);
+			
+			final List<Coord> detour = pathfinding.pathfindLocally(MAX_DETOUR_LENGTH, knownMap, from, to);
+			if (!detour.isEmpty() && detour.get(detour.size() - 1).equals(to)) {
+				final List<Coord> repaired = new ArrayList<>(route.subList(0, blockedAt));
+				repaired.addAll(detour);
+				repaired.addAll(route.subList(rejoinAt + 1, route.size()));
+				movement.setMovement(repaired);
+				return true;
+			}
+		}
+		
+		//
+		// No detour is possible. Ask for a whole new route.
+		//
+		entity.remove(HasMovementList.class);
+		
+		final NeedsMovementList needsMovement = getEngine().createComponent(NeedsMovementList.class);
+		needsMovement.setMapPoint(goal);
+		entity.add(needsMovement);
+		return false;
+	}
+	
+	private void processFlowField(Entity entity) {
+		
+		final HasFlowField flowField = HAS_FLOW_FIELD.get(entity);
+		
+		if (!HAS_LOCATION.has(entity))
+			return;
+		final HasLocation location = HAS_LOCATION.get(entity);
+		
+		//
+		// If the flow-field leads no further -- because we've arrived, or because
+		// we're stranded -- then remove the HasFlowField.
+		final Coord next = (flowField.getField() == null) ? null : flowField.getField().next(location.get());
+		if (next == null) {
+			entity.remove(HasFlowField.class);
+			return;
+		}
+		
+		if (!CAN_MOVE.has(entity))
+			return;
+		final CanMove canMove = CAN_MOVE.get(entity);
+		
+		if (Context.get().clock().isPaused() || Context.get().clock().getSpeed() == 0)
+			return;
+		
+		//
+		// If the flow-field leads into a wall, it's out of date. Stop following it.
+		if (!isNavigable(entity, flowField.getGoal(), next.x, next.y)) {
+			entity.remove(HasFlowField.class);
 			return;
 		}
 		
+		move(entity, location, canMove, next.x, next.y);
+	}
+	
+	/**
+	 * Judge whether the given entity may step into the given cell, by the same
+	 * measure as its routes are planned against. Only if there is no
+	 * {@link PathfindingSystem} is the {@link GlobalMap} consulted directly.
+	 * 
+	 * @param entity
+	 * @param goal
+	 *            the goal the entity is headed for, or {@code null}
+	 * @param destinationX
+	 * @param destinationY
+	 * @return
+	 */
+	private boolean isNavigable(Entity entity, Coord goal, int destinationX, int destinationY) {
+		
+		final PathfindingSystem pathfinding = getEngine().getSystem(PathfindingSystem.class);
+		if (pathfinding == null)
+			return Context.get().globalMap().getBareMapAt(destinationX, destinationY) != GlobalMap.FILL;
+		
+		return pathfinding.isPassable(pathfinding.getKnownMap(entity), goal, destinationX, destinationY);
+	}
+	
+	private void move(Entity entity, HasLocation location, CanMove canMove, int destinationX, int destinationY) {
+		
+		final int currentX = location.getX(), currentY = location.getY();
+		
 		//
 		// How fast can we cover the distance involved, given our speed and the
 		// terrain-resistance?
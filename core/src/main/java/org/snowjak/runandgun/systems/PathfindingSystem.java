@@ -3,17 +3,38 @@
  */
 package org.snowjak.runandgun.systems;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.snowjak.runandgun.components.HasFlowField;
 import org.snowjak.runandgun.components.HasLocation;
 import org.snowjak.runandgun.components.HasMap;
 import org.snowjak.runandgun.components.HasMovementList;
+import org.snowjak.runandgun.components.IsPathfinding;
 import org.snowjak.runandgun.components.NeedsMovementList;
+import org.snowjak.runandgun.concurrent.TaskScheduler.Lane;
+import org.snowjak.runandgun.config.RulesConfiguration.EntitySystemRulesConfiguration;
 import org.snowjak.runandgun.context.Context;
 import org.snowjak.runandgun.events.CurrentMapChangedEvent;
+import org.snowjak.runandgun.events.MapRegionChangedEvent;
 import org.snowjak.runandgun.map.GlobalMap;
+import org.snowjak.runandgun.map.KnownMap;
+import org.snowjak.runandgun.pathfinding.AStarPathfinder;
+import org.snowjak.runandgun.pathfinding.BlockedCells;
+import org.snowjak.runandgun.pathfinding.BlockedCellsCache;
+import org.snowjak.runandgun.pathfinding.DijkstraPool;
+import org.snowjak.runandgun.pathfinding.GoalMap;
+import org.snowjak.runandgun.pathfinding.GoalMapCache;
+import org.snowjak.runandgun.pathfinding.HierarchicalPathfinder;
+import org.snowjak.runandgun.pathfinding.Pathfinder;
+import org.snowjak.runandgun.pathfinding.PathfinderType;
 import org.snowjak.runandgun.team.Team;
 
 import com.badlogic.ashley.core.ComponentMapper;
@@ -21,6 +42,9 @@ import com.badlogic.ashley.core.Engine;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.systems.IntervalIteratingSystem;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import squidpony.squidai.DijkstraMap;
 import squidpony.squidgrid.Measurement;
@@ -30,30 +54,98 @@ import squidpony.squidmath.Coord;
  * For all entities that {@link NeedsMovementList require a movement-list},
  * performs pathfinding to populate the requested {@link HasMovementList
  * movement-list}. Also removes {@link NeedsMovementList} from the entity;
+ * <p>
+ * Searches run in the background, on the {@link Lane#BACKGROUND background
+ * lane} of the {@link Context#scheduler() shared TaskScheduler}. While a search
+ * is underway, its entity is marked as {@link IsPathfinding}; once it
+ * completes, its result is applied (as a {@link HasMovementList}) on this
+ * system's next interval. No more than
+ * {@link EntitySystemRulesConfiguration#getPathfindingRequestsPerInterval() a
+ * configured number} of searches are begun per interval, so that bursts of
+ * commands are spread across several intervals. Likewise, once
+ * {@link EntitySystemRulesConfiguration#getPathfindingMillisPerInterval() a
+ * configured time} has been spent in an interval, no more searches are begun or
+ * applied until the next.
+ * </p>
+ * <p>
+ * When {@link EntitySystemRulesConfiguration#getFlowFieldThreshold() enough}
+ * entities are headed for the same goal, they are not given individual
+ * movement-lists. Instead, a single {@link GoalMap} is scanned toward that goal,
+ * and each entity is given that GoalMap as a {@link HasFlowField flow-field} to
+ * follow.
+ * </p>
+ * <p>
+ * Each scan toward a goal is kept as a {@link GoalMap} in a
+ * {@link GoalMapCache}, so that every entity headed for the same goal (with the
+ * same knowledge of the map) walks the same GoalMap from its own starting-point
+ * rather than scanning anew.
+ * </p>
+ * <p>
+ * Searches are run on {@link DijkstraMap}s borrowed from a
+ * {@link DijkstraPool}, so searches from different threads (e.g., the engine
+ * and the UI's path-preview) do not block one another.
+ * </p>
+ * <p>
+ * Searches toward distant goals are first attempted with a
+ * {@link HierarchicalPathfinder}. That path is used if it crosses only cells
+ * known to the searching entity; otherwise, the search falls back to a full
+ * {@link GoalMap} scan.
+ * </p>
+ * <p>
+ * A DijkstraMap (and every GoalMap scanned on one) takes several arrays the
+ * size of the whole map. On maps larger than {@link #MAX_SCAN_SIZE} on a side,
+ * therefore, no DijkstraMap is ever used: every search is made with the
+ * configured point-to-point {@link Pathfinder} (or else A*), and flow-fields
+ * are not built.
+ * </p>
  * 
  * @author snowjak88
  *
  */
 public class PathfindingSystem extends IntervalIteratingSystem {
 	
-	@SuppressWarnings("unused")
 	private static final Logger LOG = Logger.getLogger(PathfindingSystem.class.getName());
 	
 	private static final ComponentMapper<HasMap> HAS_MAP = ComponentMapper.getFor(HasMap.class);
 	private static final ComponentMapper<NeedsMovementList> NEEDS_MOVEMENT = ComponentMapper
 			.getFor(NeedsMovementList.class);
 	private static final ComponentMapper<HasLocation> HAS_LOCATION = ComponentMapper.getFor(HasLocation.class);
+	private static final ComponentMapper<IsPathfinding> IS_PATHFINDING = ComponentMapper.getFor(IsPathfinding.class);
 	
-	private DijkstraMap dijkstra;
+	/**
+	 * The largest map (on either side) on which {@link DijkstraMap} scans are
+	 * made.
+	 */
+	public static final int MAX_SCAN_SIZE = 256;
+	
+	private final DijkstraPool dijkstras = new DijkstraPool(Measurement.EUCLIDEAN);
+	
+	private final GoalMapCache goalMaps = new GoalMapCache(
+			Context.get().config().rules().entities().getPathfindingCacheSize());
+	
+	private final BlockedCellsCache blockedCells = new BlockedCellsCache();
+	
+	private final Pathfinder pathfinder = Context.get().config().rules().entities().getPathfinder().create();
+	private final Pathfinder localPathfinder = new AStarPathfinder();
+	
+	private GlobalMap terrainMap = null;
+	private long terrainRevision = -1;
+	private BlockedCells terrain = null;
+	
+	private volatile HierarchicalPathfinder hierarchy = null;
+	
+	private int requestsThisInterval = 0;
+	private boolean intervalTimed = false;
+	private long intervalDeadline = 0;
+	
+	private final java.util.Map<Coord, Integer> goalCounts = new HashMap<>();
+	private final java.util.Map<FlowFieldKey, ListenableFuture<GoalMap>> flowFields = new HashMap<>();
 	
 	public PathfindingSystem() {
 		
 		super(Family.all(HasLocation.class, NeedsMovementList.class).get(),
 				Context.get().config().rules().entities().getPathfindingInterval());
 		
-		dijkstra = new DijkstraMap();
-		dijkstra.measurement = Measurement.EUCLIDEAN;
-		
 		setProcessing(false);
 		
 		if (Context.get().globalMap() != null)
@@ -76,19 +168,84 @@ public class PathfindingSystem extends IntervalIteratingSystem {
 		Context.get().eventBus().unregister(this);
 	}
 	
+	@Subscribe
 	public void receiveMapChangeEvent(CurrentMapChangedEvent event) {
 		
 		setMap(Context.get().globalMap());
 	}
 	
+	@Subscribe
+	public void receiveMapRegionChangedEvent(MapRegionChangedEvent event) {
+		
+		final HierarchicalPathfinder hierarchy = this.hierarchy;
+		if (hierarchy != null)
+			hierarchy.markChanged(event);
+	}
+	
 	public void setMap(GlobalMap map) {
 		
-		if (map != null)
-			dijkstra.initialize(map.getBareMap());
+		dijkstras.setMap(map);
+		goalMaps.clear();
+		blockedCells.clear();
+		
+		final int clusterSize = Context.get().config().rules().entities().getPathfindingClusterSize();
+		hierarchy = (map == null || clusterSize <= 0) ? null : new HierarchicalPathfinder(map, clusterSize);
 		
 		setProcessing((map != null));
 	}
 	
+	/**
+	 * @return this system's {@link GoalMapCache}, whose hit-rate may be of interest
+	 */
+	public GoalMapCache getGoalMaps() {
+		
+		return goalMaps;
+	}
+	
+	/**
+	 * @return this system's point-to-point {@link Pathfinder}, or {@code null} if
+	 *         {@link PathfinderType#DIJKSTRA DijkstraMap scans} are used instead
+	 */
+	public Pathfinder getPathfinder() {
+		
+		return pathfinder;
+	}
+	
+	/**
+	 * @return this system's {@link BlockedCellsCache}, whose hit-rate may be of
+	 *         interest
+	 */
+	public BlockedCellsCache getBlockedCells() {
+		
+		return blockedCells;
+	}
+	
+	@Override
+	protected void updateInterval() {
+		
+		requestsThisInterval = 0;
+		
+		final float millis = Context.get().config().rules().entities().getPathfindingMillisPerInterval();
+		intervalTimed = (millis > 0);
+		intervalDeadline = System.nanoTime() + (long) (millis * 1000000d);
+		
+		//
+		// Count up how many entities are headed for each goal, so we can tell when
+		// a flow-field is called for.
+		//
+		goalCounts.clear();
+		final ImmutableArray<Entity> entities = getEntities();
+		for (int i = 0; i < entities.size(); i++) {
+			final Entity entity = entities.get(i);
+			if (NEEDS_MOVEMENT.has(entity))
+				goalCounts.merge(NEEDS_MOVEMENT.get(entity).getMapPoint(), 1, Integer::sum);
+		}
+		
+		flowFields.values().removeIf(f -> f.isDone());
+		
+		super.updateInterval();
+	}
+	
 	@Override
 	protected void processEntity(Entity entity) {
 		
@@ -103,24 +260,161 @@ public class PathfindingSystem extends IntervalIteratingSystem {
 		final Coord startGoal = location.get();
 		final Coord endGoal = needsMovement.getMapPoint();
 		
-		final Team team = getEngine().getSystem(TeamManager.class).getTeam(entity);
+		//
+		// Once this interval's time is spent, leave every remaining entity for a
+		// later interval.
+		//
+		if (intervalTimed && System.nanoTime() - intervalDeadline >= 0)
+			return;
+		
+		if (IS_PATHFINDING.has(entity)) {
+			final IsPathfinding pathfinding = IS_PATHFINDING.get(entity);
+			
+			if (endGoal.equals(pathfinding.getMapPoint())) {
+				if (pathfinding.getFlowField() != null) {
+					if (pathfinding.getFlowField().isDone())
+						applyFlowField(entity, endGoal, pathfinding.getFlowField());
+					return;
+				}
+				
+				final Future<List<Coord>> path = pathfinding.getPath();
+				if (path != null && !path.isDone())
+					return;
+				
+				applyPath(entity, endGoal, pathfinding);
+				return;
+			}
+			
+			//
+			// This entity has been given a new destination since its search began.
+			//
+			entity.remove(IsPathfinding.class);
+		}
+		
+		final KnownMap knownMap = getKnownMap(entity);
+		
+		final int flowFieldThreshold = Context.get().config().rules().entities().getFlowFieldThreshold();
+		if (flowFieldThreshold > 0 && canScan(dijkstras.getMap())
+				&& goalCounts.getOrDefault(endGoal, 0) >= flowFieldThreshold) {
+			
+			//
+			// Every entity sharing this goal (and this knowledge of the map) shares
+			// the same flow-field search.
+			//
+			final FlowFieldKey key = new FlowFieldKey(knownMap, endGoal);
+			ListenableFuture<GoalMap> flowField = flowFields.get(key);
+			if (flowField == null) {
+				if (requestsThisInterval >= Context.get().config().rules().entities()
+						.getPathfindingRequestsPerInterval())
+					return;
+				requestsThisInterval++;
+				
+				flowField = Context.get().executor(Lane.BACKGROUND).submit(() -> getGoalMap(knownMap, endGoal));
+				flowFields.put(key, flowField);
+			}
+			
+			final IsPathfinding pathfinding = getEngine().createComponent(IsPathfinding.class);
+			pathfinding.setMapPoint(endGoal);
+			pathfinding.setFlowField(flowField);
+			entity.add(pathfinding);
+			return;
+		}
+		
+		if (requestsThisInterval >= Context.get().config().rules().entities().getPathfindingRequestsPerInterval())
+			return;
+		requestsThisInterval++;
+		
+		final GlobalMap map = dijkstras.getMap();
 		
-		final Collection<Coord> impassable;
+		final IsPathfinding pathfinding = getEngine().createComponent(IsPathfinding.class);
+		pathfinding.setMapPoint(endGoal);
+		pathfinding.setRevisions((map == null) ? -1 : map.getRevision(),
+				(knownMap == null) ? -1 : knownMap.getKnownRevision());
+		pathfinding.setPath(Context.get().executor(Lane.BACKGROUND)
+				.submit(() -> pathfind(128, knownMap, startGoal, endGoal)));
+		entity.add(pathfinding);
+	}
+	
+	/**
+	 * @param entity
+	 * @return the {@link KnownMap} which governs where the given entity may
+	 *         pathfind -- its {@link Team}'s, or else its own -- or {@code null}
+	 *         if it has none
+	 */
+	public KnownMap getKnownMap(Entity entity) {
+		
+		final Team team = getEngine().getSystem(TeamManager.class).getTeam(entity);
 		if (team != null)
-			impassable = team.getMap().getKnownRegion().not();
-		else if (HAS_MAP.has(entity))
-			impassable = HAS_MAP.get(entity).getMap().getKnownRegion().not();
-		else
-			impassable = null;
+			return team.getMap();
+		if (HAS_MAP.has(entity))
+			return HAS_MAP.get(entity).getMap();
+		return null;
+	}
+	
+	/**
+	 * Apply a completed search to its entity.
+	 * 
+	 * @param entity
+	 * @param goal
+	 * @param pathfinding
+	 */
+	private void applyPath(Entity entity, Coord goal, IsPathfinding pathfinding) {
 		
-		final List<Coord> movement = pathfind(128, 0, impassable, null, startGoal, endGoal);
-		final HasMovementList hasMovement = getEngine().createComponent(HasMovementList.class);
-		hasMovement.addMovement(movement);
+		final Future<List<Coord>> path = pathfinding.getPath();
+		final long mapRevision = pathfinding.getMapRevision(), knownRevision = pathfinding.getKnownRevision();
 		
+		entity.remove(IsPathfinding.class);
 		entity.remove(NeedsMovementList.class);
+		entity.remove(HasFlowField.class);
+		
+		final List<Coord> movement;
+		try {
+			movement = (path == null) ? null : path.get();
+		} catch (InterruptedException | ExecutionException | CancellationException e) {
+			LOG.log(Level.WARNING, "Could not find path -- abandoning movement.", e);
+			return;
+		}
+		
+		final HasMovementList hasMovement = getEngine().createComponent(HasMovementList.class);
+		if (movement != null)
+			hasMovement.addMovement(movement);
+		hasMovement.setGoal(goal);
+		hasMovement.setRevisions(mapRevision, knownRevision);
+		
 		entity.add(hasMovement);
 	}
 	
+	/**
+	 * Apply a completed flow-field search to its entity.
+	 * 
+	 * @param entity
+	 * @param goal
+	 * @param flowField
+	 */
+	private void applyFlowField(Entity entity, Coord goal, Future<GoalMap> flowField) {
+		
+		entity.remove(IsPathfinding.class);
+		entity.remove(NeedsMovementList.class);
+		entity.remove(HasMovementList.class);
+		
+		final GoalMap field;
+		try {
+			field = flowField.get();
+		} catch (InterruptedException | ExecutionException | CancellationException e) {
+			LOG.log(Level.WARNING, "Could not build flow-field -- abandoning movement.", e);
+			return;
+		}
+		
+		if (field == null)
+			return;
+		
+		final HasFlowField hasFlowField = getEngine().createComponent(HasFlowField.class);
+		hasFlowField.setField(field);
+		hasFlowField.setGoal(goal);
+		
+		entity.add(hasFlowField);
+	}
+	
 	/**
 	 * Search for a path -- given as sequence of {@link Coord locations} --
 	 * beginning at {@code start} and proceeding in order to get as close as
@@ -149,8 +443,342 @@ public class PathfindingSystem extends IntervalIteratingSystem {
 	public List<Coord> pathfind(int maxPathLength, int scanLimit, Collection<Coord> impassable,
 			Collection<Coord> passable, Coord start, Coord... targets) {
 		
+		final GlobalMap map = dijkstras.getMap();
+		if (map != null && !canScan(map))
+			return pathfindPointToPoint(map, maxPathLength, impassable, start, targets);
+		
+		final List<Coord> path = dijkstras
+				.apply(d -> d.findPath(maxPathLength, scanLimit, impassable, passable, start, targets));
+		return (path == null) ? new ArrayList<>() : path;
+	}
+	
+	/**
+	 * Search for a path -- given as sequence of {@link Coord locations} --
+	 * beginning at {@code start} and proceeding to get as close as possible to
+	 * {@code goal}, treating every cell unknown to the given {@link KnownMap} as
+	 * impassable.
+	 * <p>
+	 * The scan toward {@code goal} is {@link GoalMapCache cached}, and re-used by
+	 * any later search toward the same goal until either the map or
+	 * {@code knownMap}'s {@link KnownMap#getKnownRevision() known cells} change.
+	 * Likewise, {@code knownMap}'s unknown cells are gathered into a
+	 * {@link BlockedCells mask} only once per change to its known cells.
+	 * </p>
+	 * <p>
+	 * If {@code goal} lies farther away than a single {@link HierarchicalPathfinder
+	 * cluster}, the hierarchical pathfinder is consulted first.
+	 * </p>
+	 * <p>
+	 * If a point-to-point {@link Pathfinder} is
+	 * {@link EntitySystemRulesConfiguration#getPathfinder() configured}, it is used
+	 * in place of the GoalMap scan -- as is A*, if the map is too large to
+	 * {@link #MAX_SCAN_SIZE scan}.
+	 * </p>
+	 * 
+	 * @param maxPathLength
+	 * @param knownMap
+	 *            {@code null} to treat every cell as potentially passable
+	 * @param start
+	 * @param goal
+	 * @return
+	 */
+	public List<Coord> pathfind(int maxPathLength, KnownMap knownMap, Coord start, Coord goal) {
+		
+		final GlobalMap map = dijkstras.getMap();
+		if (map == null)
+			return new ArrayList<>();
+		
+		final BlockedCells blocked = (knownMap == null) ? null : blockedCells.get(knownMap);
+		
+		final List<Coord> hierarchicalPath = pathfindHierarchically(maxPathLength, blocked, start, goal);
+		if (hierarchicalPath != null)
+			return hierarchicalPath;
+		
+		if (pathfinder != null || !canScan(map))
+			return getPointToPointPathfinder().findPath(getImpassable(map, blocked, goal), start, goal,
+					maxPathLength);
+		
+		final GoalMap goalMap = getGoalMap(knownMap, goal);
+		if (goalMap == null)
+			return new ArrayList<>();
+		
+		return goalMap.walk(start, maxPathLength);
+	}
+	
+	/**
+	 * Get the {@link GoalMap} -- the complete scan toward {@code goal} -- treating
+	 * every cell unknown to the given {@link KnownMap} as impassable. The GoalMap
+	 * is taken from the {@link GoalMapCache cache} if possible, and scanned (and
+	 * cached) otherwise.
+	 * 
+	 * @param knownMap
+	 *            {@code null} to treat every cell as potentially passable
+	 * @param goal
+	 * @return the GoalMap, or {@code null} if there is no current map (or if it
+	 *         is too large to {@link #MAX_SCAN_SIZE scan})
+	 */
+	public GoalMap getGoalMap(KnownMap knownMap, Coord goal) {
+		
+		final GlobalMap map = dijkstras.getMap();
+		if (!canScan(map))
+			return null;
+		
+		final long mapRevision = map.getRevision();
+		final long knownRevision = (knownMap == null) ? -1 : knownMap.getKnownRevision();
+		
+		GoalMap goalMap = goalMaps.get(map, mapRevision, knownRevision, goal);
+		if (goalMap != null)
+			return goalMap;
+		
+		final BlockedCells blocked = (knownMap == null) ? null : blockedCells.get(knownMap);
+		
+		goalMap = dijkstras.apply(d -> {
+			if (blocked != null) {
+				blocked.applyTo(d);
+				d.resetCell(goal.x, goal.y);
+			}
+			d.setGoal(goal);
+			d.scan(null);
+			return new GoalMap(d);
+		});
+		if (goalMap == null)
+			return null;
+		
+		goalMaps.put(map, mapRevision, knownRevision, goal, goalMap);
+		return goalMap;
+	}
+	
+	/**
+	 * Search for a short path -- e.g., a detour around some newly-discovered
+	 * obstacle -- from {@code start} to {@code goal}, treating every cell unknown
+	 * to the given {@link KnownMap} as impassable.
+	 * <p>
+	 * Unlike {@link #pathfind(int, KnownMap, Coord, Coord)}, this always performs
+	 * a point-to-point search (with the configured {@link Pathfinder}, or else
+	 * A*), and never scans or caches a {@link GoalMap}. It is therefore suited to
+	 * nearby, one-off goals.
+	 * </p>
+	 * 
+	 * @param maxPathLength
+	 * @param knownMap
+	 *            {@code null} to treat every cell as potentially passable
+	 * @param start
+	 * @param goal
+	 * @return the path (not including {@code start}), or an empty list if
+	 *         {@code goal} cannot be reached
+	 */
+	public List<Coord> pathfindLocally(int maxPathLength, KnownMap knownMap, Coord start, Coord goal) {
+		
+		final GlobalMap map = dijkstras.getMap();
+		if (map == null)
+			return new ArrayList<>();
+		
+		final BlockedCells blocked = (knownMap == null) ? null : blockedCells.get(knownMap);
+		
+		return getPointToPointPathfinder().findPath(getImpassable(map, blocked, goal), start, goal, maxPathLength);
+	}
+	
+	/**
+	 * Search for a path from {@code start} through each of {@code targets} in
+	 * turn, as {@link #pathfind(int, int, Collection, Collection, Coord...)} does
+	 * on maps too large to {@link #MAX_SCAN_SIZE scan}.
+	 * 
+	 * @param map
+	 * @param maxPathLength
+	 * @param impassable
+	 *            cells which the path may not cross, or {@code null}
+	 * @param start
+	 * @param targets
+	 * @return the path, ending at the last target reached
+	 */
+	private List<Coord> pathfindPointToPoint(GlobalMap map, int maxPathLength, Collection<Coord> impassable,
+			Coord start, Coord... targets) {
+		
+		BlockedCells blocked = getTerrain(map);
+		if (impassable != null && !impassable.isEmpty()) {
+			blocked = new BlockedCells(blocked);
+			for (Coord c : impassable)
+				blocked.set(c.x, c.y, true);
+		}
+		
+		final List<Coord> path = new ArrayList<>();
+		Coord from = start;
+		for (Coord target : targets) {
+			if (path.size() >= maxPathLength)
+				break;
+			
+			final List<Coord> leg = getPointToPointPathfinder().findPath(blocked, from, target,
+					maxPathLength - path.size());
+			if (leg.isEmpty())
+				break;
+			
+			path.addAll(leg);
+			from = leg.get(leg.size() - 1);
+		}
+		
+		return path;
+	}
+	
+	/**
+	 * @return the configured point-to-point {@link Pathfinder}, or else A*
+	 */
+	private Pathfinder getPointToPointPathfinder() {
+		
+		return (pathfinder == null) ? localPathfinder : pathfinder;
+	}
+	
+	/**
+	 * @param map
+	 * @return {@code true} if the given map is small enough to be scanned by a
+	 *         {@link DijkstraMap}
+	 * @see #MAX_SCAN_SIZE
+	 */
+	private static boolean canScan(GlobalMap map) {
+		
+		return map != null && map.getWidth() <= MAX_SCAN_SIZE && map.getHeight() <= MAX_SCAN_SIZE;
+	}
+	
+	/**
+	 * Determine whether a route toward {@code goal} may cross the given cell, by
+	 * the same measure that this system's searches plan against: the cell must not
+	 * be a wall, and (unless it is {@code goal}) must be known to the given
+	 * {@link KnownMap}. This only consults cached masks, and so is cheap enough to
+	 * call once per step.
+	 * 
+	 * @param knownMap
+	 *            {@code null} to treat every cell as potentially passable
+	 * @param goal
+	 *            the route's goal, or {@code null}
+	 * @param x
+	 * @param y
+	 * @return {@code true} if the cell is passable, {@code false} if not (or if
+	 *         there is no current map)
+	 */
+	public boolean isPassable(KnownMap knownMap, Coord goal, int x, int y) {
+		
+		final GlobalMap map = dijkstras.getMap();
+		if (map == null)
+			return false;
+		
+		if (getTerrain(map).isBlocked(x, y))
+			return false;
+		
+		if (knownMap == null || (goal != null && goal.x == x && goal.y == y))
+			return true;
+		
+		return !blockedCells.get(knownMap).isBlocked(x, y);
+	}
+	
+	/**
+	 * @param map
+	 * @param blocked
+	 *            additional cells to block, or {@code null}
+	 * @param goal
+	 * @return a {@link BlockedCells mask} blocking every wall in the given map's
+	 *         current revision, along with every cell in {@code blocked} other
+	 *         than {@code goal}
+	 */
+	private BlockedCells getImpassable(GlobalMap map, BlockedCells blocked, Coord goal) {
+		
+		final BlockedCells terrain = getTerrain(map);
+		if (blocked == null)
+			return terrain;
+		
+		final BlockedCells impassable = terrain.or(blocked);
+		if (!terrain.isBlocked(goal))
+			impassable.set(goal.x, goal.y, false);
+		return impassable;
+	}
+	
+	/**
+	 * @param map
+	 * @return a {@link BlockedCells mask} blocking every wall in the given map's
+	 *         current revision
+	 */
+	private BlockedCells getTerrain(GlobalMap map) {
+		
+		final long revision = map.getRevision();
+		
 		synchronized (this) {
-			return dijkstra.findPath(maxPathLength, scanLimit, impassable, passable, start, targets);
+			if (map == terrainMap && revision == terrainRevision)
+				return terrain;
+		}
+		
+		final BlockedCells result = map.getWalls();
+		
+		synchronized (this) {
+			terrainMap = map;
+			terrainRevision = revision;
+			terrain = result;
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Attempt to find a path using the {@link HierarchicalPathfinder}.
+	 * 
+	 * @param maxPathLength
+	 * @param blocked
+	 *            cells which the path may not cross (other than {@code goal}), or
+	 *            {@code null}
+	 * @param start
+	 * @param goal
+	 * @return the path, or {@code null} if hierarchical pathfinding is not
+	 *         appropriate or did not produce a usable path
+	 */
+	private List<Coord> pathfindHierarchically(int maxPathLength, BlockedCells blocked, Coord start, Coord goal) {
+		
+		final HierarchicalPathfinder hierarchy = this.hierarchy;
+		if (hierarchy == null || hierarchy.getMap() != dijkstras.getMap())
+			return null;
+		
+		if (Math.max(Math.abs(start.x - goal.x), Math.abs(start.y - goal.y)) <= hierarchy.getClusterSize())
+			return null;
+		
+		final List<Coord> path = hierarchy.findPath(start, goal, maxPathLength);
+		if (path.isEmpty())
+			return null;
+		
+		//
+		// The hierarchical path considers terrain only. If it strays into cells
+		// this entity doesn't know about, we can't use it.
+		//
+		if (blocked != null)
+			for (Coord step : path)
+				if (blocked.isBlocked(step) && !step.equals(goal))
+					return null;
+				
+		return path;
+	}
+	
+	private static class FlowFieldKey {
+		
+		private final KnownMap knownMap;
+		private final Coord goal;
+		
+		public FlowFieldKey(KnownMap knownMap, Coord goal) {
+			
+			this.knownMap = knownMap;
+			this.goal = goal;
+		}
+		
+		@Override
+		public int hashCode() {
+			
+			return 31 * System.identityHashCode(knownMap) + goal.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			
+			if (this == obj)
+				return true;
+			if (!(obj instanceof FlowFieldKey))
+				return false;
+			
+			final FlowFieldKey other = (FlowFieldKey) obj;
+			return knownMap == other.knownMap && goal.equals(other.goal);
 		}
 	}
 }
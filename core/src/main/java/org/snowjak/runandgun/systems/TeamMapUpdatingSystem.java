@@ -3,11 +3,15 @@
  */
 package org.snowjak.runandgun.systems;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.logging.Logger;
 
 import org.snowjak.runandgun.components.CanSee;
 import org.snowjak.runandgun.concurrent.ParallelRunner;
 import org.snowjak.runandgun.context.Context;
+import org.snowjak.runandgun.map.CellRegion;
 import org.snowjak.runandgun.map.GlobalMap;
 import org.snowjak.runandgun.map.KnownMap;
 import org.snowjak.runandgun.team.Team;
@@ -21,6 +25,11 @@ import com.badlogic.ashley.systems.IteratingSystem;
 /**
  * Given the entity's current {@link CanSee field-of-view}, update its
  * {@link Team}'s {@link KnownMap}.
+ * <p>
+ * The seen-regions of all of a Team's entities are first unioned together, so
+ * that each Team's map is merged only once per update. Teams are merged in
+ * parallel.
+ * </p>
  * 
  * @author snowjak88
  *
@@ -33,6 +42,7 @@ public class TeamMapUpdatingSystem extends IteratingSystem {
 	private static final ComponentMapper<CanSee> CAN_SEE = ComponentMapper.getFor(CanSee.class);
 	
 	private final ParallelRunner runner = new ParallelRunner();
+	private final java.util.Map<Team, List<CellRegion>> seenByTeam = new LinkedHashMap<>();
 	
 	public TeamMapUpdatingSystem() {
 		
@@ -60,15 +70,30 @@ public class TeamMapUpdatingSystem extends IteratingSystem {
 		
 		getEngine().getSystem(TeamManager.class).getTeams().forEach(t -> t.getMap().resetVisibleRegion());
 		
+		seenByTeam.values().forEach(List::clear);
+		
 		super.update(deltaTime);
 		
+		final GlobalMap map = Context.get().globalMap();
+		if (map != null)
+			for (java.util.Map.Entry<Team, List<CellRegion>> e : seenByTeam.entrySet()) {
+				final Team team = e.getKey();
+				final List<CellRegion> seen = e.getValue();
+				if (seen.isEmpty())
+					continue;
+				
+				runner.add(() -> team.update(map, union(seen)));
+			}
+		
 		runner.awaitAll();
 		
-		Context.get().setDisplayMap(Context.get().team().getMap().copy());
+		seenByTeam.entrySet().removeIf(e -> e.getValue().isEmpty());
+		
+		Context.get().setDisplayMap(Context.get().team().getMap().snapshot());
 	}
 	
 	/**
-	 * Update each entity's Team's map.
+	 * Collect each entity's seen-region under its Team.
 	 */
 	@Override
 	protected void processEntity(Entity entity, float deltaTime) {
@@ -76,14 +101,26 @@ public class TeamMapUpdatingSystem extends IteratingSystem {
 		if (!CAN_SEE.has(entity))
 			return;
 		
-		final GlobalMap map = Context.get().globalMap();
-		if (map == null)
-			return;
-		
 		final Team team = getEngine().getSystem(TeamManager.class).getTeam(entity);
 		if (team == null)
 			return;
 		
-		runner.add(() -> team.update(map, CAN_SEE.get(entity).getSeen()));
+		seenByTeam.computeIfAbsent(team, t -> new ArrayList<>()).add(CAN_SEE.get(entity).getSeen());
+	}
+	
+	/**
+	 * Union the given regions into a new region. Each region is visited once, so
+	 * this takes time proportional to the total number of blocks among them.
+	 * 
+	 * @param regions
+	 * @return
+	 */
+	static CellRegion union(List<CellRegion> regions) {
+		
+		final CellRegion unioned = new CellRegion();
+		for (CellRegion region : regions)
+			unioned.or(region);
+		
+		return unioned;
 	}
 }
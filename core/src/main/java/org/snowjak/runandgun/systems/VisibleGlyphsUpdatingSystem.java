@@ -13,6 +13,7 @@ import org.snowjak.runandgun.components.HasAppearance;
 import org.snowjak.runandgun.components.HasGlyph;
 import org.snowjak.runandgun.concurrent.BatchedUpdates;
 import org.snowjak.runandgun.concurrent.ParallelRunner;
+import org.snowjak.runandgun.concurrent.TaskScheduler.Lane;
 import org.snowjak.runandgun.context.Context;
 import org.snowjak.runandgun.events.CurrentTeamChangedEvent;
 import org.snowjak.runandgun.map.KnownMap;
@@ -118,26 +119,19 @@ public class VisibleGlyphsUpdatingSystem extends EntitySystem {
 		if (map == null)
 			return;
 		
+		//
+		// Split entities into contiguous shards, one per parallel thread, rather
+		// than submitting one task per entity.
+		//
 		final ImmutableArray<Entity> entities = getEngine().getEntitiesFor(Family.all(HasAppearance.class).get());
-		for (int i = 0; i < entities.size(); i++) {
+		final int shards = Math.min(Context.get().scheduler().getThreadCount(Lane.PARALLEL), entities.size());
+		for (int s = 0; s < shards; s++) {
 			
-			final Entity e = entities.get(i);
+			final int from = entities.size() * s / shards, to = entities.size() * (s + 1) / shards;
 			
 			parallelInUpdate.add(() -> {
-				final Coord location = map.getEntityLocation(e);
-				
-				final boolean isVisible = (location != null) && (map.isVisible(location.x, location.y));
-				final boolean isKnown = (location != null) && (map.isKnown(location.x, location.y));
-				final boolean hasGlyph = HAS_GLYPH.has(e);
-				
-				if (isVisible)
-					setVisible(e, location);
-				
-				else if (isKnown)
-					setKnown(e, location);
-				
-				else if (hasGlyph)
-					setLastKnown(e);
+				for (int i = from; i < to; i++)
+					update(entities.get(i), map);
 			});
 			
 		}
@@ -146,6 +140,24 @@ public class VisibleGlyphsUpdatingSystem extends EntitySystem {
 		batchedPostUpdate.runUpdates();
 	}
 	
+	private void update(Entity e, KnownMap map) {
+		
+		final Coord location = map.getEntityLocation(e);
+		
+		final boolean isVisible = (location != null) && (map.isVisible(location.x, location.y));
+		final boolean isKnown = (location != null) && (map.isKnown(location.x, location.y));
+		final boolean hasGlyph = HAS_GLYPH.has(e);
+		
+		if (isVisible)
+			setVisible(e, location);
+		
+		else if (isKnown)
+			setKnown(e, location);
+		
+		else if (hasGlyph)
+			setLastKnown(e);
+	}
+	
 	private void setVisible(Entity e, Coord location) {
 		
 		final HasAppearance ha = HAS_APPEARANCE.get(e);
@@ -8,6 +8,7 @@ import java.util.logging.Logger;
 
 import org.snowjak.runandgun.context.Context;
 import org.snowjak.runandgun.events.CurrentMapChangedEvent;
+import org.snowjak.runandgun.map.CellRegion;
 import org.snowjak.runandgun.map.GlobalMap;
 import org.snowjak.runandgun.map.KnownMap;
 
@@ -15,8 +16,6 @@ import com.badlogic.ashley.core.Entity;
 import com.badlogic.gdx.utils.Disposable;
 import com.google.common.eventbus.Subscribe;
 
-import squidpony.squidmath.CoordPacker;
-
 /**
  * Encapsulates data and functionality relating to teams of entities.
  * 
@@ -60,28 +59,26 @@ public class Team implements Disposable {
 	}
 	
 	/**
-	 * Contribute a particular {@link GlobalMap} and
-	 * {@link CoordPacker#packSeveral(java.util.Collection) packed}
-	 * visibility-region to this Team's map.
+	 * Contribute a particular {@link GlobalMap} and {@link CellRegion
+	 * visibility-region} to this Team's map.
 	 * <p>
 	 * If you want to see which {@link Entity Entities} were added, moved, and
 	 * removed from this Team's {@link KnownMap} by this update, you should instead
-	 * call {@link #update(GlobalMap, short[], Collection, Collection, Collection)}.
+	 * call {@link #update(GlobalMap, CellRegion, Collection, Collection, Collection)}.
 	 * </p>
 	 * 
 	 * @param map
 	 * @param visible
 	 *            {@code null} to leave the "currently-visible" region unchanged
 	 */
-	public void update(GlobalMap map, short[] visible) {
+	public void update(GlobalMap map, CellRegion visible) {
 		
 		update(map, visible, null, null, null);
 	}
 	
 	/**
-	 * Contribute a particular {@link GlobalMap} and
-	 * {@link CoordPacker#packSeveral(java.util.Collection) packed}
-	 * visibility-region to this Team's map.
+	 * Contribute a particular {@link GlobalMap} and {@link CellRegion
+	 * visibility-region} to this Team's map.
 	 * 
 	 * @param map
 	 * @param visible
@@ -99,7 +96,7 @@ public class Team implements Disposable {
 	 *            no longer lie within this {@link Team}'s FOV, or {@code null} if
 	 *            no such results needed
 	 */
-	public void update(GlobalMap map, short[] visible, Collection<Entity> addedEntities,
+	public void update(GlobalMap map, CellRegion visible, Collection<Entity> addedEntities,
 			Collection<Entity> movedEntities, Collection<Entity> removedEntities) {
 		
 		synchronized (this) {
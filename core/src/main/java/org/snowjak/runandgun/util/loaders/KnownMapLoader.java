@@ -5,7 +5,7 @@ package org.snowjak.runandgun.util.loaders;
 
 import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
-import java.nio.ShortBuffer;
+import java.nio.LongBuffer;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collection;
@@ -13,6 +13,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.snowjak.runandgun.context.Context;
+import org.snowjak.runandgun.map.CellRegion;
 import org.snowjak.runandgun.map.KnownMap;
 import org.snowjak.runandgun.systems.EntityRefManager;
 
@@ -77,8 +78,9 @@ public class KnownMapLoader implements Loader<KnownMap> {
 		final JsonObject knownEntities = new JsonObject();
 		final EntityRefManager refManager = Context.get().engine().getSystem(EntityRefManager.class);
 		
-		for (Coord c : src.getVisibleRegion()) {
+		src.getVisible().forEach((x, y) -> {
 			
+			final Coord c = Coord.get(x, y);
 			final Collection<Entity> entities = src.getEntitiesAt(c);
 			if (!entities.isEmpty()) {
 				
@@ -90,7 +92,7 @@ public class KnownMapLoader implements Loader<KnownMap> {
 				}
 				knownEntities.add(toString(c), entitiesAtCoord);
 			}
-		}
+		});
 		
 		obj.add("entities", knownEntities);
 		
@@ -121,7 +123,7 @@ public class KnownMapLoader implements Loader<KnownMap> {
 		
 		if (!obj.has("known"))
 			throw new JsonParseException("Cannnot parse known-map from JSON -- missing [known]!");
-		final short[] known = toShortArray(obj.get("known").getAsString());
+		final CellRegion known = toRegion(obj.get("known").getAsString());
 		
 		if (!obj.has("map"))
 			throw new JsonParseException("Cannot parse known-map from JSON -- missing [map]!");
@@ -129,9 +131,9 @@ public class KnownMapLoader implements Loader<KnownMap> {
 			throw new JsonParseException("Cannot parse known-map from JSON -- [map] is not an object!");
 		final JsonObject map = obj.getAsJsonObject("map");
 		
-		final Map<Character, short[]> charMap = new HashMap<>();
+		final Map<Character, CellRegion> charMap = new HashMap<>();
 		for (Map.Entry<String, JsonElement> mapEntry : map.entrySet())
-			charMap.put(mapEntry.getKey().charAt(0), toShortArray(mapEntry.getValue().getAsString()));
+			charMap.put(mapEntry.getKey().charAt(0), toRegion(mapEntry.getValue().getAsString()));
 		
 		if (!obj.has("colors"))
 			throw new JsonParseException("Cannot parse known-map from JSON -- missing [colors]!");
@@ -139,9 +141,9 @@ public class KnownMapLoader implements Loader<KnownMap> {
 			throw new JsonParseException("Cannot parse known-map from JSON -- [colors] is not an object!");
 		final JsonObject colors = obj.getAsJsonObject("colors");
 		
-		final Map<Color, short[]> colorMap = new HashMap<>();
+		final Map<Color, CellRegion> colorMap = new HashMap<>();
 		for (Map.Entry<String, JsonElement> colorsEntry : colors.entrySet())
-			colorMap.put(Color.valueOf(colorsEntry.getKey()), toShortArray(colorsEntry.getValue().getAsString()));
+			colorMap.put(Color.valueOf(colorsEntry.getKey()), toRegion(colorsEntry.getValue().getAsString()));
 		
 		if (!obj.has("bg-colors"))
 			throw new JsonParseException("Cannot parse known-map from JSON -- missing [bg-colors]!");
@@ -151,9 +153,9 @@ public class KnownMapLoader implements Loader<KnownMap> {
 		
 		final KnownMap result = new KnownMap(width, height, known, charMap, colorMap, colorMap);
 		
-		final Map<Color, short[]> bgColorMap = new HashMap<>();
+		final Map<Color, CellRegion> bgColorMap = new HashMap<>();
 		for (Map.Entry<String, JsonElement> bgColorsEntry : bgColors.entrySet())
-			bgColorMap.put(Color.valueOf(bgColorsEntry.getKey()), toShortArray(bgColorsEntry.getValue().getAsString()));
+			bgColorMap.put(Color.valueOf(bgColorsEntry.getKey()), toRegion(bgColorsEntry.getValue().getAsString()));
 		
 		if (!obj.has("entities"))
 			throw new JsonParseException("Cannot parse known-map from JSON -- missing [entities]!");
@@ -181,25 +183,27 @@ public class KnownMapLoader implements Loader<KnownMap> {
 		return result;
 	}
 	
-	private String toBase64(short[] value) {
+	private String toBase64(CellRegion region) {
 		
-		final ByteBuffer lineBuffer = ByteBuffer.allocate(value.length * Short.BYTES);
-		lineBuffer.asShortBuffer().put(value);
+		final long[] value = region.encode();
+		final ByteBuffer lineBuffer = ByteBuffer.allocate(value.length * Long.BYTES);
+		lineBuffer.asLongBuffer().put(value);
 		
 		return Base64.getEncoder().encodeToString(lineBuffer.array());
 	}
 	
-	private short[] toShortArray(String base64) {
-		
-		final ShortBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(base64)).asShortBuffer();
+	private CellRegion toRegion(String base64) {
 		
-		if (!buffer.isReadOnly() && buffer.hasArray())
-			return buffer.compact().array();
+		final LongBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(base64)).asLongBuffer();
 		
-		buffer.rewind();
-		final short[] result = new short[buffer.capacity()];
+		final long[] result = new long[buffer.remaining()];
 		buffer.get(result);
-		return result;
+		
+		try {
+			return CellRegion.decode(result);
+		} catch (IllegalArgumentException e) {
+			throw new JsonParseException("Cannot parse known-map from JSON -- malformed region!", e);
+		}
 	}
 	
 	private String toString(Coord coord) {
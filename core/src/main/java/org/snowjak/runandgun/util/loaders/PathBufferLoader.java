@@ -0,0 +1,59 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.util.loaders;
+
+import java.lang.reflect.Type;
+
+import org.snowjak.runandgun.pathfinding.PathBuffer;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+
+/**
+ * De/serializes a {@link PathBuffer} as a flat array of its remaining
+ * {@link PathBuffer#pack(int, int) packed} cells -- one number per cell.
+ * 
+ * @author snowjak88
+ *
+ */
+public class PathBufferLoader implements Loader<PathBuffer> {
+	
+	@Override
+	public PathBuffer deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
+			throws JsonParseException {
+		
+		if (json.isJsonNull())
+			return null;
+		
+		if (!json.isJsonArray())
+			throw new JsonParseException("Cannot parse PathBuffer from JSON -- not an array!");
+		
+		final JsonArray array = json.getAsJsonArray();
+		final int[] packed = new int[array.size()];
+		for (int i = 0; i < packed.length; i++)
+			packed[i] = array.get(i).getAsInt();
+		
+		final PathBuffer buffer = PathBuffer.obtain();
+		buffer.addAllPacked(packed);
+		return buffer;
+	}
+	
+	@Override
+	public JsonElement serialize(PathBuffer src, Type typeOfSrc, JsonSerializationContext context) {
+		
+		if (src == null)
+			return JsonNull.INSTANCE;
+		
+		final JsonArray array = new JsonArray();
+		for (int packed : src.getRemainingPacked())
+			array.add(new JsonPrimitive(packed));
+		
+		return array;
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.map;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link CellRegion} against a {@link HashSet} of cells, over regions
+ * scattered across a large map.
+ * 
+ * @author snowjak88
+ *
+ */
+public class CellRegionTest {
+	
+	private static final int RUNS = 20, CELLS = 500, MAP_SIZE = 4096;
+	
+	@Test
+	public void testMatchesHashSet() {
+		
+		final Random rnd = new Random(0);
+		
+		for (int run = 0; run < RUNS; run++) {
+			final CellRegion a = new CellRegion(), b = new CellRegion();
+			final Set<Long> expectedA = new HashSet<>(), expectedB = new HashSet<>();
+			
+			for (int i = 0; i < CELLS; i++) {
+				final int x = rnd.nextInt(MAP_SIZE), y = rnd.nextInt(MAP_SIZE);
+				if (rnd.nextBoolean()) {
+					a.add(x, y);
+					expectedA.add(key(x, y));
+				} else {
+					b.add(x, y);
+					expectedB.add(key(x, y));
+				}
+			}
+			
+			assertMatches(expectedA, a);
+			assertMatches(expectedA, CellRegion.decode(a.encode()));
+			
+			final CellRegion union = new CellRegion(a).or(b);
+			expectedB.addAll(expectedA);
+			assertMatches(expectedB, union);
+			assertMatches(expectedA, a);
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecodeRejectsIncompleteBlock() {
+		
+		final CellRegion region = new CellRegion();
+		region.add(3, 5);
+		
+		final long[] encoded = region.encode();
+		CellRegion.decode(java.util.Arrays.copyOf(encoded, encoded.length - 1));
+	}
+	
+	private static void assertMatches(Set<Long> expected, CellRegion region) {
+		
+		assertEquals(expected.size(), region.size());
+		
+		final Set<Long> visited = new HashSet<>();
+		region.forEach((x, y) -> visited.add(key(x, y)));
+		assertEquals(expected, visited);
+		
+		for (long cell : expected)
+			assertEquals(true, region.contains((int) (cell >> 32), (int) cell));
+	}
+	
+	private static long key(int x, int y) {
+		
+		return ((long) x << 32) | y;
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+import org.snowjak.runandgun.pathfinding.BlockedCells;
+
+import com.badlogic.gdx.graphics.Color;
+
+/**
+ * Checks that a large {@link GlobalMap} takes memory only for those chunks
+ * which are actually in use.
+ * 
+ * @author snowjak88
+ *
+ */
+public class GlobalMapTest {
+	
+	private static final int SIZE = 4096;
+	
+	/**
+	 * The most memory that creating a map of {@link #SIZE} may take. A map
+	 * allocating its every cell would take some 100 times this.
+	 */
+	private static final long MAX_EMPTY_BYTES = 2L * 1024 * 1024;
+	
+	/**
+	 * The most memory that allocating a single chunk may take.
+	 */
+	private static final long MAX_CHUNK_BYTES = 64L * 1024;
+	
+	@Test
+	public void testNewMapAllocatesNoChunks() {
+		
+		final GlobalMap map = new GlobalMap(SIZE, SIZE);
+		assertEquals(0, map.getChunkCount());
+		
+		assertEquals(GlobalMap.FILL, map.getMapAt(SIZE - 1, SIZE - 1));
+		assertEquals(GlobalMap.FILL, map.getBareMapAt(SIZE / 2, SIZE / 2));
+		map.copyVisibilityResistance(SIZE - 64, SIZE - 64, new double[64][64]);
+		assertEquals(0, map.getChunkCount());
+	}
+	
+	@Test
+	public void testChunksAllocatedOnlyWhereWritten() {
+		
+		final GlobalMap map = new GlobalMap(SIZE, SIZE);
+		
+		//
+		// Each write lands in a distinct chunk; the second row of writes lands in
+		// the same chunks again.
+		//
+		final int chunks = 16;
+		for (int row = 0; row < 2; row++)
+			for (int i = 0; i < chunks; i++) {
+				final int x = i * (SIZE / chunks) + row, y = SIZE - 1 - i * (SIZE / chunks) - row;
+				map.setMap('.', x, y, Color.WHITE, Color.BLACK);
+				assertEquals('.', map.getMapAt(x, y));
+			}
+		
+		assertEquals(chunks, map.getChunkCount());
+		
+		final BlockedCells walls = map.getWalls();
+		assertTrue(walls.isBlocked(1, 1));
+		assertTrue(!walls.isBlocked(0, SIZE - 1));
+		assertEquals(chunks, map.getChunkCount());
+	}
+	
+	@Test
+	public void testMemoryGrowsWithChunksInUse() {
+		
+		final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+		
+		final long thread = Thread.currentThread().getId();
+		
+		long before = threads.getThreadAllocatedBytes(thread);
+		final GlobalMap map = new GlobalMap(SIZE, SIZE);
+		final long empty = threads.getThreadAllocatedBytes(thread) - before;
+		assertTrue("Creating an empty " + SIZE + "x" + SIZE + " map took " + empty + " bytes",
+				empty < MAX_EMPTY_BYTES);
+		
+		//
+		// Warm up, so that one-time allocations (e.g., of the palette and the
+		// event-bus) aren't counted against the chunks.
+		//
+		map.setMap('.', 0, 0, Color.WHITE, Color.BLACK);
+		
+		final int chunks = 64;
+		before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 1; i <= chunks; i++)
+			map.setMap('.', i * GlobalMapChunk.SIZE, i * GlobalMapChunk.SIZE, Color.WHITE, Color.BLACK);
+		final long written = threads.getThreadAllocatedBytes(thread) - before;
+		
+		assertEquals(chunks + 1, map.getChunkCount());
+		assertTrue("Writing to " + chunks + " chunks took " + written + " bytes",
+				written < chunks * MAX_CHUNK_BYTES);
+	}
+}
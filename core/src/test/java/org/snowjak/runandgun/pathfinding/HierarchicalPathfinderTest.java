@@ -0,0 +1,114 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.pathfinding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.snowjak.runandgun.events.MapRegionChangedEvent;
+import org.snowjak.runandgun.map.GlobalMap;
+
+import com.badlogic.gdx.graphics.Color;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * Checks that {@link HierarchicalPathfinder} finds a path exactly when an
+ * exhaustive {@link AStarPathfinder} search does, on random maps -- both as
+ * first built, and after repeated terrain-edits have been repaired.
+ * 
+ * @author snowjak88
+ *
+ */
+public class HierarchicalPathfinderTest {
+	
+	private static final int SEEDS = 8, ROUNDS = 6, PAIRS = 60, EDITS = 24;
+	
+	/**
+	 * Neither dimension is a multiple of the cluster-size, so that the last row
+	 * and column of clusters are partial.
+	 */
+	private static final int WIDTH = 53, HEIGHT = 41, CLUSTER_SIZE = 8;
+	
+	/**
+	 * Dense enough that a good share of random pairs are cut off from each other.
+	 */
+	private static final double WALL_DENSITY = 0.55;
+	
+	@Test
+	public void testReachabilityMatchesAStar() {
+		
+		final AStarPathfinder astar = new AStarPathfinder();
+		
+		for (int seed = 0; seed < SEEDS; seed++) {
+			final Random rnd = new Random(seed);
+			
+			final char[][] bareMap = new char[WIDTH][HEIGHT];
+			for (int x = 0; x < WIDTH; x++)
+				for (int y = 0; y < HEIGHT; y++)
+					bareMap[x][y] = (rnd.nextDouble() < WALL_DENSITY) ? GlobalMap.FILL : '.';
+			
+			final GlobalMap map = new GlobalMap(bareMap, bareMap);
+			final HierarchicalPathfinder hierarchy = new HierarchicalPathfinder(map, CLUSTER_SIZE);
+			
+			for (int round = 0; round < ROUNDS; round++) {
+				final BlockedCells walls = map.getWalls();
+				
+				for (int pair = 0; pair < PAIRS; pair++) {
+					final Coord start = randomOpenCell(rnd, walls), goal = randomOpenCell(rnd, walls);
+					if (start.equals(goal))
+						continue;
+					
+					final String where = "seed " + seed + ", round " + round + ", from " + start + " to " + goal;
+					
+					final boolean reachable = !astar.findPath(walls, start, goal, Integer.MAX_VALUE).isEmpty();
+					final List<Coord> path = hierarchy.findPath(start, goal, Integer.MAX_VALUE);
+					
+					assertEquals(where, reachable, !path.isEmpty());
+					if (reachable)
+						assertValidPath(where, walls, start, goal, path);
+				}
+				
+				//
+				// Edit the terrain, and tell the pathfinder about it as the
+				// PathfindingSystem would.
+				//
+				for (int edit = 0; edit < EDITS; edit++) {
+					final int x = rnd.nextInt(WIDTH), y = rnd.nextInt(HEIGHT);
+					final char ch = (map.getBareMapAt(x, y) == GlobalMap.FILL) ? '.' : GlobalMap.FILL;
+					map.setMap(ch, x, y, Color.WHITE, Color.BLACK);
+					hierarchy.markChanged(new MapRegionChangedEvent(map, x, y, x, y, map.getRevision()));
+				}
+			}
+		}
+	}
+	
+	private static void assertValidPath(String where, BlockedCells walls, Coord start, Coord goal, List<Coord> path) {
+		
+		Coord previous = start;
+		for (Coord step : path) {
+			assertTrue(where + ": step " + previous + " -> " + step + " is not adjacent",
+					Math.max(Math.abs(step.x - previous.x), Math.abs(step.y - previous.y)) == 1);
+			assertFalse(where + ": step " + step + " is a wall", walls.isBlocked(step.x, step.y));
+			previous = step;
+		}
+		
+		assertEquals(where, goal, previous);
+	}
+	
+	private static Coord randomOpenCell(Random rnd, BlockedCells walls) {
+		
+		Coord c;
+		do
+			c = Coord.get(rnd.nextInt(WIDTH), rnd.nextInt(HEIGHT));
+		while (walls.isBlocked(c.x, c.y));
+		
+		return c;
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * 
+ */
+package org.snowjak.runandgun.pathfinding;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import squidpony.squidmath.Coord;
+
+/**
+ * Checks {@link PathBuffer} against an {@link ArrayDeque} of {@link Coord}s,
+ * over long runs of random operations.
+ * 
+ * @author snowjak88
+ *
+ */
+public class PathBufferTest {
+	
+	private static final int RUNS = 50, OPERATIONS = 2000, MAP_SIZE = 256;
+	
+	@Test
+	public void testPackRoundTrip() {
+		
+		for (int x = 0; x < MAP_SIZE; x += 17)
+			for (int y = 0; y < MAP_SIZE; y += 13) {
+				final int packed = PathBuffer.pack(x, y);
+				assertEquals(x, PathBuffer.unpackX(packed));
+				assertEquals(y, PathBuffer.unpackY(packed));
+			}
+	}
+	
+	@Test
+	public void testMatchesArrayDeque() {
+		
+		final Random rnd = new Random(0);
+		
+		for (int run = 0; run < RUNS; run++) {
+			PathBuffer buffer = PathBuffer.obtain();
+			final ArrayDeque<Coord> expected = new ArrayDeque<>();
+			
+			for (int op = 0; op < OPERATIONS; op++) {
+				switch (rnd.nextInt(8)) {
+				case 0:
+				case 1: {
+					final Coord c = randomCoord(rnd);
+					buffer.add(c);
+					expected.add(c);
+					break;
+				}
+				case 2: {
+					final List<Coord> cells = randomCoords(rnd);
+					buffer.addAll(cells);
+					expected.addAll(cells);
+					break;
+				}
+				case 3: {
+					final List<Coord> cells = randomCoords(rnd);
+					final int[] packed = new int[cells.size()];
+					for (int i = 0; i < packed.length; i++)
+						packed[i] = PathBuffer.pack(cells.get(i).x, cells.get(i).y);
+					buffer.addAllPacked(packed);
+					expected.addAll(cells);
+					break;
+				}
+				case 4:
+				case 5:
+					expected.poll();
+					assertEquals(!expected.isEmpty(), buffer.advance());
+					break;
+				case 6:
+					if (rnd.nextInt(16) == 0) {
+						buffer.clear();
+						expected.clear();
+					}
+					break;
+				default:
+					if (rnd.nextInt(16) == 0) {
+						buffer.free();
+						buffer = PathBuffer.obtain();
+						expected.clear();
+					}
+				}
+				
+				assertMatches(expected, buffer);
+			}
+			
+			buffer.free();
+		}
+	}
+	
+	private static void assertMatches(ArrayDeque<Coord> expected, PathBuffer buffer) {
+		
+		assertEquals(!expected.isEmpty(), buffer.hasRemaining());
+		assertEquals(expected.size(), buffer.remaining());
+		
+		if (expected.isEmpty())
+			assertNull(buffer.getCurrent());
+		else
+			assertEquals(expected.peek(), buffer.getCurrent());
+		
+		final List<Coord> remaining = new ArrayList<>(expected);
+		assertEquals(remaining, buffer.getRemaining());
+		
+		final int[] packed = new int[remaining.size()];
+		for (int i = 0; i < packed.length; i++)
+			packed[i] = PathBuffer.pack(remaining.get(i).x, remaining.get(i).y);
+		assertArrayEquals(packed, buffer.getRemainingPacked());
+	}
+	
+	private static Coord randomCoord(Random rnd) {
+		
+		return Coord.get(rnd.nextInt(MAP_SIZE), rnd.nextInt(MAP_SIZE));
+	}
+	
+	private static List<Coord> randomCoords(Random rnd) {
+		
+		final int count = rnd.nextInt(64);
+		final List<Coord> result = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+			result.add(randomCoord(rnd));
+		return result;
+	}
+}